@@ -1,29 +1,68 @@
 package com.cqs.qrmfg.controller;
 
+import com.cqs.qrmfg.dto.ExportJobDto;
 import com.cqs.qrmfg.dto.WorkflowMonitoringDto;
 import com.cqs.qrmfg.dto.QuerySlaReportDto;
 import com.cqs.qrmfg.dto.UserRoleAssignmentDto;
+import com.cqs.qrmfg.model.QueryDailyRollup;
+import com.cqs.qrmfg.model.User;
+import com.cqs.qrmfg.model.WorkflowDailyRollup;
+import com.cqs.qrmfg.model.WorkflowState;
 import com.cqs.qrmfg.service.AdminMonitoringService;
+import com.cqs.qrmfg.service.AuditRetentionService;
+import com.cqs.qrmfg.service.ExportJobService;
+import com.cqs.qrmfg.service.MetricsRollupService;
+import com.cqs.qrmfg.service.OperationalMetricsService;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import com.cqs.qrmfg.util.ExportFormat;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/qrmfg/api/v1/admin/monitoring")
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminMonitoringController {
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private static final String AUDIT_LOGS_TITLE = "Audit Logs";
+    private static final String WORKFLOWS_TITLE = "Workflows";
+    private static final String QUERY_SLA_TITLE = "Query SLA";
+
     @Autowired
     private AdminMonitoringService adminMonitoringService;
 
+    @Autowired
+    private OperationalMetricsService operationalMetricsService;
+
+    @Autowired
+    private MetricsRollupService metricsRollupService;
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Autowired
+    private AuditRetentionService auditRetentionService;
+
+    @Autowired
+    private WorkflowArchiveService workflowArchiveService;
+
     /**
      * Get workflow monitoring dashboard data
      */
@@ -33,6 +72,14 @@ public class AdminMonitoringController {
         return ResponseEntity.ok(dashboard);
     }
 
+    /**
+     * Get in-process operational metrics such as transition retry counters
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getOperationalMetrics() {
+        return ResponseEntity.ok(operationalMetricsService.getSnapshot());
+    }
+
     /**
      * Get workflow status distribution
      */
@@ -99,44 +146,228 @@ public class AdminMonitoringController {
     }
 
     /**
-     * Export audit logs as CSV
+     * Get daily query rollup rows (per day and team) for a date range
+     */
+    @GetMapping("/rollups/queries")
+    public ResponseEntity<List<QueryDailyRollup>> getQueryRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        
+        return ResponseEntity.ok(metricsRollupService.getQueryRollups(startDate, endDate));
+    }
+
+    /**
+     * Get daily workflow rollup rows (per day, plant and state) for a date range
+     */
+    @GetMapping("/rollups/workflows")
+    public ResponseEntity<List<WorkflowDailyRollup>> getWorkflowRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        
+        return ResponseEntity.ok(metricsRollupService.getWorkflowRollups(startDate, endDate));
+    }
+
+    /**
+     * Recompute the daily rollups for a date range (both dates inclusive)
+     */
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> backfillRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        
+        if (endDate.isBefore(startDate)) {
+            return ResponseEntity.badRequest().build();
+        }
+        int rows = metricsRollupService.backfill(startDate, endDate.plusDays(1));
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("startDate", startDate.toString());
+        response.put("endDate", endDate.toString());
+        response.put("rowsWritten", rows);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get the month partitions of the audit tables and the retention cutoff
+     */
+    @GetMapping("/audit-retention/partitions")
+    public ResponseEntity<Map<String, Object>> getAuditPartitions() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("cutoff", auditRetentionService.getRetentionCutoff().toString());
+        response.put("tables", auditRetentionService.getPartitionLayout());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Drop audit partitions older than the retention period
+     */
+    @PostMapping("/audit-retention/purge")
+    public ResponseEntity<Map<String, Object>> purgeExpiredAuditLogs() {
+        return ResponseEntity.ok(auditRetentionService.purgeExpired());
+    }
+
+    /**
+     * Move the queries and responses of long-completed workflows into the archive tables now
+     */
+    @PostMapping("/archive/run")
+    public ResponseEntity<Map<String, Object>> archiveCompletedWorkflows() {
+        return ResponseEntity.ok(workflowArchiveService.archiveCompleted());
+    }
+
+    /**
+     * Export audit logs as CSV or XLSX, streamed as the rows are read
      */
     @GetMapping("/audit-logs/export")
-    public ResponseEntity<byte[]> exportAuditLogs(
+    public ResponseEntity<StreamingResponseBody> exportAuditLogs(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             @RequestParam(required = false) String entityType,
-            @RequestParam(required = false) String action) {
+            @RequestParam(required = false) String action,
+            @RequestParam(defaultValue = "CSV") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
         
-        byte[] csvData = adminMonitoringService.exportAuditLogsAsCsv(startDate, endDate, entityType, action);
-        
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", "audit-logs-" + System.currentTimeMillis() + ".csv");
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(csvData);
+        return download("audit-logs-" + System.currentTimeMillis(), exportFormat, gzip,
+                out -> adminMonitoringService.exportAuditLogs(startDate, endDate, entityType, action,
+                        exportFormat.newWriter(out, AUDIT_LOGS_TITLE)));
     }
 
     /**
-     * Export workflow report as CSV
+     * Export workflow report as CSV or XLSX, streamed as the rows are read
      */
     @GetMapping("/workflows/export")
-    public ResponseEntity<byte[]> exportWorkflowReport(
+    public ResponseEntity<StreamingResponseBody> exportWorkflowReport(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
-            @RequestParam(required = false) String state) {
+            @RequestParam(required = false) String state,
+            @RequestParam(defaultValue = "CSV") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
         
-        byte[] csvData = adminMonitoringService.exportWorkflowReportAsCsv(startDate, endDate, state);
+        // Validate before streaming starts; afterwards the status can no longer change
+        WorkflowState workflowState;
+        try {
+            workflowState = state != null ? WorkflowState.valueOf(state.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", "workflow-report-" + System.currentTimeMillis() + ".csv");
+        return download("workflow-report-" + System.currentTimeMillis(), exportFormat, gzip,
+                out -> adminMonitoringService.exportWorkflowReport(startDate, endDate, workflowState,
+                        exportFormat.newWriter(out, WORKFLOWS_TITLE)));
+    }
+
+    /**
+     * Export query SLA report as CSV or XLSX
+     */
+    @GetMapping("/query-sla/export")
+    public ResponseEntity<StreamingResponseBody> exportQuerySlaReport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "CSV") String format) {
+        
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        return download("query-sla-" + System.currentTimeMillis(), exportFormat, false,
+                out -> adminMonitoringService.exportQuerySlaReport(startDate, endDate,
+                        exportFormat.newWriter(out, QUERY_SLA_TITLE)));
+    }
+
+    /**
+     * Start a background audit log export; poll /qrmfg/api/v1/export-jobs/{jobId} for progress
+     */
+    @PostMapping("/export-jobs/audit-logs")
+    public ResponseEntity<ExportJobDto> submitAuditLogExport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String action,
+            @RequestParam(defaultValue = "CSV") String format,
+            Authentication authentication) {
+        
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("startDate", startDate);
+        parameters.put("endDate", endDate);
+        parameters.put("entityType", entityType);
+        parameters.put("action", action);
+        
+        ExportJobDto job = exportJobService.submit("AUDIT_LOGS", parameters, exportFormat, AUDIT_LOGS_TITLE,
+                getCurrentUsername(authentication),
+                writer -> adminMonitoringService.exportAuditLogs(startDate, endDate, entityType, action, writer));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * Start a background workflow report export
+     */
+    @PostMapping("/export-jobs/workflows")
+    public ResponseEntity<ExportJobDto> submitWorkflowReportExport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String state,
+            @RequestParam(defaultValue = "CSV") String format,
+            Authentication authentication) {
+        
+        WorkflowState workflowState;
+        try {
+            workflowState = state != null ? WorkflowState.valueOf(state.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(csvData);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("startDate", startDate);
+        parameters.put("endDate", endDate);
+        parameters.put("state", workflowState);
+        
+        ExportJobDto job = exportJobService.submit("WORKFLOW_REPORT", parameters, exportFormat, WORKFLOWS_TITLE,
+                getCurrentUsername(authentication),
+                writer -> adminMonitoringService.exportWorkflowReport(startDate, endDate, workflowState, writer));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    /**
+     * Start a background query SLA report export
+     */
+    @PostMapping("/export-jobs/query-sla")
+    public ResponseEntity<ExportJobDto> submitQuerySlaExport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "CSV") String format,
+            Authentication authentication) {
+        
+        ExportFormat exportFormat = parseExportFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("startDate", startDate);
+        parameters.put("endDate", endDate);
+        
+        ExportJobDto job = exportJobService.submit("QUERY_SLA", parameters, exportFormat, QUERY_SLA_TITLE,
+                getCurrentUsername(authentication),
+                writer -> adminMonitoringService.exportQuerySlaReport(startDate, endDate, writer));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
     /**
@@ -159,4 +390,48 @@ public class AdminMonitoringController {
         UserRoleAssignmentDto updated = adminMonitoringService.updateUserRoles(userId, roleIds);
         return ResponseEntity.ok(updated);
     }
-}
\ No newline at end of file
+
+    private String getCurrentUsername(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return ((User) authentication.getPrincipal()).getUsername();
+        }
+        return "SYSTEM";
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String>> handleExportQueueFull(RejectedExecutionException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Export queue full");
+        errorResponse.put("message", "Too many exports are waiting, please retry later");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    }
+
+    private ExportFormat parseExportFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> download(String baseName, ExportFormat format, boolean gzip,
+                                                           StreamingResponseBody body) {
+        String fileName = baseName + "." + format.getExtension();
+        HttpHeaders headers = new HttpHeaders();
+        // XLSX is already a zip container, so gzip only applies to CSV
+        if (!gzip || format != ExportFormat.CSV) {
+            headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+            headers.setContentDispositionFormData("attachment", fileName);
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
+        
+        headers.setContentType(MediaType.parseMediaType("application/gzip"));
+        headers.setContentDispositionFormData("attachment", fileName + ".gz");
+        return ResponseEntity.ok().headers(headers).body(out -> {
+            // Sync flush so flushed rows reach the client instead of waiting in the deflater
+            GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE, true);
+            body.writeTo(gzipOut);
+            gzipOut.finish();
+        });
+    }
+}
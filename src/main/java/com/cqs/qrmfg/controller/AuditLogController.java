@@ -1,5 +1,7 @@
 package com.cqs.qrmfg.controller;
 
+import com.cqs.qrmfg.dto.AuditLogSearchCriteria;
+import com.cqs.qrmfg.dto.AuditLogSearchResult;
 import com.cqs.qrmfg.model.AuditLog;
 import com.cqs.qrmfg.service.AuditLogService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/qrmfg/api/v1/audit/logs")
@@ -15,9 +18,65 @@ public class AuditLogController {
     @Autowired
     private AuditLogService auditLogService;
 
+    // Unbounded reads would touch every monthly partition; default to the recent ones
+    static final int DEFAULT_WINDOW_DAYS = 30;
+
     @GetMapping
-    public List<AuditLog> getAllLogs() {
-        return auditLogService.findAll();
+    public List<AuditLog> getAllLogs(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        LocalDateTime from = start != null ? start : to.minusDays(DEFAULT_WINDOW_DAYS);
+        return auditLogService.findByEventTimeBetween(from, to);
+    }
+
+    /**
+     * Combined-filter audit search, newest first. Pass the X-Next-Cursor header of a
+     * response as cursor to get the next page; fields selects the returned columns.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Map<String, Object>>> search(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) String entityId,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String result,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+        criteria.setUserId(userId);
+        criteria.setUsername(username);
+        criteria.setAction(action);
+        criteria.setEntityType(entityType);
+        criteria.setEntityId(entityId);
+        criteria.setSeverity(severity);
+        criteria.setCategory(category);
+        criteria.setResult(result);
+        criteria.setEnd(end);
+        // Without a start only the recent partitions are searched
+        criteria.setStart(start != null ? start : (end != null ? end : LocalDateTime.now()).minusDays(DEFAULT_WINDOW_DAYS));
+        criteria.setFields(fields);
+        criteria.setLimit(limit);
+
+        AuditLogSearchResult page;
+        try {
+            criteria.setCursor(cursor);
+            page = auditLogService.search(criteria);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasMore()) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getRows());
     }
 
     @GetMapping("/user/{userId}")
@@ -3,11 +3,14 @@ package com.cqs.qrmfg.controller;
 import com.cqs.qrmfg.dto.DocumentAccessLogDto;
 import com.cqs.qrmfg.dto.DocumentReuseRequest;
 import com.cqs.qrmfg.dto.DocumentSummary;
+import com.cqs.qrmfg.dto.DocumentUploadInitRequest;
+import com.cqs.qrmfg.dto.DocumentUploadStatusDto;
 import com.cqs.qrmfg.exception.DocumentException;
 import com.cqs.qrmfg.exception.DocumentNotFoundException;
 import com.cqs.qrmfg.model.User;
 import com.cqs.qrmfg.model.WorkflowDocument;
 import com.cqs.qrmfg.service.DocumentService;
+import com.cqs.qrmfg.service.DocumentUploadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
@@ -21,6 +24,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +40,9 @@ public class DocumentController {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private DocumentUploadService documentUploadService;
+
     /**
      * Upload documents for a workflow - JVC users only
      */
@@ -56,6 +63,64 @@ public class DocumentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(uploadedDocuments);
     }
 
+    /**
+     * Start a chunked, resumable upload - JVC users only
+     */
+    @PostMapping("/uploads")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('ADMIN')")
+    public ResponseEntity<DocumentUploadStatusDto> startUpload(
+            @RequestBody DocumentUploadInitRequest uploadRequest,
+            Authentication authentication) {
+        DocumentUploadStatusDto status = documentUploadService.startUpload(uploadRequest, getCurrentUsername(authentication));
+        return ResponseEntity.status(HttpStatus.CREATED).body(status);
+    }
+
+    /**
+     * Write one chunk of an upload at the given offset; the request body is the raw bytes
+     */
+    @PutMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('ADMIN')")
+    public ResponseEntity<DocumentUploadStatusDto> uploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            Authentication authentication,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(documentUploadService.writeChunk(
+            uploadId, offset, request.getInputStream(), getCurrentUsername(authentication)));
+    }
+
+    /**
+     * Progress of an upload, used to resume an interrupted transfer from nextOffset
+     */
+    @GetMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('ADMIN')")
+    public ResponseEntity<DocumentUploadStatusDto> getUploadStatus(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        return ResponseEntity.ok(documentUploadService.getStatus(uploadId, getCurrentUsername(authentication)));
+    }
+
+    /**
+     * Verify the checksum of a fully received upload and create the document
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('ADMIN')")
+    public ResponseEntity<DocumentSummary> completeUpload(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        DocumentSummary document = documentUploadService.completeUpload(uploadId, getCurrentUsername(authentication));
+        return ResponseEntity.status(HttpStatus.CREATED).body(document);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('ADMIN')")
+    public ResponseEntity<Void> abortUpload(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+        documentUploadService.abortUpload(uploadId, getCurrentUsername(authentication));
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Download a document with access control and logging - Plant and JVC users can access
      */
@@ -0,0 +1,75 @@
+package com.cqs.qrmfg.controller;
+
+import com.cqs.qrmfg.dto.ExportJobDto;
+import com.cqs.qrmfg.model.User;
+import com.cqs.qrmfg.service.ExportJobService;
+import com.cqs.qrmfg.util.ExportFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+
+/**
+ * REST controller for polling and downloading background export jobs
+ */
+@RestController
+@RequestMapping("/qrmfg/api/v1/export-jobs")
+@PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+public class ExportJobController {
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    /**
+     * Get export job status and progress
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ExportJobDto> getJob(@PathVariable String jobId, Authentication authentication) {
+        ExportJobDto job = exportJobService.getJob(jobId, getCurrentUsername(authentication), isAdmin(authentication));
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Download the file of a completed export job
+     */
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<Resource> downloadJobResult(@PathVariable String jobId, Authentication authentication) {
+        String username = getCurrentUsername(authentication);
+        boolean admin = isAdmin(authentication);
+
+        ExportJobDto job = exportJobService.getJob(jobId, username, admin);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = exportJobService.getResultFile(jobId, username, admin);
+        if (file == null) {
+            // Still running, failed or already cleaned up
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ExportFormat.valueOf(job.getFormat()).getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFileName() + "\"")
+                .body(new FileSystemResource(file));
+    }
+
+    private boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(granted -> "ROLE_ADMIN".equals(granted.getAuthority()));
+    }
+
+    private String getCurrentUsername(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return ((User) authentication.getPrincipal()).getUsername();
+        }
+        return "SYSTEM";
+    }
+}
@@ -2,6 +2,9 @@ package com.cqs.qrmfg.controller;
 
 import com.cqs.qrmfg.dto.QueryCreateRequest;
 import com.cqs.qrmfg.dto.QueryResolveRequest;
+import com.cqs.qrmfg.dto.QuerySearchCriteria;
+import com.cqs.qrmfg.dto.QuerySearchResult;
+import com.cqs.qrmfg.dto.QueryStatsDto;
 import com.cqs.qrmfg.dto.QuerySummaryDto;
 import com.cqs.qrmfg.exception.QueryException;
 import com.cqs.qrmfg.exception.QueryNotFoundException;
@@ -10,14 +13,20 @@ import com.cqs.qrmfg.model.QueryStatus;
 import com.cqs.qrmfg.model.QueryTeam;
 import com.cqs.qrmfg.model.User;
 import com.cqs.qrmfg.service.QueryService;
+import com.cqs.qrmfg.service.QueryStatsService;
+import com.cqs.qrmfg.service.TeamInboxCacheService;
 import com.cqs.qrmfg.util.QueryMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.time.LocalDateTime;
@@ -36,6 +45,12 @@ public class QueryController {
     @Autowired
     private QueryMapper queryMapper;
 
+    @Autowired
+    private TeamInboxCacheService teamInboxCacheService;
+
+    @Autowired
+    private QueryStatsService queryStatsService;
+
     // Basic CRUD operations
     @GetMapping
     @PreAuthorize("hasRole('USER')")
@@ -131,8 +146,16 @@ public class QueryController {
             @RequestBody Map<String, Object> request,
             Authentication authentication) {
         
-        @SuppressWarnings("unchecked")
-        List<Long> queryIds = (List<Long>) request.get("queryIds");
+        Object idsValue = request.get("queryIds");
+        if (!(idsValue instanceof List)) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // JSON numbers arrive as Integer or Long depending on size
+        List<Long> queryIds = new java.util.ArrayList<>();
+        for (Object id : (List<?>) idsValue) {
+            queryIds.add(Long.valueOf(id.toString()));
+        }
         String response = (String) request.get("response");
         String resolvedBy = getCurrentUsername(authentication);
         
@@ -243,12 +266,22 @@ public class QueryController {
     // Team-specific query inboxes
     @GetMapping("/inbox/{team}")
     @PreAuthorize("hasRole('CQS_USER') or hasRole('TECH_USER') or hasRole('JVC_USER') or hasRole('ADMIN')")
-    public ResponseEntity<List<QuerySummaryDto>> getTeamInbox(@PathVariable String team) {
+    public ResponseEntity<List<QuerySummaryDto>> getTeamInbox(@PathVariable String team, WebRequest webRequest) {
         try {
             QueryTeam queryTeam = QueryTeam.valueOf(team);
-            List<Query> queries = queryService.findOpenQueriesForTeam(queryTeam);
-            List<QuerySummaryDto> queryDtos = queryMapper.toSummaryDtoList(queries);
-            return ResponseEntity.ok(queryDtos);
+            TeamInboxCacheService.InboxSnapshot inbox = teamInboxCacheService.getInbox(queryTeam);
+            
+            // Unchanged inbox: answer 304 straight from the cached ETag
+            if (webRequest.checkNotModified(inbox.getEtag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(inbox.getEtag())
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(inbox.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .body(inbox.getItems());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -336,7 +369,7 @@ public class QueryController {
         return ResponseEntity.ok(queryDtos);
     }
 
-    // Enhanced search with material context
+    // Enhanced search with material context, keyset paginated newest first
     @GetMapping("/search")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<List<QuerySummaryDto>> searchQueries(
@@ -347,22 +380,82 @@ public class QueryController {
             @RequestParam(required = false) String team,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String priority,
-            @RequestParam(required = false, defaultValue = "0") int minDaysOpen) {
+            @RequestParam(required = false, defaultValue = "0") int minDaysOpen,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
         
-        List<Query> queries = queryService.searchQueriesWithContext(
-            materialCode, projectCode, plantCode, blockId, team, status, priority, minDaysOpen
-        );
-        List<QuerySummaryDto> queryDtos = queryMapper.toSummaryDtoList(queries);
-        return ResponseEntity.ok(queryDtos);
+        if (minDaysOpen < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+        criteria.setMaterialCode(materialCode);
+        criteria.setProjectCode(projectCode);
+        criteria.setPlantCode(plantCode);
+        criteria.setBlockId(blockId);
+        criteria.setPriority(priority);
+        criteria.setMinDaysOpen(minDaysOpen);
+        criteria.setLimit(limit);
+        // Unknown team or status names and tampered cursors are client errors
+        try {
+            criteria.setTeam(team != null && !team.trim().isEmpty() ? QueryTeam.valueOf(team.trim()) : null);
+            criteria.setStatus(status != null && !status.trim().isEmpty() ? QueryStatus.valueOf(status.trim()) : null);
+            criteria.setCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        QuerySearchResult result = queryService.searchQueriesWithContext(criteria);
+        List<QuerySummaryDto> queryDtos = queryMapper.toSummaryDtoList(result.getQueries());
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.hasMore()) {
+            response.header("X-Next-Cursor", result.getNextCursor());
+        }
+        return response.body(queryDtos);
+    }
+
+    // Full-text search, ranked with prefix matching on every term
+    @GetMapping("/search/text")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<List<QuerySummaryDto>> searchQueriesByText(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        if (page < 0 || size < 1 || size > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        Page<Query> results = queryService.searchQueriesByText(q, PageRequest.of(page, size));
+        List<QuerySummaryDto> queryDtos = queryMapper.toSummaryDtoList(results.getContent());
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(results.getTotalElements()))
+                .body(queryDtos);
+    }
+
+    @PostMapping("/search/text/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        int indexed = queryService.rebuildSearchIndex();
+        Map<String, Object> result = new java.util.HashMap<>();
+        result.put("indexedQueries", indexed);
+        return ResponseEntity.ok(result);
+    }
+
+    // Statistics endpoints - all served from one shared, periodically refreshed snapshot
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<QueryStatsDto> getQueryStats() {
+        return ResponseEntity.ok(queryStatsService.getStats());
     }
 
-    // Statistics endpoints
     @GetMapping("/stats/count-open/{team}")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Long> getOpenQueriesCount(@PathVariable String team) {
         try {
             QueryTeam queryTeam = QueryTeam.valueOf(team);
-            long count = queryService.countOpenQueriesByTeam(queryTeam);
+            long count = queryStatsService.getStats().getTeam(queryTeam.name()).getOpenCount();
             return ResponseEntity.ok(count);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
@@ -374,7 +467,7 @@ public class QueryController {
     public ResponseEntity<Long> getResolvedQueriesCount(@PathVariable String team) {
         try {
             QueryTeam queryTeam = QueryTeam.valueOf(team);
-            long count = queryService.countResolvedQueriesByTeam(queryTeam);
+            long count = queryStatsService.getStats().getTeam(queryTeam.name()).getResolvedCount();
             return ResponseEntity.ok(count);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
@@ -384,21 +477,21 @@ public class QueryController {
     @GetMapping("/stats/overdue-count")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Long> getOverdueQueriesCount() {
-        long count = queryService.countOverdueQueries();
+        long count = queryStatsService.getStats().getOverdueCount();
         return ResponseEntity.ok(count);
     }
 
     @GetMapping("/stats/created-today")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Long> getQueriesCreatedToday() {
-        long count = queryService.countQueriesCreatedToday();
+        long count = queryStatsService.getStats().getCreatedToday();
         return ResponseEntity.ok(count);
     }
 
     @GetMapping("/stats/resolved-today")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Long> getQueriesResolvedToday() {
-        long count = queryService.countQueriesResolvedToday();
+        long count = queryStatsService.getStats().getResolvedToday();
         return ResponseEntity.ok(count);
     }
 
@@ -407,7 +500,7 @@ public class QueryController {
     public ResponseEntity<Double> getAverageResolutionTime(@PathVariable String team) {
         try {
             QueryTeam queryTeam = QueryTeam.valueOf(team);
-            double avgTime = queryService.getAverageResolutionTimeHours(queryTeam);
+            double avgTime = queryStatsService.getStats().getTeam(queryTeam.name()).getAvgResolutionHours();
             return ResponseEntity.ok(avgTime);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
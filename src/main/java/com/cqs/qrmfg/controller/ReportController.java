@@ -6,10 +6,12 @@ import com.cqs.qrmfg.model.AuditLog;
 import com.cqs.qrmfg.service.UserService;
 import com.cqs.qrmfg.service.RoleService;
 import com.cqs.qrmfg.service.AuditLogService;
+import com.cqs.qrmfg.service.SystemAnalyticsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/qrmfg/api/v1/reports")
@@ -17,6 +19,7 @@ public class ReportController {
     @Autowired private UserService userService;
     @Autowired private RoleService roleService;
     @Autowired private AuditLogService auditLogService;
+    @Autowired private SystemAnalyticsService systemAnalyticsService;
 
     @GetMapping("/users")
     public List<User> getUserReport() {
@@ -30,39 +33,26 @@ public class ReportController {
 
 
     @GetMapping("/activity")
-    public List<AuditLog> getActivityReport() {
-        return auditLogService.findAll();
+    public List<AuditLog> getActivityReport(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        LocalDateTime from = start != null ? start : to.minusDays(AuditLogController.DEFAULT_WINDOW_DAYS);
+        return auditLogService.findByEventTimeBetween(from, to);
     }
 
     // Analytics endpoints
     @GetMapping("/analytics/user-stats")
     public Map<String, Object> getUserStats() {
-        List<User> users = userService.findAll();
-        long active = users.stream().filter(User::isEnabled).count();
-        long total = users.size();
-        Map<String, Object> result = new HashMap<>();
-        result.put("total", total);
-        result.put("active", active);
-        return result;
+        return systemAnalyticsService.getUserStats();
     }
 
     @GetMapping("/analytics/role-distribution")
     public Map<String, Long> getRoleDistribution() {
-        List<User> users = userService.findAll();
-        Map<String, Long> dist = new HashMap<>();
-        for (User u : users) {
-            for (Role r : u.getRoles()) {
-                dist.put(r.getName(), dist.getOrDefault(r.getName(), 0L) + 1);
-            }
-        }
-        return dist;
+        return systemAnalyticsService.getRoleDistribution();
     }
 
     @GetMapping("/analytics/activity-timeline")
     public Map<String, Long> getActivityTimeline() {
-        List<AuditLog> logs = auditLogService.findAll();
-        return logs.stream().collect(Collectors.groupingBy(
-            l -> l.getEventTime().toLocalDate().toString(), Collectors.counting()
-        ));
+        return systemAnalyticsService.getActivityTimeline();
     }
-} 
\ No newline at end of file
+}
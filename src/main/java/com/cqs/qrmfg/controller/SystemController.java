@@ -1,7 +1,6 @@
 package com.cqs.qrmfg.controller;
 
-import com.cqs.qrmfg.service.UserService;
-import com.cqs.qrmfg.service.UserSessionService;
+import com.cqs.qrmfg.service.SystemAnalyticsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import java.lang.management.ManagementFactory;
@@ -12,8 +11,7 @@ import java.util.Map;
 @RestController
 @RequestMapping("/qrmfg/api/v1/system")
 public class SystemController {
-    @Autowired private UserService userService;
-    @Autowired private UserSessionService userSessionService;
+    @Autowired private SystemAnalyticsService systemAnalyticsService;
 
     @GetMapping("/health")
     public Map<String, Object> getHealth() {
@@ -29,12 +27,6 @@ public class SystemController {
 
     @GetMapping("/stats")
     public Map<String, Object> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("activeUsers", userService.findAll().stream().filter(u -> u.isEnabled()).count());
-        stats.put("totalUsers", userService.findAll().size());
-        stats.put("activeSessions", userSessionService.findAll().stream().filter(s -> s.isActive()).count());
-        stats.put("totalSessions", userSessionService.findAll().size());
-        // Add more stats as needed
-        return stats;
+        return systemAnalyticsService.getSystemStats();
     }
-} 
\ No newline at end of file
+}
@@ -1,18 +1,37 @@
 package com.cqs.qrmfg.controller;
 
 import com.cqs.qrmfg.dto.AuditHistoryDto;
+import com.cqs.qrmfg.dto.ExportJobDto;
+import com.cqs.qrmfg.model.User;
+import com.cqs.qrmfg.model.WorkflowSnapshot;
+import com.cqs.qrmfg.service.ExportJobService;
 import com.cqs.qrmfg.service.WorkflowAuditService;
+import com.cqs.qrmfg.service.WorkflowSnapshotService;
+import com.cqs.qrmfg.util.AuditTrailWriter;
+import com.cqs.qrmfg.util.ExportFormat;
+import com.cqs.qrmfg.util.TableWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for workflow audit operations
@@ -22,15 +41,31 @@ import java.util.Map;
 @PreAuthorize("hasRole('USER')")
 public class WorkflowAuditController {
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     private WorkflowAuditService workflowAuditService;
 
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Autowired
+    private WorkflowSnapshotService workflowSnapshotService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Get complete audit history for a workflow
      */
     @GetMapping("/workflow/{workflowId}")
-    public ResponseEntity<List<AuditHistoryDto>> getWorkflowAuditHistory(@PathVariable Long workflowId) {
-        List<AuditHistoryDto> history = workflowAuditService.getWorkflowAuditHistory(workflowId);
+    public ResponseEntity<List<AuditHistoryDto>> getWorkflowAuditHistory(
+            @PathVariable Long workflowId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size) {
+        List<AuditHistoryDto> history = workflowAuditService.getWorkflowAuditHistory(workflowId, from, to, page, size);
         return ResponseEntity.ok(history);
     }
 
@@ -38,8 +73,13 @@ public class WorkflowAuditController {
      * Get complete audit trail including all related entities
      */
     @GetMapping("/workflow/{workflowId}/complete")
-    public ResponseEntity<List<AuditHistoryDto>> getCompleteWorkflowAuditTrail(@PathVariable Long workflowId) {
-        List<AuditHistoryDto> trail = workflowAuditService.getCompleteWorkflowAuditTrail(workflowId);
+    public ResponseEntity<List<AuditHistoryDto>> getCompleteWorkflowAuditTrail(
+            @PathVariable Long workflowId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size) {
+        List<AuditHistoryDto> trail = workflowAuditService.getCompleteWorkflowAuditTrail(workflowId, from, to, page, size);
         return ResponseEntity.ok(trail);
     }
 
@@ -96,32 +136,61 @@ public class WorkflowAuditController {
      */
     @PostMapping("/search")
     public ResponseEntity<List<AuditHistoryDto>> searchAuditLogs(@RequestBody Map<String, Object> searchParams) {
-        List<AuditHistoryDto> results = workflowAuditService.searchAuditLogs(searchParams);
-        return ResponseEntity.ok(results);
+        try {
+            List<AuditHistoryDto> results = workflowAuditService.searchAuditLogs(searchParams);
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
-     * Export audit logs for a workflow
+     * Export audit logs for a workflow as CSV, JSON or NDJSON, streamed as revisions are read
      */
     @GetMapping("/export/{workflowId}")
-    public ResponseEntity<String> exportAuditLogs(
+    public ResponseEntity<StreamingResponseBody> exportAuditLogs(
             @PathVariable Long workflowId,
-            @RequestParam(defaultValue = "csv") String format) {
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        
+        return streamAuditTrail("workflow_" + workflowId + "_audit", format, gzip,
+                sink -> workflowAuditService.exportAuditLogs(workflowId, sink));
+    }
+
+    /**
+     * Export the audit logs of every workflow in a project, streamed one workflow after another
+     */
+    @GetMapping("/export/project/{projectCode}")
+    public ResponseEntity<StreamingResponseBody> exportProjectAuditLogs(
+            @PathVariable String projectCode,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
         
-        String exportData = workflowAuditService.exportAuditLogs(workflowId, format);
+        return streamAuditTrail("project_" + projectCode.replaceAll("[^A-Za-z0-9_-]", "_") + "_audit", format, gzip,
+                sink -> workflowAuditService.exportProjectAuditLogs(projectCode, sink));
+    }
+
+    /**
+     * Start a background export of the complete audit trail of a workflow
+     */
+    @PostMapping("/export/{workflowId}/jobs")
+    public ResponseEntity<ExportJobDto> submitAuditExportJob(
+            @PathVariable Long workflowId,
+            @RequestParam(defaultValue = "csv") String format,
+            Authentication authentication) {
         
-        HttpHeaders headers = new HttpHeaders();
-        if ("csv".equals(format)) {
-            headers.setContentType(MediaType.parseMediaType("text/csv"));
-            headers.setContentDispositionFormData("attachment", "workflow_" + workflowId + "_audit.csv");
-        } else {
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setContentDispositionFormData("attachment", "workflow_" + workflowId + "_audit.json");
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
         
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(exportData);
+        ExportJobDto job = exportJobService.submit("WORKFLOW_AUDIT",
+                Collections.singletonMap("workflowId", workflowId), exportFormat,
+                "Workflow " + workflowId + " Audit", getCurrentUsername(authentication),
+                writer -> writeAuditTrail(workflowId, writer));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
 
     /**
@@ -134,11 +203,124 @@ public class WorkflowAuditController {
     }
 
     /**
-     * Get read-only view of completed workflow
+     * Get read-only view of completed workflow. Completed workflows are served from their
+     * stored snapshot with a strong ETag; other workflows are assembled on each request.
      */
     @GetMapping("/workflow/{workflowId}/readonly")
-    public ResponseEntity<Map<String, Object>> getReadOnlyWorkflowView(@PathVariable Long workflowId) {
-        Map<String, Object> readOnlyView = workflowAuditService.getReadOnlyWorkflowView(workflowId);
-        return ResponseEntity.ok(readOnlyView);
+    public ResponseEntity<?> getReadOnlyWorkflowView(
+            @PathVariable Long workflowId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        WorkflowSnapshot snapshot = workflowSnapshotService.getSnapshot(workflowId);
+        if (snapshot == null) {
+            Map<String, Object> readOnlyView = workflowAuditService.getReadOnlyWorkflowView(workflowId);
+            return ResponseEntity.ok(readOnlyView);
+        }
+        
+        // Each encoding is a different representation, so it gets its own strong ETag
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = "\"" + snapshot.getContentHash() + (gzip ? "-gzip" : "") + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getSnapshotData());
+        }
+        return response.body(workflowSnapshotService.decompress(snapshot));
+    }
+
+    /**
+     * Whether the Accept-Encoding header allows gzip: listed, or covered by "*", with a
+     * non-zero qvalue. "gzip;q=0" explicitly refuses it.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double wildcardQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().toLowerCase();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzipQuality = quality;
+            } else if (name.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+        Double quality = gzipQuality != null ? gzipQuality : wildcardQuality;
+        return quality != null && quality > 0;
+    }
+
+    private void writeAuditTrail(Long workflowId, TableWriter writer) {
+        AuditTrailWriter.writeHeader(writer);
+        workflowAuditService.exportAuditLogs(workflowId, entry -> AuditTrailWriter.writeRow(writer, entry));
+        writer.finish();
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamAuditTrail(String baseName, String format, boolean gzip,
+                                                                   Consumer<Consumer<AuditHistoryDto>> source) {
+        // Validate before streaming starts; afterwards the status can no longer change
+        AuditTrailWriter.Format trailFormat;
+        try {
+            trailFormat = AuditTrailWriter.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(trailFormat.getContentType()));
+        headers.setContentDispositionFormData("attachment", baseName + "." + trailFormat.getExtension());
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        
+        return ResponseEntity.ok().headers(headers).body(out -> {
+            // Sync flush so flushed entries reach the client instead of waiting in the deflater
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE, true) : null;
+            AuditTrailWriter writer = new AuditTrailWriter(gzipOut != null ? gzipOut : out, trailFormat, objectMapper);
+            writer.start();
+            source.accept(writer::write);
+            writer.finish();
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+        });
+    }
+
+    private String getCurrentUsername(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return ((User) authentication.getPrincipal()).getUsername();
+        }
+        return "SYSTEM";
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String>> handleExportQueueFull(RejectedExecutionException ex) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Export queue full");
+        errorResponse.put("message", "Too many exports are waiting, please retry later");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package com.cqs.qrmfg.controller;
 import com.cqs.qrmfg.dto.DocumentSummary;
 import com.cqs.qrmfg.dto.WorkflowCreateRequest;
 import com.cqs.qrmfg.dto.WorkflowSummaryDto;
+import com.cqs.qrmfg.dto.WorkflowTransitionResultDto;
+import com.cqs.qrmfg.exception.WorkflowConflictException;
 import com.cqs.qrmfg.exception.WorkflowException;
 import com.cqs.qrmfg.exception.WorkflowNotFoundException;
 import com.cqs.qrmfg.model.MaterialWorkflow;
@@ -173,6 +175,36 @@ public class WorkflowController {
         }
     }
 
+    @PutMapping("/bulk/transition")
+    @PreAuthorize("hasRole('JVC_USER') or hasRole('PLANT_USER') or hasRole('ADMIN')")
+    public ResponseEntity<List<WorkflowTransitionResultDto>> bulkTransitionToState(
+            @RequestBody Map<String, Object> request,
+            Authentication authentication) {
+        
+        Object idsValue = request.get("workflowIds");
+        Object newStateValue = request.get("newState");
+        if (!(idsValue instanceof List) || newStateValue == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            WorkflowState newState = WorkflowState.valueOf(newStateValue.toString());
+            if (!isBulkTransitionAllowed(authentication, newState)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            
+            List<Long> workflowIds = new java.util.ArrayList<>();
+            for (Object id : (List<?>) idsValue) {
+                workflowIds.add(Long.valueOf(id.toString()));
+            }
+            
+            String updatedBy = getCurrentUsername(authentication);
+            return ResponseEntity.ok(workflowService.bulkTransitionToState(workflowIds, newState, updatedBy));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Query-based operations
     @GetMapping("/state/{state}")
     @PreAuthorize("hasRole('USER')")
@@ -307,6 +339,26 @@ public class WorkflowController {
         return ResponseEntity.ok(documents);
     }
 
+    // Bulk transitions follow the same role rules as the single extend/complete endpoints
+    private boolean isBulkTransitionAllowed(Authentication authentication, WorkflowState newState) {
+        if (hasAuthority(authentication, "ROLE_ADMIN")) {
+            return true;
+        }
+        switch (newState) {
+            case PLANT_PENDING:
+                return hasAuthority(authentication, "ROLE_JVC_USER");
+            case COMPLETED:
+                return hasAuthority(authentication, "ROLE_PLANT_USER");
+            default:
+                return false;
+        }
+    }
+
+    private boolean hasAuthority(Authentication authentication, String authority) {
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(granted -> authority.equals(granted.getAuthority()));
+    }
+
     // Utility method to get current username
     private String getCurrentUsername(Authentication authentication) {
         if (authentication != null && authentication.getPrincipal() instanceof User) {
@@ -324,6 +376,14 @@ public class WorkflowController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    @ExceptionHandler(WorkflowConflictException.class)
+    public ResponseEntity<Map<String, String>> handleWorkflowConflict(WorkflowConflictException ex) {
+        Map<String, String> errorResponse = new java.util.HashMap<>();
+        errorResponse.put("error", "Workflow conflict");
+        errorResponse.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
     @ExceptionHandler(WorkflowException.class)
     public ResponseEntity<Map<String, String>> handleWorkflowException(WorkflowException ex) {
         Map<String, String> errorResponse = new java.util.HashMap<>();
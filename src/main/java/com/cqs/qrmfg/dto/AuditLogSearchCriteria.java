@@ -0,0 +1,102 @@
+package com.cqs.qrmfg.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Filters, requested fields and keyset position for the audit log search.
+ * Results are ordered newest first by (eventTime, id); the cursor is the
+ * position of the last row of the previous page.
+ */
+public class AuditLogSearchCriteria {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private Long userId;
+    private String username;
+    private String action;
+    private String entityType;
+    private String entityId;
+    private String severity;
+    private String category;
+    private String result;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private List<String> fields;
+    private LocalDateTime beforeEventTime;
+    private Long beforeId;
+    private int limit = DEFAULT_LIMIT;
+
+    public AuditLogSearchCriteria() {}
+
+    public static String encodeCursor(LocalDateTime eventTime, Long id) {
+        String raw = eventTime + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            this.beforeEventTime = null;
+            this.beforeId = null;
+            return;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('_');
+            this.beforeEventTime = LocalDateTime.parse(raw.substring(0, separator));
+            this.beforeId = Long.valueOf(raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid audit search cursor: " + cursor);
+        }
+    }
+
+    public boolean hasCursor() {
+        return beforeEventTime != null && beforeId != null;
+    }
+
+    // Getters and setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+
+    public String getSeverity() { return severity; }
+    public void setSeverity(String severity) { this.severity = severity; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public String getResult() { return result; }
+    public void setResult(String result) { this.result = result; }
+
+    public LocalDateTime getStart() { return start; }
+    public void setStart(LocalDateTime start) { this.start = start; }
+
+    public LocalDateTime getEnd() { return end; }
+    public void setEnd(LocalDateTime end) { this.end = end; }
+
+    public List<String> getFields() { return fields; }
+    public void setFields(List<String> fields) { this.fields = fields; }
+
+    public LocalDateTime getBeforeEventTime() { return beforeEventTime; }
+    public void setBeforeEventTime(LocalDateTime beforeEventTime) { this.beforeEventTime = beforeEventTime; }
+
+    public Long getBeforeId() { return beforeId; }
+    public void setBeforeId(Long beforeId) { this.beforeId = beforeId; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = Math.max(1, Math.min(limit, MAX_LIMIT)); }
+}
@@ -0,0 +1,24 @@
+package com.cqs.qrmfg.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of audit log rows, holding only the requested fields, with the
+ * cursor for the next page or a null cursor when the last page has been reached
+ */
+public class AuditLogSearchResult {
+    private final List<Map<String, Object>> rows;
+    private final String nextCursor;
+
+    public AuditLogSearchResult(List<Map<String, Object>> rows, String nextCursor) {
+        this.rows = rows;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Map<String, Object>> getRows() { return rows; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
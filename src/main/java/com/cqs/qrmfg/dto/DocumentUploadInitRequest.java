@@ -0,0 +1,35 @@
+package com.cqs.qrmfg.dto;
+
+/**
+ * Starts a chunked document upload. The checksum is the SHA-256 of the whole
+ * file in hex and is verified when the upload is completed.
+ */
+public class DocumentUploadInitRequest {
+    private String fileName;
+    private long fileSize;
+    private String checksum;
+    private String projectCode;
+    private String materialCode;
+    private Long workflowId;
+
+    public DocumentUploadInitRequest() {}
+
+    // Getters and setters
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+
+    public String getChecksum() { return checksum; }
+    public void setChecksum(String checksum) { this.checksum = checksum; }
+
+    public String getProjectCode() { return projectCode; }
+    public void setProjectCode(String projectCode) { this.projectCode = projectCode; }
+
+    public String getMaterialCode() { return materialCode; }
+    public void setMaterialCode(String materialCode) { this.materialCode = materialCode; }
+
+    public Long getWorkflowId() { return workflowId; }
+    public void setWorkflowId(Long workflowId) { this.workflowId = workflowId; }
+}
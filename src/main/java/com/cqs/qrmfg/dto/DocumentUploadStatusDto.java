@@ -0,0 +1,49 @@
+package com.cqs.qrmfg.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked document upload. A client resuming an interrupted
+ * transfer sends its next chunk from nextOffset.
+ */
+public class DocumentUploadStatusDto {
+    private String uploadId;
+    private String fileName;
+    private long fileSize;
+    private long receivedBytes;
+    private long nextOffset; // first byte not yet received, fileSize when all are in
+    private long maxChunkSize;
+    private boolean complete;
+    private Long documentId; // set once the upload has been completed
+    private LocalDateTime expiresAt;
+
+    public DocumentUploadStatusDto() {}
+
+    // Getters and setters
+    public String getUploadId() { return uploadId; }
+    public void setUploadId(String uploadId) { this.uploadId = uploadId; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+
+    public long getReceivedBytes() { return receivedBytes; }
+    public void setReceivedBytes(long receivedBytes) { this.receivedBytes = receivedBytes; }
+
+    public long getNextOffset() { return nextOffset; }
+    public void setNextOffset(long nextOffset) { this.nextOffset = nextOffset; }
+
+    public long getMaxChunkSize() { return maxChunkSize; }
+    public void setMaxChunkSize(long maxChunkSize) { this.maxChunkSize = maxChunkSize; }
+
+    public boolean isComplete() { return complete; }
+    public void setComplete(boolean complete) { this.complete = complete; }
+
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,92 @@
+package com.cqs.qrmfg.dto;
+
+import com.cqs.qrmfg.model.QueryStatus;
+import com.cqs.qrmfg.model.QueryTeam;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Filters and keyset position for the query context search.
+ * Results are ordered newest first by (createdAt, id); the cursor is the
+ * position of the last row of the previous page.
+ */
+public class QuerySearchCriteria {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private String materialCode;
+    private String projectCode;
+    private String plantCode;
+    private String blockId;
+    private QueryTeam team;
+    private QueryStatus status;
+    private String priority;
+    private int minDaysOpen;
+    private LocalDateTime afterCreatedAt;
+    private Long afterId;
+    private int limit = DEFAULT_LIMIT;
+
+    public QuerySearchCriteria() {}
+
+    public static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "_" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.trim().isEmpty()) {
+            this.afterCreatedAt = null;
+            this.afterId = null;
+            return;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('_');
+            this.afterCreatedAt = LocalDateTime.parse(raw.substring(0, separator));
+            this.afterId = Long.valueOf(raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid search cursor: " + cursor);
+        }
+    }
+
+    public boolean hasCursor() {
+        return afterCreatedAt != null && afterId != null;
+    }
+
+    // Getters and setters
+    public String getMaterialCode() { return materialCode; }
+    public void setMaterialCode(String materialCode) { this.materialCode = materialCode; }
+
+    public String getProjectCode() { return projectCode; }
+    public void setProjectCode(String projectCode) { this.projectCode = projectCode; }
+
+    public String getPlantCode() { return plantCode; }
+    public void setPlantCode(String plantCode) { this.plantCode = plantCode; }
+
+    public String getBlockId() { return blockId; }
+    public void setBlockId(String blockId) { this.blockId = blockId; }
+
+    public QueryTeam getTeam() { return team; }
+    public void setTeam(QueryTeam team) { this.team = team; }
+
+    public QueryStatus getStatus() { return status; }
+    public void setStatus(QueryStatus status) { this.status = status; }
+
+    public String getPriority() { return priority; }
+    public void setPriority(String priority) { this.priority = priority; }
+
+    public int getMinDaysOpen() { return minDaysOpen; }
+    public void setMinDaysOpen(int minDaysOpen) { this.minDaysOpen = minDaysOpen; }
+
+    public LocalDateTime getAfterCreatedAt() { return afterCreatedAt; }
+    public void setAfterCreatedAt(LocalDateTime afterCreatedAt) { this.afterCreatedAt = afterCreatedAt; }
+
+    public Long getAfterId() { return afterId; }
+    public void setAfterId(Long afterId) { this.afterId = afterId; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = Math.max(1, Math.min(limit, MAX_LIMIT)); }
+}
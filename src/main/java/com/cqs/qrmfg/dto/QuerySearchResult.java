@@ -0,0 +1,25 @@
+package com.cqs.qrmfg.dto;
+
+import com.cqs.qrmfg.model.Query;
+
+import java.util.List;
+
+/**
+ * One page of query search results with the cursor for the next page,
+ * or a null cursor when the last page has been reached
+ */
+public class QuerySearchResult {
+    private final List<Query> queries;
+    private final String nextCursor;
+
+    public QuerySearchResult(List<Query> queries, String nextCursor) {
+        this.queries = queries;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Query> getQueries() { return queries; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
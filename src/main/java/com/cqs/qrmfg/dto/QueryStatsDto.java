@@ -0,0 +1,81 @@
+package com.cqs.qrmfg.dto;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable query statistics snapshot: per-team counters plus overall totals,
+ * all computed by one aggregated pass over the hot and archived queries
+ */
+public class QueryStatsDto {
+    private final LocalDateTime computedAt;
+    private final Map<String, TeamStats> teams;
+    private final long totalOpen;
+    private final long totalResolved;
+    private final long overdueCount;
+    private final long createdToday;
+    private final long resolvedToday;
+
+    public QueryStatsDto(LocalDateTime computedAt, Map<String, TeamStats> teams) {
+        this.computedAt = computedAt;
+        this.teams = Collections.unmodifiableMap(teams);
+
+        long open = 0, resolved = 0, overdue = 0, created = 0, resolvedNow = 0;
+        for (TeamStats stats : teams.values()) {
+            open += stats.getOpenCount();
+            resolved += stats.getResolvedCount();
+            overdue += stats.getOverdueCount();
+            created += stats.getCreatedToday();
+            resolvedNow += stats.getResolvedToday();
+        }
+        this.totalOpen = open;
+        this.totalResolved = resolved;
+        this.overdueCount = overdue;
+        this.createdToday = created;
+        this.resolvedToday = resolvedNow;
+    }
+
+    public TeamStats getTeam(String team) {
+        TeamStats stats = teams.get(team);
+        return stats != null ? stats : TeamStats.EMPTY;
+    }
+
+    // Getters
+    public LocalDateTime getComputedAt() { return computedAt; }
+    public Map<String, TeamStats> getTeams() { return teams; }
+    public long getTotalOpen() { return totalOpen; }
+    public long getTotalResolved() { return totalResolved; }
+    public long getOverdueCount() { return overdueCount; }
+    public long getCreatedToday() { return createdToday; }
+    public long getResolvedToday() { return resolvedToday; }
+
+    public static class TeamStats {
+        static final TeamStats EMPTY = new TeamStats(0, 0, 0, 0, 0, 0.0);
+
+        private final long openCount;
+        private final long resolvedCount;
+        private final long overdueCount;
+        private final long createdToday;
+        private final long resolvedToday;
+        private final double avgResolutionHours;
+
+        public TeamStats(long openCount, long resolvedCount, long overdueCount,
+                         long createdToday, long resolvedToday, double avgResolutionHours) {
+            this.openCount = openCount;
+            this.resolvedCount = resolvedCount;
+            this.overdueCount = overdueCount;
+            this.createdToday = createdToday;
+            this.resolvedToday = resolvedToday;
+            this.avgResolutionHours = avgResolutionHours;
+        }
+
+        // Getters
+        public long getOpenCount() { return openCount; }
+        public long getResolvedCount() { return resolvedCount; }
+        public long getOverdueCount() { return overdueCount; }
+        public long getCreatedToday() { return createdToday; }
+        public long getResolvedToday() { return resolvedToday; }
+        public double getAvgResolutionHours() { return avgResolutionHours; }
+    }
+}
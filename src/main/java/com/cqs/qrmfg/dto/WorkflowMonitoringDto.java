@@ -1,5 +1,6 @@
 package com.cqs.qrmfg.dto;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 
 public class WorkflowMonitoringDto {
@@ -15,6 +16,7 @@ public class WorkflowMonitoringDto {
     private long totalQueries;
     private long openQueries;
     private long overdueQueries;
+    private LocalDateTime generatedAt;
 
     // Constructors
     public WorkflowMonitoringDto() {}
@@ -134,4 +136,12 @@ public class WorkflowMonitoringDto {
     public void setOverdueQueries(long overdueQueries) {
         this.overdueQueries = overdueQueries;
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    public void setGeneratedAt(LocalDateTime generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+}
@@ -0,0 +1,44 @@
+package com.cqs.qrmfg.dto;
+
+/**
+ * Outcome of a single item in a bulk workflow state transition
+ */
+public class WorkflowTransitionResultDto {
+    private Long workflowId;
+    private String materialCode;
+    private String previousState;
+    private String newState;
+    private boolean success;
+    private String message;
+
+    public WorkflowTransitionResultDto() {}
+
+    public WorkflowTransitionResultDto(Long workflowId, String materialCode, String previousState,
+                                       String newState, boolean success, String message) {
+        this.workflowId = workflowId;
+        this.materialCode = materialCode;
+        this.previousState = previousState;
+        this.newState = newState;
+        this.success = success;
+        this.message = message;
+    }
+
+    // Getters and setters
+    public Long getWorkflowId() { return workflowId; }
+    public void setWorkflowId(Long workflowId) { this.workflowId = workflowId; }
+
+    public String getMaterialCode() { return materialCode; }
+    public void setMaterialCode(String materialCode) { this.materialCode = materialCode; }
+
+    public String getPreviousState() { return previousState; }
+    public void setPreviousState(String previousState) { this.previousState = previousState; }
+
+    public String getNewState() { return newState; }
+    public void setNewState(String newState) { this.newState = newState; }
+
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
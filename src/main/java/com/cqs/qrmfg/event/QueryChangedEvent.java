@@ -0,0 +1,54 @@
+package com.cqs.qrmfg.event;
+
+import com.cqs.qrmfg.dto.QuerySummaryDto;
+import com.cqs.qrmfg.model.QueryTeam;
+
+/**
+ * Published whenever a query is created, changed or removed. Carries a summary
+ * snapshot taken inside the transaction so listeners running after commit
+ * never touch lazy entity state.
+ */
+public class QueryChangedEvent {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        REASSIGNED,
+        RESOLVED,
+        DELETED
+    }
+
+    private final Long queryId;
+    private final ChangeType changeType;
+    private final QuerySummaryDto query;
+    private final QueryTeam previousTeam;
+
+    public QueryChangedEvent(Long queryId, ChangeType changeType, QuerySummaryDto query) {
+        this(queryId, changeType, query, null);
+    }
+
+    public QueryChangedEvent(Long queryId, ChangeType changeType, QuerySummaryDto query, QueryTeam previousTeam) {
+        this.queryId = queryId;
+        this.changeType = changeType;
+        this.query = query;
+        this.previousTeam = previousTeam;
+    }
+
+    public static QueryChangedEvent deleted(Long queryId) {
+        return new QueryChangedEvent(queryId, ChangeType.DELETED, null);
+    }
+
+    public Long getQueryId() { return queryId; }
+
+    public ChangeType getChangeType() { return changeType; }
+
+    /**
+     * Summary of the query after the change, or null when it was deleted
+     */
+    public QuerySummaryDto getQuery() { return query; }
+
+    /**
+     * Team the query was assigned to before a REASSIGNED change, otherwise null
+     */
+    public QueryTeam getPreviousTeam() { return previousTeam; }
+}
@@ -0,0 +1,55 @@
+package com.cqs.qrmfg.event;
+
+import com.cqs.qrmfg.model.MaterialWorkflow;
+import com.cqs.qrmfg.model.WorkflowState;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a workflow is created or moves to another state. Carries only
+ * plain values copied inside the transaction, never the entity itself.
+ */
+public class WorkflowStateChangedEvent {
+
+    private final Long workflowId;
+    private final String plantCode;
+    private final WorkflowState previousState;
+    private final WorkflowState newState;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime changedAt;
+
+    public WorkflowStateChangedEvent(Long workflowId, String plantCode, WorkflowState previousState,
+                                     WorkflowState newState, LocalDateTime createdAt, LocalDateTime changedAt) {
+        this.workflowId = workflowId;
+        this.plantCode = plantCode;
+        this.previousState = previousState;
+        this.newState = newState;
+        this.createdAt = createdAt;
+        this.changedAt = changedAt;
+    }
+
+    public static WorkflowStateChangedEvent created(MaterialWorkflow workflow) {
+        return new WorkflowStateChangedEvent(workflow.getId(), workflow.getPlantCode(), null,
+            workflow.getState(), workflow.getCreatedAt(), workflow.getCreatedAt());
+    }
+
+    public static WorkflowStateChangedEvent transitioned(MaterialWorkflow workflow, WorkflowState previousState) {
+        return new WorkflowStateChangedEvent(workflow.getId(), workflow.getPlantCode(), previousState,
+            workflow.getState(), workflow.getCreatedAt(), workflow.getLastModified());
+    }
+
+    public Long getWorkflowId() { return workflowId; }
+
+    public String getPlantCode() { return plantCode; }
+
+    /**
+     * State before the change, or null for a newly created workflow
+     */
+    public WorkflowState getPreviousState() { return previousState; }
+
+    public WorkflowState getNewState() { return newState; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+}
@@ -0,0 +1,11 @@
+package com.cqs.qrmfg.exception;
+
+public class WorkflowConflictException extends WorkflowException {
+    public WorkflowConflictException(String message) {
+        super(message);
+    }
+    
+    public WorkflowConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
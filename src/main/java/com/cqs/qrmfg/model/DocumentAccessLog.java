@@ -1,16 +1,18 @@
 package com.cqs.qrmfg.model;
 
-import org.hibernate.envers.Audited;
+import org.hibernate.annotations.Immutable;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 /**
- * Entity to track document access and downloads for audit purposes
+ * Entity to track document access and downloads for audit purposes.
+ * The log is append-only: rows are inserted in batches by DocumentAccessLogWriter
+ * and never updated, so they are not versioned by Envers.
  */
 @Entity
 @Table(name = "document_access_logs")
-@Audited
+@Immutable
 public class DocumentAccessLog {
 
     @Id
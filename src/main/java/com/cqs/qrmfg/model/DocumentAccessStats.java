@@ -0,0 +1,38 @@
+package com.cqs.qrmfg.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Per document access counters. Rows are maintained incrementally by
+ * DocumentAccessLogWriter with JDBC MERGE statements in the same transaction
+ * as the access log rows they summarise; the mapping exists so the table is
+ * part of the generated schema and can be read through JPA.
+ */
+@Entity
+@Table(name = "qrmfg_document_access_stats")
+public class DocumentAccessStats {
+
+    @Id
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    // Granted downloads
+    @Column(name = "download_count", nullable = false)
+    private long downloadCount;
+
+    // Most recent granted access of any type
+    @Column(name = "last_accessed_at")
+    private LocalDateTime lastAccessedAt;
+
+    public DocumentAccessStats() {}
+
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public long getDownloadCount() { return downloadCount; }
+    public void setDownloadCount(long downloadCount) { this.downloadCount = downloadCount; }
+
+    public LocalDateTime getLastAccessedAt() { return lastAccessedAt; }
+    public void setLastAccessedAt(LocalDateTime lastAccessedAt) { this.lastAccessedAt = lastAccessedAt; }
+}
@@ -64,6 +64,10 @@ public class MaterialWorkflow {
     @Column(name = "updated_by", length = 50)
     private String updatedBy;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @OneToMany(mappedBy = "workflow", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Query> queries = new ArrayList<>();
 
@@ -179,6 +183,9 @@ public class MaterialWorkflow {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public String getProjectCode() { return projectCode; }
     public void setProjectCode(String projectCode) { this.projectCode = projectCode; }
 
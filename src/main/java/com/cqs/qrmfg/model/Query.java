@@ -64,6 +64,10 @@ public class Query {
     @Column(name = "updated_by", length = 50)
     private String updatedBy;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     public Query() {}
 
     public Query(MaterialWorkflow workflow, String question, QueryTeam assignedTeam, String raisedBy) {
@@ -144,6 +148,9 @@ public class Query {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     public MaterialWorkflow getWorkflow() { return workflow; }
     public void setWorkflow(MaterialWorkflow workflow) { this.workflow = workflow; }
 
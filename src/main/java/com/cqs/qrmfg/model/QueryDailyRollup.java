@@ -0,0 +1,86 @@
+package com.cqs.qrmfg.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Per day and team query counters. Rows are maintained incrementally by
+ * MetricsRollupService with JDBC MERGE statements; the mapping exists so the
+ * table is part of the generated schema and can be read through JPA.
+ */
+@Entity
+@Table(name = "qrmfg_query_daily_rollup")
+@IdClass(QueryDailyRollup.Key.class)
+public class QueryDailyRollup {
+
+    @Id
+    @Column(name = "rollup_day", nullable = false)
+    private LocalDate rollupDay;
+
+    @Id
+    @Column(name = "assigned_team", nullable = false, length = 20)
+    private String assignedTeam;
+
+    // Queries raised on this day
+    @Column(name = "created_count", nullable = false)
+    private long createdCount;
+
+    // Queries resolved on this day
+    @Column(name = "resolved_count", nullable = false)
+    private long resolvedCount;
+
+    // Sum of created -> resolved hours for the queries resolved on this day
+    @Column(name = "resolution_hours_sum", nullable = false)
+    private double resolutionHoursSum;
+
+    // Queries resolved on this day within the SLA
+    @Column(name = "sla_met_count", nullable = false)
+    private long slaMetCount;
+
+    public QueryDailyRollup() {}
+
+    public LocalDate getRollupDay() { return rollupDay; }
+    public void setRollupDay(LocalDate rollupDay) { this.rollupDay = rollupDay; }
+
+    public String getAssignedTeam() { return assignedTeam; }
+    public void setAssignedTeam(String assignedTeam) { this.assignedTeam = assignedTeam; }
+
+    public long getCreatedCount() { return createdCount; }
+    public void setCreatedCount(long createdCount) { this.createdCount = createdCount; }
+
+    public long getResolvedCount() { return resolvedCount; }
+    public void setResolvedCount(long resolvedCount) { this.resolvedCount = resolvedCount; }
+
+    public double getResolutionHoursSum() { return resolutionHoursSum; }
+    public void setResolutionHoursSum(double resolutionHoursSum) { this.resolutionHoursSum = resolutionHoursSum; }
+
+    public long getSlaMetCount() { return slaMetCount; }
+    public void setSlaMetCount(long slaMetCount) { this.slaMetCount = slaMetCount; }
+
+    public static class Key implements Serializable {
+        private LocalDate rollupDay;
+        private String assignedTeam;
+
+        public Key() {}
+
+        public Key(LocalDate rollupDay, String assignedTeam) {
+            this.rollupDay = rollupDay;
+            this.assignedTeam = assignedTeam;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(rollupDay, key.rollupDay) && Objects.equals(assignedTeam, key.assignedTeam);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rollupDay, assignedTeam);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cqs.qrmfg.model;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Per day, plant and state workflow counters. Maintained incrementally by
+ * MetricsRollupService; completions are the entered count of the COMPLETED row.
+ */
+@Entity
+@Table(name = "qrmfg_workflow_daily_rollup")
+@IdClass(WorkflowDailyRollup.Key.class)
+public class WorkflowDailyRollup {
+
+    @Id
+    @Column(name = "rollup_day", nullable = false)
+    private LocalDate rollupDay;
+
+    @Id
+    @Column(name = "plant_code", nullable = false, length = 50)
+    private String plantCode;
+
+    @Id
+    @Column(name = "workflow_state", nullable = false, length = 20)
+    private String workflowState;
+
+    // Workflows created in or moved into this state on this day
+    @Column(name = "entered_count", nullable = false)
+    private long enteredCount;
+
+    // Workflows moved out of this state on this day
+    @Column(name = "exited_count", nullable = false)
+    private long exitedCount;
+
+    // Sum of created -> completed hours, only populated on the COMPLETED row
+    @Column(name = "completion_hours_sum", nullable = false)
+    private double completionHoursSum;
+
+    public WorkflowDailyRollup() {}
+
+    public LocalDate getRollupDay() { return rollupDay; }
+    public void setRollupDay(LocalDate rollupDay) { this.rollupDay = rollupDay; }
+
+    public String getPlantCode() { return plantCode; }
+    public void setPlantCode(String plantCode) { this.plantCode = plantCode; }
+
+    public String getWorkflowState() { return workflowState; }
+    public void setWorkflowState(String workflowState) { this.workflowState = workflowState; }
+
+    public long getEnteredCount() { return enteredCount; }
+    public void setEnteredCount(long enteredCount) { this.enteredCount = enteredCount; }
+
+    public long getExitedCount() { return exitedCount; }
+    public void setExitedCount(long exitedCount) { this.exitedCount = exitedCount; }
+
+    public double getCompletionHoursSum() { return completionHoursSum; }
+    public void setCompletionHoursSum(double completionHoursSum) { this.completionHoursSum = completionHoursSum; }
+
+    public static class Key implements Serializable {
+        private LocalDate rollupDay;
+        private String plantCode;
+        private String workflowState;
+
+        public Key() {}
+
+        public Key(LocalDate rollupDay, String plantCode, String workflowState) {
+            this.rollupDay = rollupDay;
+            this.plantCode = plantCode;
+            this.workflowState = workflowState;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(rollupDay, key.rollupDay) && Objects.equals(plantCode, key.plantCode)
+                && Objects.equals(workflowState, key.workflowState);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rollupDay, plantCode, workflowState);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.cqs.qrmfg.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Gzip-compressed JSON of the read-only view of a completed workflow. Written once
+ * by WorkflowSnapshotService when the workflow completes and served as stored
+ * while the workflow is still in that completion; removed again if it is reopened.
+ */
+@Entity
+@Table(name = "qrmfg_workflow_snapshots")
+public class WorkflowSnapshot {
+
+    @Id
+    @Column(name = "workflow_id", nullable = false)
+    private Long workflowId;
+
+    @Lob
+    @Column(name = "snapshot_data", nullable = false)
+    private byte[] snapshotData;
+
+    // SHA-256 of the uncompressed JSON, the basis of the ETag
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "json_size", nullable = false)
+    private long jsonSize;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // completedAt of the workflow when the snapshot was taken
+    @Column(name = "workflow_completed_at")
+    private LocalDateTime workflowCompletedAt;
+
+    public WorkflowSnapshot() {}
+
+    public WorkflowSnapshot(Long workflowId, byte[] snapshotData, String contentHash, long jsonSize,
+                            LocalDateTime createdAt, LocalDateTime workflowCompletedAt) {
+        this.workflowId = workflowId;
+        this.snapshotData = snapshotData;
+        this.contentHash = contentHash;
+        this.jsonSize = jsonSize;
+        this.createdAt = createdAt;
+        this.workflowCompletedAt = workflowCompletedAt;
+    }
+
+    public Long getWorkflowId() { return workflowId; }
+    public void setWorkflowId(Long workflowId) { this.workflowId = workflowId; }
+
+    public byte[] getSnapshotData() { return snapshotData; }
+    public void setSnapshotData(byte[] snapshotData) { this.snapshotData = snapshotData; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public long getJsonSize() { return jsonSize; }
+    public void setJsonSize(long jsonSize) { this.jsonSize = jsonSize; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getWorkflowCompletedAt() { return workflowCompletedAt; }
+    public void setWorkflowCompletedAt(LocalDateTime workflowCompletedAt) { this.workflowCompletedAt = workflowCompletedAt; }
+}
@@ -2,8 +2,10 @@ package com.cqs.qrmfg.repository;
 
 import com.cqs.qrmfg.dto.WorkflowSummaryDto;
 import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
@@ -16,8 +18,27 @@ import java.util.Map;
 @Repository
 public class DashboardRepository {
 
+    // Days the workflow has been waiting in its current state
+    private static final String DAYS_PENDING =
+        "(CASE " +
+        "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
+        "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
+        "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
+        "    ELSE 0 " +
+        "END)";
+
+    // Open queries are few, so this selects workflows through the query_status index
+    private static final String HAS_OPEN_QUERIES =
+        "w.id IN (SELECT workflow_id FROM qrmfg_queries WHERE query_status = 'OPEN')";
+
+    private static final RowMapper<WorkflowSummaryDto> WORKFLOW_SUMMARY_MAPPER =
+        (rs, rowNum) -> mapWorkflowSummary(rs);
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WorkflowArchiveService archiveService;
     
     /**
      * Get workflow counts by state
@@ -57,28 +78,11 @@ public class DashboardRepository {
      * @return List of overdue workflow summaries
      */
     public List<WorkflowSummaryDto> getOverdueWorkflows(int dayThreshold) {
-        String sql = "SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.assigned_plant, w.initiated_by, " +
-                     "w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
-                     "CASE " +
-                     "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
-                     "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
-                     "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
-                     "    ELSE 0 " +
-                     "END as days_pending, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id) as total_queries, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') as open_queries " +
-                     "FROM qrmfg_material_workflows w " +
-                     "WHERE w.workflow_state != 'COMPLETED' " +
-                     "AND ( " +
-                     "    (w.workflow_state = 'JVC_PENDING' AND TRUNC(SYSDATE - w.created_at) > ?) " +
-                     "    OR (w.workflow_state = 'PLANT_PENDING' AND TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) > ?) " +
-                     "    OR (w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') AND TRUNC(SYSDATE - w.last_modified) > ?) " +
-                     ") " +
-                     "ORDER BY days_pending DESC";
-        
-        return jdbcTemplate.query(sql, 
-            new Object[]{dayThreshold, dayThreshold, dayThreshold}, 
-            (rs, rowNum) -> mapWorkflowSummary(rs));
+        // Non-pending states have days_pending = 0, so the threshold alone selects the overdue ones
+        String sql = workflowSummarySql("w.workflow_state != 'COMPLETED' AND " + DAYS_PENDING + " > ?",
+                                        "days_pending DESC");
+        
+        return jdbcTemplate.query(sql, WORKFLOW_SUMMARY_MAPPER, dayThreshold, dayThreshold);
     }
     
     /**
@@ -86,21 +90,9 @@ public class DashboardRepository {
      * @return List of workflow summaries with open queries
      */
     public List<WorkflowSummaryDto> getWorkflowsWithOpenQueries() {
-        String sql = "SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.assigned_plant, w.initiated_by, " +
-                     "w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
-                     "CASE " +
-                     "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
-                     "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
-                     "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
-                     "    ELSE 0 " +
-                     "END as days_pending, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id) as total_queries, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') as open_queries " +
-                     "FROM qrmfg_material_workflows w " +
-                     "WHERE EXISTS (SELECT 1 FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') " +
-                     "ORDER BY open_queries DESC";
-        
-        return jdbcTemplate.query(sql, (rs, rowNum) -> mapWorkflowSummary(rs));
+        String sql = workflowSummarySql(HAS_OPEN_QUERIES, "open_queries DESC");
+        
+        return jdbcTemplate.query(sql, WORKFLOW_SUMMARY_MAPPER);
     }
     
     /**
@@ -109,21 +101,9 @@ public class DashboardRepository {
      * @return List of workflow summaries with recent activity
      */
     public List<WorkflowSummaryDto> getRecentActivity(int days) {
-        String sql = "SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.assigned_plant, w.initiated_by, " +
-                     "w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
-                     "CASE " +
-                     "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
-                     "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
-                     "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
-                     "    ELSE 0 " +
-                     "END as days_pending, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id) as total_queries, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') as open_queries " +
-                     "FROM qrmfg_material_workflows w " +
-                     "WHERE w.last_modified >= SYSDATE - ? " +
-                     "ORDER BY w.last_modified DESC";
-        
-        return jdbcTemplate.query(sql, new Object[]{days}, (rs, rowNum) -> mapWorkflowSummary(rs));
+        String sql = workflowSummarySql("w.last_modified >= SYSDATE - ?", "w.last_modified DESC");
+        
+        return jdbcTemplate.query(sql, WORKFLOW_SUMMARY_MAPPER, days, days);
     }
     
     /**
@@ -132,21 +112,9 @@ public class DashboardRepository {
      * @return List of workflow summaries for the plant
      */
     public List<WorkflowSummaryDto> getWorkflowsByPlant(String plantName) {
-        String sql = "SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.assigned_plant, w.initiated_by, " +
-                     "w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
-                     "CASE " +
-                     "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
-                     "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
-                     "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
-                     "    ELSE 0 " +
-                     "END as days_pending, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id) as total_queries, " +
-                     "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') as open_queries " +
-                     "FROM qrmfg_material_workflows w " +
-                     "WHERE w.assigned_plant = ? " +
-                     "ORDER BY w.last_modified DESC";
-        
-        return jdbcTemplate.query(sql, new Object[]{plantName}, (rs, rowNum) -> mapWorkflowSummary(rs));
+        String sql = workflowSummarySql("w.plant_code = ?", "w.last_modified DESC");
+        
+        return jdbcTemplate.query(sql, WORKFLOW_SUMMARY_MAPPER, plantName, plantName);
     }
     
     /**
@@ -174,17 +142,12 @@ public class DashboardRepository {
         // Overdue workflows
         Integer overdueWorkflows = jdbcTemplate.queryForObject(
             "SELECT COUNT(*) FROM qrmfg_material_workflows w " +
-            "WHERE w.workflow_state != 'COMPLETED' " +
-            "AND ( " +
-            "    (w.workflow_state = 'JVC_PENDING' AND TRUNC(SYSDATE - w.created_at) > 3) " +
-            "    OR (w.workflow_state = 'PLANT_PENDING' AND TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) > 3) " +
-            "    OR (w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') AND TRUNC(SYSDATE - w.last_modified) > 3) " +
-            ")", Integer.class);
+            "WHERE w.workflow_state != 'COMPLETED' AND " + DAYS_PENDING + " > 3", Integer.class);
         summary.put("overdueWorkflows", overdueWorkflows);
         
-        // Total queries
-        Integer totalQueries = jdbcTemplate.queryForObject(
-            "SELECT COUNT(*) FROM qrmfg_queries", Integer.class);
+        // Total queries, archived ones included
+        Integer totalQueries = jdbcTemplate.queryForObject(archiveService.includeArchivedQueries(
+            "SELECT COUNT(*) FROM " + WorkflowArchiveService.ALL_QUERIES), Integer.class);
         summary.put("totalQueries", totalQueries);
         
         // Open queries
@@ -192,16 +155,17 @@ public class DashboardRepository {
             "SELECT COUNT(*) FROM qrmfg_queries WHERE query_status = 'OPEN'", Integer.class);
         summary.put("openQueries", openQueries);
         
-        // Resolved queries
-        Integer resolvedQueries = jdbcTemplate.queryForObject(
-            "SELECT COUNT(*) FROM qrmfg_queries WHERE query_status = 'RESOLVED'", Integer.class);
+        // Resolved queries, archived ones included
+        Integer resolvedQueries = jdbcTemplate.queryForObject(archiveService.includeArchivedQueries(
+            "SELECT COUNT(*) FROM " + WorkflowArchiveService.ALL_QUERIES + " WHERE query_status = 'RESOLVED'"),
+            Integer.class);
         summary.put("resolvedQueries", resolvedQueries);
         
         // Average resolution time (hours)
-        Double avgResolutionTime = jdbcTemplate.queryForObject(
+        Double avgResolutionTime = jdbcTemplate.queryForObject(archiveService.includeArchivedQueries(
             "SELECT AVG((resolved_at - created_at) * 24) " +
-            "FROM qrmfg_queries " +
-            "WHERE query_status = 'RESOLVED' AND resolved_at IS NOT NULL", Double.class);
+            "FROM " + WorkflowArchiveService.ALL_QUERIES + " " +
+            "WHERE query_status = 'RESOLVED' AND resolved_at IS NOT NULL"), Double.class);
         summary.put("avgResolutionTimeHours", avgResolutionTime != null ? avgResolutionTime : 0);
         
         // Workflows created in last 7 days
@@ -219,8 +183,30 @@ public class DashboardRepository {
         return summary;
     }
     
-    // Helper method to map ResultSet to WorkflowSummaryDto
-    private WorkflowSummaryDto mapWorkflowSummary(ResultSet rs) throws SQLException {
+    /**
+     * Workflow summaries with their query counts. The counts are grouped once, only for
+     * the workflows the filter selects, instead of two correlated COUNT(*) per row or a
+     * GROUP BY over every query. The filter appears twice, so its arguments are bound twice.
+     * Completed workflows whose queries were archived keep their counts.
+     */
+    private String workflowSummarySql(String workflowFilter, String orderBy) {
+        return archiveService.includeArchivedQueries("SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.plant_code AS assigned_plant, " +
+               "w.initiated_by, w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
+               DAYS_PENDING + " AS days_pending, " +
+               "NVL(qc.total_queries, 0) AS total_queries, NVL(qc.open_queries, 0) AS open_queries " +
+               "FROM qrmfg_material_workflows w " +
+               "LEFT JOIN (" +
+               "    SELECT workflow_id, COUNT(*) AS total_queries, " +
+               "    SUM(CASE WHEN query_status = 'OPEN' THEN 1 ELSE 0 END) AS open_queries " +
+               "    FROM " + WorkflowArchiveService.ALL_QUERIES + " " +
+               "    WHERE workflow_id IN (SELECT w.id FROM qrmfg_material_workflows w WHERE " + workflowFilter + ") " +
+               "    GROUP BY workflow_id" +
+               ") qc ON qc.workflow_id = w.id " +
+               "WHERE " + workflowFilter + " " +
+               "ORDER BY " + orderBy);
+    }
+    
+    private static WorkflowSummaryDto mapWorkflowSummary(ResultSet rs) throws SQLException {
         WorkflowSummaryDto dto = new WorkflowSummaryDto();
         dto.setId(rs.getLong("id"));
         dto.setMaterialCode(rs.getString("material_code"));
@@ -236,4 +222,4 @@ public class DashboardRepository {
         dto.setOverdue(dto.getDaysPending() > 3); // Business rule: overdue after 3 days
         return dto;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.model.DocumentAccessStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentAccessStatsRepository extends JpaRepository<DocumentAccessStats, Long> {
+}
@@ -0,0 +1,21 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.model.QueryDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface QueryDailyRollupRepository extends JpaRepository<QueryDailyRollup, QueryDailyRollup.Key> {
+
+    List<QueryDailyRollup> findByRollupDayBetweenOrderByRollupDayAscAssignedTeamAsc(LocalDate from, LocalDate to);
+
+    // team, created, resolved, resolution hours sum, SLA met
+    @Query("SELECT r.assignedTeam, SUM(r.createdCount), SUM(r.resolvedCount), SUM(r.resolutionHoursSum), SUM(r.slaMetCount) " +
+           "FROM QueryDailyRollup r WHERE r.rollupDay BETWEEN :from AND :to GROUP BY r.assignedTeam")
+    List<Object[]> sumByTeam(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface QueryRepository extends JpaRepository<Query, Long> {
+public interface QueryRepository extends JpaRepository<Query, Long>, QueryRepositoryCustom {
     
     // Basic finders
     List<Query> findByWorkflowId(Long workflowId);
@@ -78,9 +78,6 @@ public interface QueryRepository extends JpaRepository<Query, Long> {
     @org.springframework.data.jpa.repository.Query(value = "SELECT AVG((resolved_at - created_at) * 24) FROM qrmfg_query WHERE status = 'RESOLVED' AND assigned_team = :team", nativeQuery = true)
     Double getAverageResolutionTimeHours(@Param("team") String team);
     
-    @org.springframework.data.jpa.repository.Query(value = "SELECT AVG((resolved_at - created_at) * 24) FROM qrmfg_query WHERE status = 'RESOLVED' AND assigned_team = :team AND resolved_at BETWEEN :start AND :end", nativeQuery = true)
-    Double getAverageResolutionTimeHours(@Param("team") String team, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-    
     // Workflow-specific queries
     @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q WHERE q.workflow.id = :workflowId AND q.status = 'OPEN'")
     List<Query> findOpenQueriesByWorkflow(@Param("workflowId") Long workflowId);
@@ -94,6 +91,10 @@ public interface QueryRepository extends JpaRepository<Query, Long> {
              "ORDER BY q.priorityLevel DESC, q.createdAt ASC")
     List<Query> findTeamInboxQueries(@Param("team") QueryTeam team);
     
+    @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q JOIN FETCH q.workflow WHERE q.assignedTeam = :team AND q.status = 'OPEN' " +
+             "ORDER BY q.priorityLevel DESC, q.createdAt ASC, q.id ASC")
+    List<Query> findTeamInboxQueriesWithWorkflow(@Param("team") QueryTeam team);
+    
     @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q WHERE q.assignedTeam = :team AND q.status = 'RESOLVED' " +
              "ORDER BY q.resolvedAt DESC")
     List<Query> findTeamResolvedQueries(@Param("team") QueryTeam team);
@@ -221,9 +222,15 @@ public interface QueryRepository extends JpaRepository<Query, Long> {
     @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q WHERE q.id IN :queryIds")
     List<Query> findByIds(@Param("queryIds") List<Long> queryIds);
 
+    @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q JOIN FETCH q.workflow WHERE q.id IN :queryIds")
+    List<Query> findByIdsWithWorkflow(@Param("queryIds") List<Long> queryIds);
+
     @org.springframework.data.jpa.repository.Query("SELECT q FROM Query q WHERE q.workflow.id IN :workflowIds AND q.status = 'OPEN'")
     List<Query> findOpenQueriesByWorkflowIds(@Param("workflowIds") List<Long> workflowIds);
 
+    @org.springframework.data.jpa.repository.Query("SELECT DISTINCT q.workflow.id FROM Query q WHERE q.workflow.id IN :workflowIds AND q.status = 'OPEN'")
+    List<Long> findWorkflowIdsWithOpenQueries(@Param("workflowIds") List<Long> workflowIds);
+
     // Query escalation support
     @org.springframework.data.jpa.repository.Query(value = "SELECT * FROM qrmfg_queries WHERE query_status = 'OPEN' AND priority_level IN ('HIGH', 'URGENT') AND (SYSDATE - created_at) > :escalationHours/24", nativeQuery = true)
     List<Query> findQueriesForEscalation(@Param("escalationHours") int escalationHours);
@@ -0,0 +1,15 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.dto.QuerySearchCriteria;
+import com.cqs.qrmfg.model.Query;
+
+import java.util.List;
+
+public interface QueryRepositoryCustom {
+
+    /**
+     * Keyset-paginated search that only emits predicates for the supplied filters.
+     * The workflow is fetch-joined so callers can map results without lazy loads.
+     */
+    List<Query> searchWithContext(QuerySearchCriteria criteria);
+}
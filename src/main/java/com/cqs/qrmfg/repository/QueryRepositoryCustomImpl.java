@@ -0,0 +1,62 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.dto.QuerySearchCriteria;
+import com.cqs.qrmfg.model.Query;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class QueryRepositoryCustomImpl implements QueryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Query> searchWithContext(QuerySearchCriteria criteria) {
+        StringBuilder jpql = new StringBuilder("SELECT q FROM Query q JOIN FETCH q.workflow w WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+
+        // Workflow context filters
+        appendEquals(jpql, parameters, "w.materialCode", "materialCode", criteria.getMaterialCode());
+        appendEquals(jpql, parameters, "w.projectCode", "projectCode", criteria.getProjectCode());
+        appendEquals(jpql, parameters, "w.plantCode", "plantCode", criteria.getPlantCode());
+        appendEquals(jpql, parameters, "w.blockId", "blockId", criteria.getBlockId());
+
+        // Query filters, leading columns of the composite indexes on qrmfg_queries
+        appendEquals(jpql, parameters, "q.assignedTeam", "team", criteria.getTeam());
+        appendEquals(jpql, parameters, "q.status", "status", criteria.getStatus());
+        appendEquals(jpql, parameters, "q.priorityLevel", "priority", criteria.getPriority());
+
+        if (criteria.getMinDaysOpen() > 0) {
+            // Necessary condition for both open and resolved queries; resolution time is refined by the caller
+            jpql.append(" AND q.createdAt <= :openedBefore");
+            parameters.put("openedBefore", LocalDateTime.now().minusDays(criteria.getMinDaysOpen()));
+        }
+
+        if (criteria.hasCursor()) {
+            jpql.append(" AND (q.createdAt < :afterCreatedAt OR (q.createdAt = :afterCreatedAt AND q.id < :afterId))");
+            parameters.put("afterCreatedAt", criteria.getAfterCreatedAt());
+            parameters.put("afterId", criteria.getAfterId());
+        }
+
+        jpql.append(" ORDER BY q.createdAt DESC, q.id DESC");
+
+        TypedQuery<Query> query = entityManager.createQuery(jpql.toString(), Query.class);
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(criteria.getLimit());
+        return query.getResultList();
+    }
+
+    private void appendEquals(StringBuilder jpql, Map<String, Object> parameters, String path, String name, Object value) {
+        if (value == null || (value instanceof String && ((String) value).trim().isEmpty())) {
+            return;
+        }
+        jpql.append(" AND ").append(path).append(" = :").append(name);
+        parameters.put(name, value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.model.WorkflowDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface WorkflowDailyRollupRepository extends JpaRepository<WorkflowDailyRollup, WorkflowDailyRollup.Key> {
+
+    List<WorkflowDailyRollup> findByRollupDayBetweenOrderByRollupDayAscPlantCodeAscWorkflowStateAsc(LocalDate from, LocalDate to);
+
+    // day, entered count across all plants
+    @Query("SELECT r.rollupDay, SUM(r.enteredCount) FROM WorkflowDailyRollup r " +
+           "WHERE r.workflowState = :state AND r.rollupDay BETWEEN :from AND :to " +
+           "GROUP BY r.rollupDay ORDER BY r.rollupDay")
+    List<Object[]> sumEnteredByDay(@Param("state") String state, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // state, entered, exited, completion hours sum
+    @Query("SELECT r.workflowState, SUM(r.enteredCount), SUM(r.exitedCount), SUM(r.completionHoursSum) " +
+           "FROM WorkflowDailyRollup r WHERE r.rollupDay BETWEEN :from AND :to GROUP BY r.workflowState")
+    List<Object[]> sumByState(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -54,6 +54,9 @@ public interface WorkflowRepository extends JpaRepository<MaterialWorkflow, Long
     
     @Query("SELECT w FROM MaterialWorkflow w WHERE w.projectCode = :projectCode ORDER BY w.createdAt DESC")
     List<MaterialWorkflow> findByProjectCodeOrderByCreatedAt(@Param("projectCode") String projectCode);
+
+    @Query("SELECT w.id FROM MaterialWorkflow w WHERE w.projectCode = :projectCode ORDER BY w.id")
+    List<Long> findIdsByProjectCode(@Param("projectCode") String projectCode);
     
     @Query("SELECT w FROM MaterialWorkflow w WHERE w.materialCode = :materialCode ORDER BY w.createdAt DESC")
     List<MaterialWorkflow> findByMaterialCodeOrderByCreatedAt(@Param("materialCode") String materialCode);
@@ -111,9 +114,6 @@ public interface WorkflowRepository extends JpaRepository<MaterialWorkflow, Long
     @Query("SELECT w.plantCode, COUNT(w) FROM MaterialWorkflow w GROUP BY w.plantCode")
     List<Object[]> countByPlantCodeGrouped();
     
-    @Query(value = "SELECT TRUNC(created_at), COUNT(*) FROM qrmfg_material_workflow WHERE created_at >= :startDate GROUP BY TRUNC(created_at) ORDER BY TRUNC(created_at)", nativeQuery = true)
-    List<Object[]> countByCreatedAtAfterGroupByDay(@Param("startDate") LocalDateTime startDate);
-    
     @Query(value = "SELECT AVG((last_modified - created_at) * 24) FROM qrmfg_material_workflow WHERE state = 'COMPLETED'", nativeQuery = true)
     Double calculateAverageCompletionTimeHours();
     
@@ -0,0 +1,9 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.model.WorkflowSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WorkflowSnapshotRepository extends JpaRepository<WorkflowSnapshot, Long> {
+}
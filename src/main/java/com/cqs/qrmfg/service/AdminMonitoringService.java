@@ -3,6 +3,8 @@ package com.cqs.qrmfg.service;
 import com.cqs.qrmfg.dto.QuerySlaReportDto;
 import com.cqs.qrmfg.dto.UserRoleAssignmentDto;
 import com.cqs.qrmfg.dto.WorkflowMonitoringDto;
+import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.util.TableWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -63,23 +65,33 @@ public interface AdminMonitoringService {
     Map<String, Object> getWorkflowPerformanceMetrics(LocalDateTime startDate, LocalDateTime endDate);
 
     /**
-     * Export audit logs as CSV
+     * Stream audit logs as CSV or XLSX
      * @param startDate Optional start date for filtering
      * @param endDate Optional end date for filtering
      * @param entityType Optional entity type for filtering
      * @param action Optional action for filtering
-     * @return byte array containing CSV data
+     * @param writer Receives the rows as they are read and is finished at the end
      */
-    byte[] exportAuditLogsAsCsv(LocalDateTime startDate, LocalDateTime endDate, String entityType, String action);
+    void exportAuditLogs(LocalDateTime startDate, LocalDateTime endDate, String entityType, String action,
+                         TableWriter writer);
 
     /**
-     * Export workflow report as CSV
+     * Stream workflow report as CSV or XLSX
      * @param startDate Optional start date for filtering
      * @param endDate Optional end date for filtering
      * @param state Optional workflow state for filtering
-     * @return byte array containing CSV data
+     * @param writer Receives the rows as they are read and is finished at the end
      */
-    byte[] exportWorkflowReportAsCsv(LocalDateTime startDate, LocalDateTime endDate, String state);
+    void exportWorkflowReport(LocalDateTime startDate, LocalDateTime endDate, WorkflowState state,
+                              TableWriter writer);
+
+    /**
+     * Export the query SLA report, one row per team plus an overall row
+     * @param startDate Optional start date for filtering
+     * @param endDate Optional end date for filtering
+     * @param writer Receives the rows and is finished at the end
+     */
+    void exportQuerySlaReport(LocalDateTime startDate, LocalDateTime endDate, TableWriter writer);
 
     /**
      * Get user role assignments for management
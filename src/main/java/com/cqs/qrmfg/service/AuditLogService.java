@@ -1,5 +1,7 @@
 package com.cqs.qrmfg.service;
 
+import com.cqs.qrmfg.dto.AuditLogSearchCriteria;
+import com.cqs.qrmfg.dto.AuditLogSearchResult;
 import com.cqs.qrmfg.model.AuditLog;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,6 +39,13 @@ public interface AuditLogService {
      */
     void logAuditEvent(String user, String action, String entityType, String entityId, String details);
 
+    /**
+     * Search audit logs with combined filters, newest first, one keyset page at a time
+     * @param criteria Filters, requested fields and the cursor of the previous page
+     * @return Rows holding only the requested fields, plus the next cursor
+     */
+    AuditLogSearchResult search(AuditLogSearchCriteria criteria);
+
     // Add this method
     List<AuditLog> findAll();
     List<AuditLog> findByUserId(Long userId);
@@ -0,0 +1,98 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.model.AuditLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes audit log rows off the request path with JDBC batch inserts.
+ * Queueing, flushing and backpressure are handled by BatchingWriter.
+ */
+@Service
+public class AuditLogWriter extends BatchingWriter<AuditLogWriter.PendingAuditEvent> {
+
+    // The user is resolved from the username when only that is known
+    private static final String INSERT_SQL =
+        "INSERT INTO qrmfg_audit_logs (id, user_id, action, entity_type, entity_id, description, " +
+        "ip_address, user_agent, session_id, event_timestamp, severity, category, event_type, " +
+        "event_category, details, resource_path, result, error_message) " +
+        "VALUES (RBAC_AUDIT_LOG_SEQ.NEXTVAL, COALESCE(?, (SELECT id FROM qrmfg_users WHERE username = ?)), " +
+        "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public AuditLogWriter(@Value("${app.audit.writer.capacity:8192}") int capacity,
+                          @Value("${app.audit.writer.batch-size:200}") int batchSize,
+                          @Value("${app.audit.writer.flush-interval-ms:500}") long flushIntervalMs,
+                          @Value("${app.audit.writer.offer-timeout-ms:50}") long offerTimeoutMs,
+                          @Value("${app.audit.writer.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        super("audit-log-writer", "audit.writer", capacity, batchSize, flushIntervalMs, offerTimeoutMs, shutdownTimeoutMs);
+    }
+
+    /**
+     * Queue an audit row. The user is taken from log.getUser() or, when that is
+     * not set, looked up by username when the row is written.
+     */
+    public void write(AuditLog log, String username) {
+        if (log.getEventTime() == null) {
+            log.setEventTime(LocalDateTime.now());
+        }
+        enqueue(new PendingAuditEvent(log, username));
+    }
+
+    @Override
+    protected void insert(List<PendingAuditEvent> events) {
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (PendingAuditEvent event : events) {
+            rows.add(toRow(event));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    @Override
+    protected String describe(PendingAuditEvent event) {
+        return "audit event " + event.log.getAction() + " on " + event.log.getEntityType();
+    }
+
+    private static Object[] toRow(PendingAuditEvent event) {
+        AuditLog log = event.log;
+        return new Object[]{
+            log.getUser() != null ? log.getUser().getId() : null,
+            event.username,
+            log.getAction(),
+            log.getEntityType(),
+            log.getEntityId(),
+            log.getDescription(),
+            log.getIpAddress(),
+            log.getUserAgent(),
+            log.getSessionId(),
+            Timestamp.valueOf(log.getEventTime()),
+            log.getSeverity(),
+            log.getCategory(),
+            log.getEventType(),
+            log.getEventCategory(),
+            log.getDetails(),
+            log.getResource(),
+            log.getResult(),
+            log.getErrorMessage()
+        };
+    }
+
+    static class PendingAuditEvent {
+        private final AuditLog log;
+        private final String username;
+
+        PendingAuditEvent(AuditLog log, String username) {
+            this.log = log;
+            this.username = username;
+        }
+    }
+}
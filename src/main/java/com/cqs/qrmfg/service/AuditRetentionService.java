@@ -0,0 +1,232 @@
+package com.cqs.qrmfg.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Retention for the append-only audit tables. On Oracle the tables are interval
+ * partitioned by month (V7 migration), so expired months are removed by dropping
+ * whole partitions. Databases without partitioning (a local test database, or Oracle
+ * before the migration ran) get the same month layout simulated: expired months are
+ * deleted one month-bounded range at a time.
+ */
+@Service
+public class AuditRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditRetentionService.class);
+
+    private static final List<AuditTable> TABLES = Arrays.asList(
+        new AuditTable("qrmfg_audit_logs", "event_timestamp"),
+        new AuditTable("document_access_logs", "access_time"));
+
+    private static final String PARTITIONS_SQL =
+        "SELECT partition_name, high_value, interval, num_rows FROM user_tab_partitions " +
+        "WHERE table_name = ? ORDER BY partition_position";
+
+    // Interval partitions get system generated names; anything else is never spliced into DDL
+    private static final Pattern PARTITION_NAME = Pattern.compile("[A-Z][A-Z0-9_$#]*");
+
+    // HIGH_VALUE is the partition bound as SQL text, e.g. TIMESTAMP' 2024-02-01 00:00:00'
+    private static final Pattern HIGH_VALUE_DATE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Value("${app.audit.retention.months:24}")
+    private int retentionMonths;
+
+    @Value("${app.audit.retention.enabled:true}")
+    private boolean enabled;
+
+    @Scheduled(cron = "${app.audit.retention.cron:0 30 2 * * *}")
+    public void purgeOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            purgeExpired();
+        } catch (Exception e) {
+            logger.warn("Scheduled audit retention purge failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * First day of the oldest month that is still retained
+     */
+    public LocalDate getRetentionCutoff() {
+        return LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+    }
+
+    /**
+     * Month partitions of each audit table, real or simulated
+     */
+    public Map<String, List<Map<String, Object>>> getPartitionLayout() {
+        Map<String, List<Map<String, Object>>> layout = new LinkedHashMap<>();
+        for (AuditTable table : TABLES) {
+            List<Map<String, Object>> partitions = new ArrayList<>();
+            for (MonthPartition partition : listPartitions(table)) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("name", partition.name);
+                item.put("from", partition.from);
+                item.put("to", partition.to);
+                item.put("rows", partition.rows);
+                item.put("physical", partition.physical);
+                partitions.add(item);
+            }
+            layout.put(table.name, partitions);
+        }
+        return layout;
+    }
+
+    /**
+     * Remove every month older than the retention cutoff from all audit tables
+     */
+    public Map<String, Object> purgeExpired() {
+        LocalDate cutoff = getRetentionCutoff();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cutoff", cutoff);
+
+        for (AuditTable table : TABLES) {
+            int partitionsDropped = 0;
+            long rowsDeleted = 0;
+            for (MonthPartition partition : listPartitions(table)) {
+                if (partition.to == null || partition.to.isAfter(cutoff)) {
+                    continue;
+                }
+                if (partition.physical) {
+                    dropPartition(table, partition);
+                    partitionsDropped++;
+                } else {
+                    rowsDeleted += deleteMonth(table, partition);
+                }
+            }
+
+            Map<String, Object> tableResult = new LinkedHashMap<>();
+            tableResult.put("partitionsDropped", partitionsDropped);
+            tableResult.put("rowsDeleted", rowsDeleted);
+            result.put(table.name, tableResult);
+
+            metricsService.add("audit.retention.partitions_dropped", partitionsDropped);
+            metricsService.add("audit.retention.rows_deleted", rowsDeleted);
+            if (partitionsDropped > 0 || rowsDeleted > 0) {
+                logger.info("Audit retention on {}: dropped {} partitions, deleted {} rows older than {}",
+                           table.name, partitionsDropped, rowsDeleted, cutoff);
+            }
+        }
+        return result;
+    }
+
+    private List<MonthPartition> listPartitions(AuditTable table) {
+        List<MonthPartition> physical = readPhysicalPartitions(table);
+        return physical != null ? physical : simulatePartitions(table);
+    }
+
+    /**
+     * Interval partitions from the Oracle dictionary, or null when the table is not partitioned
+     */
+    private List<MonthPartition> readPhysicalPartitions(AuditTable table) {
+        List<MonthPartition> partitions = new ArrayList<>();
+        try {
+            jdbcTemplate.query(PARTITIONS_SQL, rs -> {
+                // HIGH_VALUE is a LONG column, read the columns in select order
+                String name = rs.getString("partition_name");
+                String highValue = rs.getString("high_value");
+                boolean interval = "YES".equals(rs.getString("interval"));
+                long rows = rs.getLong("num_rows");
+
+                Matcher matcher = HIGH_VALUE_DATE.matcher(highValue != null ? highValue : "");
+                // The initial range partition anchors the interval and cannot be dropped
+                if (interval && matcher.find()) {
+                    LocalDate to = LocalDate.parse(matcher.group(1));
+                    partitions.add(new MonthPartition(name, to.minusMonths(1), to, rows, true));
+                }
+            }, table.name.toUpperCase());
+        } catch (DataAccessException e) {
+            // No Oracle dictionary views: not an Oracle database
+            logger.debug("Partition dictionary not available for {}: {}", table.name, e.getMessage());
+            return null;
+        }
+        return partitions.isEmpty() && !isPartitioned(table) ? null : partitions;
+    }
+
+    private boolean isPartitioned(AuditTable table) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM user_part_tables WHERE table_name = ?", Integer.class, table.name.toUpperCase());
+        return count != null && count > 0;
+    }
+
+    /**
+     * The months that would be partitions, derived from the data
+     */
+    private List<MonthPartition> simulatePartitions(AuditTable table) {
+        String sql = "SELECT EXTRACT(YEAR FROM " + table.timeColumn + ") AS y, " +
+                     "EXTRACT(MONTH FROM " + table.timeColumn + ") AS m, COUNT(*) AS row_count " +
+                     "FROM " + table.name + " GROUP BY EXTRACT(YEAR FROM " + table.timeColumn + "), " +
+                     "EXTRACT(MONTH FROM " + table.timeColumn + ") ORDER BY y, m";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            LocalDate from = LocalDate.of(rs.getInt("y"), rs.getInt("m"), 1);
+            return new MonthPartition("M" + from.toString().substring(0, 7).replace("-", ""),
+                                      from, from.plusMonths(1), rs.getLong("row_count"), false);
+        });
+    }
+
+    private void dropPartition(AuditTable table, MonthPartition partition) {
+        if (!PARTITION_NAME.matcher(partition.name).matches()) {
+            throw new IllegalStateException("Unexpected partition name " + partition.name + " on " + table.name);
+        }
+        // Global indexes (the primary key) stay usable while the partition goes away
+        jdbcTemplate.execute("ALTER TABLE " + table.name + " DROP PARTITION " + partition.name + " UPDATE GLOBAL INDEXES");
+        logger.info("Dropped audit partition {}.{} ({} to {})", table.name, partition.name, partition.from, partition.to);
+    }
+
+    private int deleteMonth(AuditTable table, MonthPartition partition) {
+        return jdbcTemplate.update(
+            "DELETE FROM " + table.name + " WHERE " + table.timeColumn + " >= ? AND " + table.timeColumn + " < ?",
+            Timestamp.valueOf(partition.from.atStartOfDay()), Timestamp.valueOf(partition.to.atStartOfDay()));
+    }
+
+    private static class AuditTable {
+        private final String name;
+        private final String timeColumn;
+
+        AuditTable(String name, String timeColumn) {
+            this.name = name;
+            this.timeColumn = timeColumn;
+        }
+    }
+
+    private static class MonthPartition {
+        private final String name;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long rows;
+        private final boolean physical;
+
+        MonthPartition(String name, LocalDate from, LocalDate to, long rows, boolean physical) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+            this.rows = rows;
+            this.physical = physical;
+        }
+    }
+}
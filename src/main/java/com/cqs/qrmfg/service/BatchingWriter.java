@@ -0,0 +1,200 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.util.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes rows off the request path. Callers only offer the row to a bounded
+ * lock-free ring; a single background thread drains it and hands the rows to
+ * insert() every batch-size rows or flush-interval, whichever comes first.
+ * When the ring stays full past the offer timeout the caller writes the row
+ * itself, so a slow database slows requests down instead of losing rows.
+ * A batch that fails is retried row by row so one bad row does not drop the rest.
+ *
+ * Metrics are published under the given prefix: pending, last_batch_lag_ms,
+ * batches, written, dropped, full and caller_writes.
+ */
+public abstract class BatchingWriter<E> {
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    protected OperationalMetricsService metricsService;
+
+    private final String name;
+    private final String metricPrefix;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final long shutdownTimeoutMs;
+
+    private RingBuffer<Pending<E>> buffer;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile long lastBatchLagMillis;
+
+    /**
+     * @param name flusher thread name, also used in log messages
+     * @param offerTimeoutMs how long a caller waits for room in a full ring before writing the row itself
+     */
+    protected BatchingWriter(String name, String metricPrefix, int capacity, int batchSize,
+                             long flushIntervalMs, long offerTimeoutMs, long shutdownTimeoutMs) {
+        this.name = name;
+        this.metricPrefix = metricPrefix;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    /**
+     * Write the rows in one go; a DataAccessException makes the batch retry row by row
+     */
+    protected abstract void insert(List<E> rows);
+
+    /**
+     * Identifies a dropped row in the log
+     */
+    protected abstract String describe(E row);
+
+    @PostConstruct
+    public void start() {
+        buffer = new RingBuffer<>(capacity);
+        running = true;
+        flusher = new Thread(this::runFlusher, name);
+        flusher.setDaemon(true);
+        flusher.start();
+
+        metricsService.registerGauge(metricPrefix + ".pending", buffer::size);
+        metricsService.registerGauge(metricPrefix + ".last_batch_lag_ms", () -> lastBatchLagMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Rows offered while the flusher was finishing its last drain
+        List<Pending<E>> remaining = new ArrayList<>();
+        while (buffer.drainTo(remaining, batchSize) > 0) {
+            writeBatch(remaining);
+            remaining.clear();
+        }
+        logger.info("{} stopped", name);
+    }
+
+    /**
+     * Queue a row, or write it on the calling thread when the ring stays full
+     */
+    protected void enqueue(E row) {
+        Pending<E> pending = new Pending<>(row);
+
+        if (running && offer(pending)) {
+            if (buffer.size() >= batchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return;
+        }
+
+        // Backpressure: the ring stayed full (or the writer is stopping), write on the caller
+        metricsService.increment(metricPrefix + ".caller_writes");
+        writeRowByRow(Collections.singletonList(row));
+    }
+
+    private boolean offer(Pending<E> pending) {
+        if (buffer.offer(pending)) {
+            return true;
+        }
+        metricsService.increment(metricPrefix + ".full");
+        LockSupport.unpark(flusher);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            if (buffer.offer(pending)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runFlusher() {
+        List<Pending<E>> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        while (true) {
+            // Read the flag before draining so the last pass sees everything offered before shutdown
+            boolean stopping = !running;
+            while (buffer.drainTo(batch, batchSize) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            if (stopping) {
+                return;
+            }
+            // Woken early by producers once a full batch is waiting
+            LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+    }
+
+    private void writeBatch(List<Pending<E>> batch) {
+        lastBatchLagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.get(0).enqueuedNanos);
+
+        List<E> rows = new ArrayList<>(batch.size());
+        for (Pending<E> pending : batch) {
+            rows.add(pending.row);
+        }
+
+        try {
+            insert(rows);
+            metricsService.increment(metricPrefix + ".batches");
+            metricsService.add(metricPrefix + ".written", rows.size());
+        } catch (DataAccessException e) {
+            logger.warn("{} batch of {} rows failed, retrying row by row: {}", name, rows.size(), e.getMessage());
+            writeRowByRow(rows);
+        } catch (RuntimeException e) {
+            // Never let the flusher thread die
+            metricsService.add(metricPrefix + ".dropped", rows.size());
+            logger.error("{} batch of {} rows dropped", name, rows.size(), e);
+        }
+    }
+
+    // Isolates the rows that break a batch so the rest still get written
+    private void writeRowByRow(List<E> rows) {
+        for (E row : rows) {
+            try {
+                insert(Collections.singletonList(row));
+                metricsService.increment(metricPrefix + ".written");
+            } catch (RuntimeException e) {
+                metricsService.increment(metricPrefix + ".dropped");
+                logger.warn("Dropped {}: {}", describe(row), e.getMessage());
+            }
+        }
+    }
+
+    private static class Pending<E> {
+        private final E row;
+        private final long enqueuedNanos = System.nanoTime();
+
+        Pending(E row) {
+            this.row = row;
+        }
+    }
+}
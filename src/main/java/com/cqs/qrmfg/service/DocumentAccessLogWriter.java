@@ -0,0 +1,154 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.model.DocumentAccessType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only writer for the document access log. Accesses are queued by BatchingWriter
+ * and inserted with JDBC batches, without going through JPA or Envers. In the same
+ * transaction each batch is added to the per document counters in
+ * qrmfg_document_access_stats, so download counts and last access times are read from
+ * one row instead of counted from the log.
+ */
+@Service
+public class DocumentAccessLogWriter extends BatchingWriter<DocumentAccessLogWriter.DocumentAccess> {
+
+    // Accesses to documents that no longer exist insert nothing
+    private static final String INSERT_SQL =
+        "INSERT INTO document_access_logs (document_id, accessed_by, access_type, access_time, " +
+        "ip_address, user_agent, workflow_id, access_granted, denial_reason) " +
+        "SELECT d.id, ?, ?, ?, ?, ?, ?, ?, ? FROM qrmfg_workflow_documents d WHERE d.id = ?";
+
+    private static final String MERGE_STATS_SQL =
+        "MERGE INTO qrmfg_document_access_stats s " +
+        "USING (SELECT d.id AS document_id, ? AS downloads, ? AS accessed_at " +
+        "       FROM qrmfg_workflow_documents d WHERE d.id = ?) a " +
+        "ON (s.document_id = a.document_id) " +
+        "WHEN MATCHED THEN UPDATE SET s.download_count = s.download_count + a.downloads, " +
+        "    s.last_accessed_at = CASE WHEN s.last_accessed_at IS NULL OR s.last_accessed_at < a.accessed_at " +
+        "        THEN a.accessed_at ELSE s.last_accessed_at END " +
+        "WHEN NOT MATCHED THEN INSERT (document_id, download_count, last_accessed_at) " +
+        "    VALUES (a.document_id, a.downloads, a.accessed_at)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public DocumentAccessLogWriter(PlatformTransactionManager transactionManager,
+                                   @Value("${app.document.access-log.capacity:8192}") int capacity,
+                                   @Value("${app.document.access-log.batch-size:200}") int batchSize,
+                                   @Value("${app.document.access-log.flush-interval-ms:500}") long flushIntervalMs,
+                                   @Value("${app.document.access-log.offer-timeout-ms:50}") long offerTimeoutMs,
+                                   @Value("${app.document.access-log.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        super("document-access-log-writer", "document.access_log", capacity, batchSize, flushIntervalMs,
+              offerTimeoutMs, shutdownTimeoutMs);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Queue one access log row. Rows for documents that do not exist are discarded when written.
+     */
+    public void write(Long documentId, String accessedBy, DocumentAccessType accessType, String ipAddress,
+                      String userAgent, Long workflowId, boolean accessGranted, String denialReason) {
+        enqueue(new DocumentAccess(documentId, accessedBy, accessType, LocalDateTime.now(),
+                                   ipAddress, userAgent, workflowId, accessGranted, denialReason));
+    }
+
+    @Override
+    protected String describe(DocumentAccess access) {
+        return access.accessType + " access to document " + access.documentId + " by " + access.accessedBy;
+    }
+
+    /**
+     * Log rows and the counter deltas they imply commit or roll back together
+     */
+    @Override
+    protected void insert(List<DocumentAccess> accesses) {
+        List<Object[]> rows = new ArrayList<>(accesses.size());
+        // Ordered by document so concurrent writers lock counter rows in the same order
+        Map<Long, StatsDelta> deltas = new TreeMap<>();
+        for (DocumentAccess access : accesses) {
+            rows.add(toRow(access));
+            if (access.accessGranted) {
+                StatsDelta delta = deltas.computeIfAbsent(access.documentId, id -> new StatsDelta());
+                if (access.accessType == DocumentAccessType.DOWNLOAD) {
+                    delta.downloads++;
+                }
+                if (delta.lastAccessedAt == null || access.accessTime.isAfter(delta.lastAccessedAt)) {
+                    delta.lastAccessedAt = access.accessTime;
+                }
+            }
+        }
+
+        List<Object[]> merges = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, StatsDelta> entry : deltas.entrySet()) {
+            StatsDelta delta = entry.getValue();
+            merges.add(new Object[]{delta.downloads, Timestamp.valueOf(delta.lastAccessedAt), entry.getKey()});
+        }
+
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            if (!merges.isEmpty()) {
+                jdbcTemplate.batchUpdate(MERGE_STATS_SQL, merges);
+            }
+            return null;
+        });
+    }
+
+    private static Object[] toRow(DocumentAccess access) {
+        return new Object[]{
+            access.accessedBy,
+            access.accessType.name(),
+            Timestamp.valueOf(access.accessTime),
+            access.ipAddress,
+            access.userAgent,
+            access.workflowId,
+            access.accessGranted ? 1 : 0,
+            access.denialReason,
+            access.documentId
+        };
+    }
+
+    static class DocumentAccess {
+        private final Long documentId;
+        private final String accessedBy;
+        private final DocumentAccessType accessType;
+        private final LocalDateTime accessTime;
+        private final String ipAddress;
+        private final String userAgent;
+        private final Long workflowId;
+        private final boolean accessGranted;
+        private final String denialReason;
+
+        DocumentAccess(Long documentId, String accessedBy, DocumentAccessType accessType, LocalDateTime accessTime,
+                       String ipAddress, String userAgent, Long workflowId, boolean accessGranted, String denialReason) {
+            this.documentId = documentId;
+            this.accessedBy = accessedBy;
+            this.accessType = accessType;
+            this.accessTime = accessTime;
+            this.ipAddress = ipAddress;
+            this.userAgent = userAgent;
+            this.workflowId = workflowId;
+            this.accessGranted = accessGranted;
+            this.denialReason = denialReason;
+        }
+    }
+
+    private static class StatsDelta {
+        private long downloads;
+        private LocalDateTime lastAccessedAt;
+    }
+}
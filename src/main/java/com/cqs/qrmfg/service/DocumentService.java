@@ -7,6 +7,7 @@ import com.cqs.qrmfg.model.WorkflowDocument;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -54,6 +55,17 @@ public interface DocumentService {
      */
     boolean isValidFile(MultipartFile file);
 
+    /**
+     * Validate type and size of a file uploaded in chunks
+     */
+    boolean isValidUpload(String fileName, long fileSize);
+
+    /**
+     * Create a document from a file already written to local disk, moving it into document storage
+     */
+    DocumentSummary createDocument(Path file, String originalFileName, String projectCode, String materialCode,
+                                   Long workflowId, String uploadedBy);
+
     /**
      * Get document count for workflow
      */
@@ -0,0 +1,495 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.DocumentSummary;
+import com.cqs.qrmfg.dto.DocumentUploadInitRequest;
+import com.cqs.qrmfg.dto.DocumentUploadStatusDto;
+import com.cqs.qrmfg.exception.DocumentException;
+import com.cqs.qrmfg.exception.DocumentNotFoundException;
+import com.cqs.qrmfg.exception.WorkflowException;
+import com.cqs.qrmfg.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Chunked, resumable document uploads. A client starts an upload with the file size and
+ * its SHA-256, sends the bytes as chunks at explicit offsets, and completes the upload,
+ * at which point the checksum is verified and the WorkflowDocument is created. Chunks are
+ * streamed from the request into a staging file through one fixed buffer with positional
+ * FileChannel writes, so memory per upload stays flat whatever the file size. The received
+ * ranges are kept in a small metadata file next to the staging file, so an interrupted
+ * transfer, or a restart, resumes from the first missing byte instead of from zero.
+ */
+@Service
+public class DocumentUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentUploadService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".json";
+
+    // Upload ids become file names, so only ids this service generated are accepted
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Value("${app.document.storage.path:app}")
+    private String documentStoragePath;
+
+    @Value("${app.document.upload.max-chunk-size:8388608}")
+    private long maxChunkSize;
+
+    // Uploads untouched for longer are discarded by the cleanup job
+    @Value("${app.document.upload.ttl-hours:24}")
+    private long ttlHours;
+
+    private Path stagingPath;
+
+    // Sessions in use; the rest are loaded from their metadata file on first access
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        // Inside document storage, so completing an upload moves the file rather than copying it
+        stagingPath = Paths.get(documentStoragePath, ".uploads");
+        Files.createDirectories(stagingPath);
+
+        metricsService.registerGauge("document.upload.active", sessions::size);
+    }
+
+    /**
+     * Start an upload. The file is validated against the same type and size rules as multipart uploads.
+     */
+    public DocumentUploadStatusDto startUpload(DocumentUploadInitRequest request, String uploadedBy) {
+        if (isBlank(request.getFileName()) || !documentService.isValidUpload(request.getFileName(), request.getFileSize())) {
+            throw new DocumentException("Invalid file: " + request.getFileName());
+        }
+        if (request.getChecksum() == null || !SHA256_HEX.matcher(request.getChecksum()).matches()) {
+            throw new IllegalArgumentException("checksum must be the SHA-256 of the file in hex");
+        }
+        if (isBlank(request.getProjectCode()) || isBlank(request.getMaterialCode()) || request.getWorkflowId() == null) {
+            throw new IllegalArgumentException("projectCode, materialCode and workflowId are required");
+        }
+        if (!workflowRepository.existsById(request.getWorkflowId())) {
+            throw new WorkflowException("Workflow not found with ID: " + request.getWorkflowId());
+        }
+
+        UploadSession session = new UploadSession();
+        session.uploadId = UUID.randomUUID().toString().replace("-", "");
+        session.fileName = request.getFileName();
+        session.fileSize = request.getFileSize();
+        session.checksum = request.getChecksum().toLowerCase();
+        session.projectCode = request.getProjectCode();
+        session.materialCode = request.getMaterialCode();
+        session.workflowId = request.getWorkflowId();
+        session.uploadedBy = uploadedBy;
+        session.updatedAt = System.currentTimeMillis();
+
+        try {
+            Files.createFile(partFile(session.uploadId));
+            persist(session);
+        } catch (IOException e) {
+            throw new DocumentException("Failed to start upload of " + request.getFileName(), e);
+        }
+        sessions.put(session.uploadId, session);
+
+        metricsService.increment("document.upload.started");
+        logger.info("Started upload {} of {} ({} bytes) for workflow {} by {}",
+                   session.uploadId, session.fileName, session.fileSize, session.workflowId, uploadedBy);
+        return toStatus(session);
+    }
+
+    /**
+     * Write one chunk at the given offset. Bytes written before the stream breaks are kept
+     * and reported by the status, so the client resends only what is missing.
+     */
+    public DocumentUploadStatusDto writeChunk(String uploadId, long offset, InputStream data, String username) {
+        UploadSession session = getSession(uploadId, username);
+        if (offset < 0 || offset >= session.fileSize) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the file of " + session.fileSize + " bytes");
+        }
+        synchronized (session) {
+            if (session.documentId != null) {
+                throw new DocumentException("Upload " + uploadId + " is already completed");
+            }
+            if (session.discarded) {
+                throw new DocumentNotFoundException("Upload not found: " + uploadId);
+            }
+            // Chunks are written outside the lock, so parallel chunks do not wait on each other;
+            // completeUpload refuses to run while any is in progress
+            session.writers++;
+        }
+
+        long limit = Math.min(maxChunkSize, session.fileSize - offset);
+        long written = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE)) {
+            try {
+                int read;
+                while ((read = data.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                    if (written + read > limit) {
+                        throw new DocumentException("Chunk at offset " + offset + " is longer than " + limit + " bytes");
+                    }
+                    buffer.clear();
+                    buffer.limit(read);
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, offset + written);
+                    }
+                }
+            } finally {
+                if (written > 0) {
+                    // On disk before it is recorded as received
+                    channel.force(false);
+                    record(session, offset, offset + written);
+                    metricsService.add("document.upload.bytes", written);
+                }
+            }
+        } catch (IOException e) {
+            throw new DocumentException("Failed to write chunk of upload " + uploadId + " at offset " + offset, e);
+        } finally {
+            synchronized (session) {
+                session.writers--;
+            }
+        }
+        return toStatus(session);
+    }
+
+    public DocumentUploadStatusDto getStatus(String uploadId, String username) {
+        return toStatus(getSession(uploadId, username));
+    }
+
+    /**
+     * Verify the checksum and create the document. Completing an already completed upload
+     * returns the same document, so a client that lost the response can safely retry.
+     */
+    public DocumentSummary completeUpload(String uploadId, String username) {
+        UploadSession session = getSession(uploadId, username);
+        synchronized (session) {
+            if (session.documentId != null) {
+                return documentService.getEnhancedDocumentSummary(session.documentId);
+            }
+            if (session.writers > 0) {
+                // A chunk still being written could change the file after it is hashed and moved
+                throw new DocumentException("Upload " + uploadId + " has chunks still being written, retry once they finish");
+            }
+            if (!session.isComplete()) {
+                throw new DocumentException("Upload " + uploadId + " is missing bytes from offset " + session.nextOffset());
+            }
+
+            Path partFile = partFile(uploadId);
+            String checksum = sha256(partFile);
+            if (!checksum.equals(session.checksum)) {
+                metricsService.increment("document.upload.checksum_failures");
+                discard(session);
+                throw new DocumentException("Checksum mismatch for upload " + uploadId + ", the upload was discarded");
+            }
+
+            DocumentSummary document = documentService.createDocument(partFile, session.fileName,
+                session.projectCode, session.materialCode, session.workflowId, session.uploadedBy);
+
+            // Kept until it expires so a retried completion finds the document
+            session.documentId = document.getId();
+            session.updatedAt = System.currentTimeMillis();
+            try {
+                persist(session);
+            } catch (IOException e) {
+                logger.warn("Failed to record completion of upload {}: {}", uploadId, e.getMessage());
+            }
+
+            metricsService.increment("document.upload.completed");
+            logger.info("Completed upload {} as document {}", uploadId, document.getId());
+            return document;
+        }
+    }
+
+    public void abortUpload(String uploadId, String username) {
+        UploadSession session = getSession(uploadId, username);
+        synchronized (session) {
+            discard(session);
+        }
+        metricsService.increment("document.upload.aborted");
+    }
+
+    @Scheduled(fixedDelayString = "${app.document.upload.cleanup-interval-ms:3600000}")
+    public void removeExpiredUploads() {
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingPath, "*" + META_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String uploadId = name.substring(0, name.length() - META_SUFFIX.length());
+                if (!UPLOAD_ID.matcher(uploadId).matches()) {
+                    continue;
+                }
+                UploadSession session = sessions.computeIfAbsent(uploadId, this::load);
+                if (session == null) {
+                    continue;
+                }
+                synchronized (session) {
+                    if (session.isExpired()) {
+                        discard(session);
+                        removed++;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to remove expired uploads: {}", e.getMessage());
+        }
+        if (removed > 0) {
+            metricsService.add("document.upload.expired", removed);
+            logger.info("Removed {} expired uploads", removed);
+        }
+    }
+
+    private UploadSession getSession(String uploadId, String username) {
+        if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+            throw new DocumentNotFoundException("Upload not found: " + uploadId);
+        }
+        UploadSession session = sessions.computeIfAbsent(uploadId, this::load);
+        if (session == null || !session.uploadedBy.equals(username)) {
+            throw new DocumentNotFoundException("Upload not found: " + uploadId);
+        }
+        if (session.isExpired()) {
+            synchronized (session) {
+                discard(session);
+            }
+            throw new DocumentNotFoundException("Upload not found: " + uploadId);
+        }
+        return session;
+    }
+
+    private void record(UploadSession session, long start, long end) throws IOException {
+        synchronized (session) {
+            // A chunk that finished after the upload was aborted or expired
+            if (session.discarded) {
+                return;
+            }
+            session.addRange(start, end);
+            session.updatedAt = System.currentTimeMillis();
+            persist(session);
+        }
+    }
+
+    private void discard(UploadSession session) {
+        session.discarded = true;
+        sessions.remove(session.uploadId);
+        try {
+            Files.deleteIfExists(partFile(session.uploadId));
+            Files.deleteIfExists(metaFile(session.uploadId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete files of upload {}: {}", session.uploadId, e.getMessage());
+        }
+    }
+
+    // Written to a temporary file and renamed, so a crash never leaves half a metadata file
+    private void persist(UploadSession session) throws IOException {
+        Path metaFile = metaFile(session.uploadId);
+        Path tempFile = stagingPath.resolve(session.uploadId + META_SUFFIX + ".tmp");
+        objectMapper.writeValue(tempFile.toFile(), session.toMap());
+        Files.move(tempFile, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private UploadSession load(String uploadId) {
+        Path metaFile = metaFile(uploadId);
+        if (!Files.exists(metaFile)) {
+            return null;
+        }
+        try {
+            return sessionFromMap(objectMapper.readValue(metaFile.toFile(), Map.class));
+        } catch (IOException e) {
+            throw new DocumentException("Failed to read upload " + uploadId, e);
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        return stagingPath.resolve(uploadId + PART_SUFFIX);
+    }
+
+    private Path metaFile(String uploadId) {
+        return stagingPath.resolve(uploadId + META_SUFFIX);
+    }
+
+    private DocumentUploadStatusDto toStatus(UploadSession session) {
+        synchronized (session) {
+            DocumentUploadStatusDto status = new DocumentUploadStatusDto();
+            status.setUploadId(session.uploadId);
+            status.setFileName(session.fileName);
+            status.setFileSize(session.fileSize);
+            status.setReceivedBytes(session.receivedBytes());
+            status.setNextOffset(session.nextOffset());
+            status.setMaxChunkSize(maxChunkSize);
+            status.setComplete(session.isComplete());
+            status.setDocumentId(session.documentId);
+            status.setExpiresAt(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(session.updatedAt + TimeUnit.HOURS.toMillis(ttlHours)), ZoneId.systemDefault()));
+            return status;
+        }
+    }
+
+    private static String sha256(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException e) {
+            throw new DocumentException("Failed to read upload " + file.getFileName(), e);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private class UploadSession {
+        private String uploadId;
+        private String fileName;
+        private long fileSize;
+        private String checksum;
+        private String projectCode;
+        private String materialCode;
+        private Long workflowId;
+        private String uploadedBy;
+        private long updatedAt;
+        private Long documentId;
+
+        // Not persisted: chunks being written, and whether the upload's files were deleted
+        private int writers;
+        private boolean discarded;
+
+        // Received byte ranges, start to exclusive end, merged so they never overlap or touch
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+        void addRange(long start, long end) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                ranges.remove(next.getKey());
+            }
+            ranges.put(start, end);
+        }
+
+        long receivedBytes() {
+            long received = 0;
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                received += range.getValue() - range.getKey();
+            }
+            return received;
+        }
+
+        long nextOffset() {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return first != null && first.getKey() == 0 ? first.getValue() : 0;
+        }
+
+        boolean isComplete() {
+            return documentId != null || nextOffset() == fileSize;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - updatedAt > TimeUnit.HOURS.toMillis(ttlHours);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("uploadId", uploadId);
+            map.put("fileName", fileName);
+            map.put("fileSize", fileSize);
+            map.put("checksum", checksum);
+            map.put("projectCode", projectCode);
+            map.put("materialCode", materialCode);
+            map.put("workflowId", workflowId);
+            map.put("uploadedBy", uploadedBy);
+            map.put("updatedAt", updatedAt);
+            map.put("documentId", documentId);
+            List<List<Long>> received = new ArrayList<>(ranges.size());
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                received.add(Arrays.asList(range.getKey(), range.getValue()));
+            }
+            map.put("ranges", received);
+            return map;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private UploadSession sessionFromMap(Map<String, Object> map) {
+        UploadSession session = new UploadSession();
+        session.uploadId = (String) map.get("uploadId");
+        session.fileName = (String) map.get("fileName");
+        session.fileSize = ((Number) map.get("fileSize")).longValue();
+        session.checksum = (String) map.get("checksum");
+        session.projectCode = (String) map.get("projectCode");
+        session.materialCode = (String) map.get("materialCode");
+        session.workflowId = toLong(map.get("workflowId"));
+        session.uploadedBy = (String) map.get("uploadedBy");
+        session.updatedAt = ((Number) map.get("updatedAt")).longValue();
+        session.documentId = toLong(map.get("documentId"));
+        for (List<Number> range : (List<List<Number>>) map.get("ranges")) {
+            session.ranges.put(range.get(0).longValue(), range.get(1).longValue());
+        }
+        return session;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,333 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.ExportJobDto;
+import com.cqs.qrmfg.util.ExportFormat;
+import com.cqs.qrmfg.util.TableWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs large exports in the background. A submitted export gets a job id right
+ * away; a small bounded worker pool writes the file to local disk while clients
+ * poll progress, and the finished file is served from disk until it expires.
+ * Identical requests share one job while it runs and for a short while after.
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    /**
+     * Produces the export rows; the writer is finished by the task
+     */
+    @FunctionalInterface
+    public interface ExportTask {
+        void run(TableWriter writer);
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Value("${app.export.jobs.directory:${java.io.tmpdir}/qrmfg-exports}")
+    private String directory;
+
+    @Value("${app.export.jobs.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.export.jobs.queue-capacity:20}")
+    private int queueCapacity;
+
+    // How long finished files stay downloadable
+    @Value("${app.export.jobs.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    // How long a finished job is handed out again for an identical request
+    @Value("${app.export.jobs.reuse-completed-seconds:300}")
+    private long reuseCompletedSeconds;
+
+    private final Map<String, ExportJob> jobsById = new ConcurrentHashMap<>();
+    private final Map<String, ExportJob> jobsByKey = new ConcurrentHashMap<>();
+
+    private Path exportDirectory;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        exportDirectory = Paths.get(directory);
+        Files.createDirectories(exportDirectory);
+        // Jobs live in memory, so files left by a previous run can never be downloaded
+        deleteAllFiles();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "export-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        metricsService.registerGauge("export.jobs.running", executor::getActiveCount);
+        metricsService.registerGauge("export.jobs.queued", () -> executor.getQueue().size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submit an export, or join an identical one that is still running or just finished.
+     * Throws RejectedExecutionException when the queue is full.
+     */
+    public synchronized ExportJobDto submit(String type, Map<String, ?> parameters, ExportFormat format,
+                                            String title, String requestedBy, ExportTask task) {
+        String key = type + ":" + format + ":" + new TreeMap<>(parameters);
+
+        ExportJob existing = jobsByKey.get(key);
+        if (existing != null && existing.isReusable(reuseCompletedSeconds)) {
+            existing.requesters.add(requestedBy);
+            metricsService.increment("export.jobs.deduplicated");
+            return toDto(existing);
+        }
+
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), key, type, format,
+            type.toLowerCase().replace('_', '-') + "-" + System.currentTimeMillis() + "." + format.getExtension());
+        job.requesters.add(requestedBy);
+
+        executor.execute(() -> run(job, title, task));
+        jobsById.put(job.id, job);
+        jobsByKey.put(key, job);
+
+        metricsService.increment("export.jobs.submitted");
+        logger.info("Export job {} ({} {}) submitted by {}", job.id, type, format, requestedBy);
+        return toDto(job);
+    }
+
+    /**
+     * Job status, or null when it does not exist or belongs to someone else
+     */
+    public ExportJobDto getJob(String jobId, String username, boolean admin) {
+        ExportJob job = findAccessibleJob(jobId, username, admin);
+        return job != null ? toDto(job) : null;
+    }
+
+    /**
+     * Result file of a completed job, or null when it is not available to this user
+     */
+    public Path getResultFile(String jobId, String username, boolean admin) {
+        ExportJob job = findAccessibleJob(jobId, username, admin);
+        if (job == null || job.status != Status.COMPLETED || !Files.exists(job.file)) {
+            return null;
+        }
+        metricsService.increment("export.jobs.downloads");
+        return job.file;
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.jobs.cleanup-interval-ms:300000}")
+    public void removeExpiredJobs() {
+        for (ExportJob job : jobsById.values()) {
+            if (job.isExpired(ttlMinutes)) {
+                remove(job);
+            }
+        }
+    }
+
+    private void run(ExportJob job, String title, ExportTask task) {
+        job.status = Status.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        Path partFile = exportDirectory.resolve(job.id + ".part");
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(new CountingOutputStream(
+                    Files.newOutputStream(partFile), job.bytesWritten))) {
+                task.run(new CountingTableWriter(job.format.newWriter(out, title), job.rowsWritten));
+            }
+            Path file = exportDirectory.resolve(job.id + "." + job.format.getExtension());
+            Files.move(partFile, file, StandardCopyOption.REPLACE_EXISTING);
+
+            job.file = file;
+            job.completedAt = LocalDateTime.now();
+            job.status = Status.COMPLETED;
+            metricsService.increment("export.jobs.completed");
+            logger.info("Export job {} completed: {} rows, {} bytes", job.id, job.rowsWritten.get(), job.bytesWritten.get());
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.completedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            deleteQuietly(partFile);
+            metricsService.increment("export.jobs.failed");
+            logger.warn("Export job {} failed: {}", job.id, e.getMessage());
+        }
+    }
+
+    private ExportJob findAccessibleJob(String jobId, String username, boolean admin) {
+        ExportJob job = jobsById.get(jobId);
+        if (job == null || job.isExpired(ttlMinutes)) {
+            return null;
+        }
+        return admin || job.requesters.contains(username) ? job : null;
+    }
+
+    private synchronized void remove(ExportJob job) {
+        jobsById.remove(job.id);
+        jobsByKey.remove(job.key, job);
+        if (job.file != null) {
+            deleteQuietly(job.file);
+        }
+        metricsService.increment("export.jobs.expired");
+    }
+
+    private void deleteAllFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(exportDirectory)) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete export file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private ExportJobDto toDto(ExportJob job) {
+        ExportJobDto dto = new ExportJobDto();
+        dto.setId(job.id);
+        dto.setType(job.type);
+        dto.setFormat(job.format.name());
+        dto.setStatus(job.status.name());
+        dto.setRowsWritten(job.rowsWritten.get());
+        dto.setBytesWritten(job.bytesWritten.get());
+        dto.setFileName(job.fileName);
+        dto.setError(job.error);
+        dto.setSubmittedAt(job.submittedAt);
+        dto.setStartedAt(job.startedAt);
+        dto.setCompletedAt(job.completedAt);
+        dto.setExpiresAt(job.completedAt != null ? job.completedAt.plusMinutes(ttlMinutes) : null);
+        return dto;
+    }
+
+    private static class ExportJob {
+        private final String id;
+        private final String key;
+        private final String type;
+        private final ExportFormat format;
+        private final String fileName;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final Set<String> requesters = ConcurrentHashMap.newKeySet();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+
+        private volatile Status status = Status.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime completedAt;
+        private volatile Path file;
+        private volatile String error;
+
+        ExportJob(String id, String key, String type, ExportFormat format, String fileName) {
+            this.id = id;
+            this.key = key;
+            this.type = type;
+            this.format = format;
+            this.fileName = fileName;
+        }
+
+        boolean isReusable(long reuseCompletedSeconds) {
+            if (status == Status.QUEUED || status == Status.RUNNING) {
+                return true;
+            }
+            return status == Status.COMPLETED
+                && completedAt.plusSeconds(reuseCompletedSeconds).isAfter(LocalDateTime.now());
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return completedAt != null && completedAt.plusMinutes(ttlMinutes).isBefore(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Counts rows for progress reporting
+     */
+    private static class CountingTableWriter implements TableWriter {
+        private final TableWriter delegate;
+        private final AtomicLong rows;
+
+        CountingTableWriter(TableWriter delegate, AtomicLong rows) {
+            this.delegate = delegate;
+            this.rows = rows;
+        }
+
+        @Override
+        public void writeHeader(String... columns) { delegate.writeHeader(columns); }
+
+        @Override
+        public void writeRow(Object... values) {
+            delegate.writeRow(values);
+            rows.incrementAndGet();
+        }
+
+        @Override
+        public void flush() { delegate.flush(); }
+
+        @Override
+        public void finish() { delegate.finish(); }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final AtomicLong bytes;
+
+        CountingOutputStream(OutputStream out, AtomicLong bytes) {
+            super(out);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes.addAndGet(len);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.QuerySummaryDto;
+import com.cqs.qrmfg.event.QueryChangedEvent;
+import com.cqs.qrmfg.event.WorkflowStateChangedEvent;
+import com.cqs.qrmfg.model.QueryDailyRollup;
+import com.cqs.qrmfg.model.WorkflowDailyRollup;
+import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.repository.QueryDailyRollupRepository;
+import com.cqs.qrmfg.repository.WorkflowDailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the daily query and workflow rollup tables. Each committed change adds
+ * its deltas to one or two rollup rows inside the same transaction, and the backfill
+ * job recomputes whole days from the source tables with one grouped statement per
+ * table. Reports over any date range then read a few hundred rollup rows instead
+ * of the full history.
+ */
+@Service
+public class MetricsRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRollupService.class);
+
+    // Same SLA as QueryServiceImpl: a query is expected to be resolved within 3 days
+    private static final int SLA_HOURS = 72;
+
+    // Bounds used when a report does not restrict the date range
+    private static final LocalDate EARLIEST_DAY = LocalDate.of(2000, 1, 1);
+    private static final LocalDate LATEST_DAY = LocalDate.of(9999, 12, 31);
+
+    private static final String MERGE_QUERY_ROLLUP_SQL =
+        "MERGE INTO qrmfg_query_daily_rollup r " +
+        "USING (SELECT ? AS rollup_day, ? AS assigned_team FROM dual) s " +
+        "ON (r.rollup_day = s.rollup_day AND r.assigned_team = s.assigned_team) " +
+        "WHEN MATCHED THEN UPDATE SET r.created_count = r.created_count + ?, " +
+        "    r.resolved_count = r.resolved_count + ?, " +
+        "    r.resolution_hours_sum = r.resolution_hours_sum + ?, " +
+        "    r.sla_met_count = r.sla_met_count + ? " +
+        "WHEN NOT MATCHED THEN INSERT (rollup_day, assigned_team, created_count, resolved_count, " +
+        "    resolution_hours_sum, sla_met_count) VALUES (s.rollup_day, s.assigned_team, ?, ?, ?, ?)";
+
+    private static final String MERGE_WORKFLOW_ROLLUP_SQL =
+        "MERGE INTO qrmfg_workflow_daily_rollup r " +
+        "USING (SELECT ? AS rollup_day, ? AS plant_code, ? AS workflow_state FROM dual) s " +
+        "ON (r.rollup_day = s.rollup_day AND r.plant_code = s.plant_code AND r.workflow_state = s.workflow_state) " +
+        "WHEN MATCHED THEN UPDATE SET r.entered_count = r.entered_count + ?, " +
+        "    r.exited_count = r.exited_count + ?, " +
+        "    r.completion_hours_sum = r.completion_hours_sum + ? " +
+        "WHEN NOT MATCHED THEN INSERT (rollup_day, plant_code, workflow_state, entered_count, exited_count, " +
+        "    completion_hours_sum) VALUES (s.rollup_day, s.plant_code, s.workflow_state, ?, ?, ?)";
+
+    // Held until the backfill commits. Incremental merges wait for it, and the backfill waits
+    // for merges already made by uncommitted changes, so no delta is counted twice or lost.
+    private static final String LOCK_QUERY_ROLLUP_SQL = "LOCK TABLE qrmfg_query_daily_rollup IN EXCLUSIVE MODE";
+
+    private static final String LOCK_WORKFLOW_ROLLUP_SQL = "LOCK TABLE qrmfg_workflow_daily_rollup IN EXCLUSIVE MODE";
+
+    private static final String DELETE_QUERY_ROLLUP_SQL =
+        "DELETE FROM qrmfg_query_daily_rollup WHERE rollup_day >= ? AND rollup_day < ?";
+
+    private static final String DELETE_WORKFLOW_ROLLUP_SQL =
+        "DELETE FROM qrmfg_workflow_daily_rollup WHERE rollup_day >= ? AND rollup_day < ?";
+
+    // Creations are counted on the creation day, resolutions on the resolution day. Archived
+    // queries are included, so recomputing an old day does not drop the queries archived since.
+    private static final String BACKFILL_QUERY_ROLLUP_SQL =
+        "INSERT INTO qrmfg_query_daily_rollup (rollup_day, assigned_team, created_count, resolved_count, " +
+        "    resolution_hours_sum, sla_met_count) " +
+        "SELECT rollup_day, assigned_team, SUM(created), SUM(resolved), SUM(hours), SUM(sla_met) FROM ( " +
+        "    SELECT TRUNC(created_at) AS rollup_day, assigned_team, 1 AS created, 0 AS resolved, " +
+        "        0 AS hours, 0 AS sla_met " +
+        "    FROM " + WorkflowArchiveService.ALL_QUERIES + " WHERE created_at >= ? AND created_at < ? " +
+        "    UNION ALL " +
+        "    SELECT TRUNC(resolved_at), assigned_team, 0, 1, " +
+        "        (CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) * 24, " +
+        "        CASE WHEN (CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) * 24 <= ? THEN 1 ELSE 0 END " +
+        "    FROM " + WorkflowArchiveService.ALL_QUERIES + " " +
+        "    WHERE query_status = 'RESOLVED' AND resolved_at >= ? AND resolved_at < ? " +
+        ") GROUP BY rollup_day, assigned_team";
+
+    // Exact counterpart of the rollup average for ranges that do not fall on day boundaries
+    private static final String RESOLUTION_HOURS_SQL =
+        "SELECT AVG((CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) * 24) " +
+        "FROM " + WorkflowArchiveService.ALL_QUERIES + " " +
+        "WHERE query_status = 'RESOLVED' AND assigned_team = ? AND resolved_at BETWEEN ? AND ?";
+
+    // State changes are reconstructed from the workflow audit history: a revision whose
+    // state differs from the previous revision of the same workflow is one transition
+    private static final String BACKFILL_WORKFLOW_ROLLUP_SQL =
+        "INSERT INTO qrmfg_workflow_daily_rollup (rollup_day, plant_code, workflow_state, entered_count, " +
+        "    exited_count, completion_hours_sum) " +
+        "WITH transitions AS ( " +
+        "    SELECT plant_code, workflow_state, previous_state, last_modified AS changed_at, created_at FROM ( " +
+        "        SELECT a.plant_code, a.workflow_state, a.last_modified, a.created_at, a.revtype, " +
+        "            LAG(a.workflow_state) OVER (PARTITION BY a.id ORDER BY a.rev) AS previous_state " +
+        "        FROM qrmfg_material_workflows_aud a " +
+        "    ) WHERE revtype != 2 AND (previous_state IS NULL OR previous_state != workflow_state) " +
+        "      AND last_modified >= ? AND last_modified < ? " +
+        ") " +
+        "SELECT rollup_day, plant_code, workflow_state, SUM(entered), SUM(exited), SUM(hours) FROM ( " +
+        "    SELECT TRUNC(changed_at) AS rollup_day, plant_code, workflow_state, 1 AS entered, 0 AS exited, " +
+        "        CASE WHEN workflow_state = 'COMPLETED' " +
+        "            THEN (CAST(changed_at AS DATE) - CAST(created_at AS DATE)) * 24 ELSE 0 END AS hours " +
+        "    FROM transitions " +
+        "    UNION ALL " +
+        "    SELECT TRUNC(changed_at), plant_code, previous_state, 0, 1, 0 " +
+        "    FROM transitions WHERE previous_state IS NOT NULL " +
+        ") GROUP BY rollup_day, plant_code, workflow_state";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private QueryDailyRollupRepository queryRollupRepository;
+
+    @Autowired
+    private WorkflowDailyRollupRepository workflowRollupRepository;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Autowired
+    private WorkflowArchiveService archiveService;
+
+    // Days recomputed by the nightly job, counting back from today
+    @Value("${app.rollup.backfill.days:2}")
+    private int backfillDays;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public MetricsRollupService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Incremental maintenance
+
+    /**
+     * Runs just before the query change commits so the rollup delta and the change
+     * itself are committed or rolled back together
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onQueryChanged(QueryChangedEvent event) {
+        QuerySummaryDto query = event.getQuery();
+        if (query == null || query.getAssignedTeam() == null || query.getCreatedAt() == null) {
+            // Deletions carry no snapshot; the nightly backfill corrects the counts
+            return;
+        }
+
+        try {
+            switch (event.getChangeType()) {
+                case CREATED:
+                    upsertQueryRollup(query.getCreatedAt().toLocalDate(), query.getAssignedTeam().name(), 1, 0, 0, 0);
+                    break;
+                case REASSIGNED:
+                    // Creations are attributed to the current team, as the backfill does
+                    if (event.getPreviousTeam() != null && event.getPreviousTeam() != query.getAssignedTeam()) {
+                        LocalDate createdDay = query.getCreatedAt().toLocalDate();
+                        upsertQueryRollup(createdDay, event.getPreviousTeam().name(), -1, 0, 0, 0);
+                        upsertQueryRollup(createdDay, query.getAssignedTeam().name(), 1, 0, 0, 0);
+                    }
+                    break;
+                case RESOLVED:
+                    if (query.getResolvedAt() != null) {
+                        double hours = hoursBetween(query.getCreatedAt(), query.getResolvedAt());
+                        upsertQueryRollup(query.getResolvedAt().toLocalDate(), query.getAssignedTeam().name(),
+                            0, 1, hours, hours <= SLA_HOURS ? 1 : 0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (DataAccessException e) {
+            // Reporting must never fail the business change; the backfill repairs the day
+            metricsService.increment("rollup.update_failures");
+            logger.warn("Failed to update query rollup for query {}: {}", event.getQueryId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onWorkflowStateChanged(WorkflowStateChangedEvent event) {
+        if (event.getPlantCode() == null || event.getNewState() == null || event.getChangedAt() == null) {
+            return;
+        }
+
+        try {
+            LocalDate day = event.getChangedAt().toLocalDate();
+            double completionHours = event.getNewState() == WorkflowState.COMPLETED && event.getCreatedAt() != null
+                ? hoursBetween(event.getCreatedAt(), event.getChangedAt()) : 0;
+
+            upsertWorkflowRollup(day, event.getPlantCode(), event.getNewState().name(), 1, 0, completionHours);
+            if (event.getPreviousState() != null) {
+                upsertWorkflowRollup(day, event.getPlantCode(), event.getPreviousState().name(), 0, 1, 0);
+            }
+        } catch (DataAccessException e) {
+            metricsService.increment("rollup.update_failures");
+            logger.warn("Failed to update workflow rollup for workflow {}: {}", event.getWorkflowId(), e.getMessage());
+        }
+    }
+
+    // Backfill
+
+    /**
+     * Recompute the rollup rows for the days from start (inclusive) to end (exclusive)
+     * from the source tables. Runs in one transaction, so reports never see a half
+     * rebuilt day. The rollup tables are locked against concurrent merges for its
+     * duration; reads are not blocked. Returns the number of rollup rows written.
+     */
+    public int backfill(LocalDate start, LocalDate end) {
+        if (!start.isBefore(end)) {
+            return 0;
+        }
+        long startMillis = System.currentTimeMillis();
+        Timestamp from = Timestamp.valueOf(start.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(end.atStartOfDay());
+
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(LOCK_QUERY_ROLLUP_SQL);
+            jdbcTemplate.execute(LOCK_WORKFLOW_ROLLUP_SQL);
+            jdbcTemplate.update(DELETE_QUERY_ROLLUP_SQL, java.sql.Date.valueOf(start), java.sql.Date.valueOf(end));
+            jdbcTemplate.update(DELETE_WORKFLOW_ROLLUP_SQL, java.sql.Date.valueOf(start), java.sql.Date.valueOf(end));
+            int queryRows = jdbcTemplate.update(archiveService.includeArchivedQueries(BACKFILL_QUERY_ROLLUP_SQL),
+                from, to, SLA_HOURS, from, to);
+            int workflowRows = jdbcTemplate.update(BACKFILL_WORKFLOW_ROLLUP_SQL, from, to);
+            return queryRows + workflowRows;
+        });
+
+        metricsService.increment("rollup.backfills");
+        metricsService.add("rollup.backfill_rows", rows);
+        logger.info("Backfilled daily rollups from {} to {}: {} rows in {} ms",
+                   start, end, rows, System.currentTimeMillis() - startMillis);
+        return rows;
+    }
+
+    /**
+     * Nightly repair of the most recent days, which also picks up deletions and
+     * changes made outside the services
+     */
+    @Scheduled(cron = "${app.rollup.backfill.cron:0 15 1 * * *}")
+    public void backfillRecentDays() {
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        try {
+            backfill(tomorrow.minusDays(backfillDays + 1), tomorrow);
+        } catch (Exception e) {
+            logger.warn("Scheduled rollup backfill failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Populate empty rollup tables from the full history, e.g. on first deployment
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (queryRollupRepository.count() == 0 && workflowRollupRepository.count() == 0) {
+                backfill(EARLIEST_DAY, LocalDate.now().plusDays(1));
+            }
+        } catch (Exception e) {
+            logger.warn("Initial rollup backfill failed: {}", e.getMessage());
+        }
+    }
+
+    // Reads - all date ranges are inclusive and null means unbounded
+
+    public List<QueryDailyRollup> getQueryRollups(LocalDate from, LocalDate to) {
+        return queryRollupRepository.findByRollupDayBetweenOrderByRollupDayAscAssignedTeamAsc(
+            startOf(from), endOf(to));
+    }
+
+    public List<WorkflowDailyRollup> getWorkflowRollups(LocalDate from, LocalDate to) {
+        return workflowRollupRepository.findByRollupDayBetweenOrderByRollupDayAscPlantCodeAscWorkflowStateAsc(
+            startOf(from), endOf(to));
+    }
+
+    /**
+     * Average created -> resolved hours of the queries resolved in the range,
+     * for one team or for all teams when team is null
+     */
+    public double getAverageResolutionHours(String team, LocalDate from, LocalDate to) {
+        long resolved = 0;
+        double hours = 0;
+        for (Object[] row : queryRollupRepository.sumByTeam(startOf(from), endOf(to))) {
+            if (team == null || team.equals(row[0])) {
+                resolved += toLong(row[2]);
+                hours += toDouble(row[3]);
+            }
+        }
+        return resolved > 0 ? hours / resolved : 0.0;
+    }
+
+    /**
+     * Average created -> resolved hours of the team's queries resolved between the exact
+     * timestamps (inclusive), archived queries included. Reads the queries, not the rollups.
+     */
+    public double getExactAverageResolutionHours(String team, LocalDateTime from, LocalDateTime to) {
+        Double hours = jdbcTemplate.queryForObject(archiveService.includeArchivedQueries(RESOLUTION_HOURS_SQL),
+            Double.class, team,
+            Timestamp.valueOf(from != null ? from : startOf(null).atStartOfDay()),
+            Timestamp.valueOf(to != null ? to : endOf(null).atStartOfDay()));
+        return hours != null ? hours : 0.0;
+    }
+
+    /**
+     * Number of workflows that entered the given state on each day of the range,
+     * keyed by ISO date. Entering JVC_PENDING is workflow creation.
+     */
+    public Map<String, Long> getWorkflowsEnteredByDay(WorkflowState state, LocalDate from, LocalDate to) {
+        Map<String, Long> byDay = new LinkedHashMap<>();
+        for (Object[] row : workflowRollupRepository.sumEnteredByDay(state.name(), startOf(from), endOf(to))) {
+            byDay.put(row[0].toString(), toLong(row[1]));
+        }
+        return byDay;
+    }
+
+    private void upsertQueryRollup(LocalDate day, String team, long created, long resolved,
+                                   double resolutionHours, long slaMet) {
+        mergeWithRetry(MERGE_QUERY_ROLLUP_SQL, java.sql.Date.valueOf(day), team,
+            created, resolved, resolutionHours, slaMet,
+            created, resolved, resolutionHours, slaMet);
+    }
+
+    private void upsertWorkflowRollup(LocalDate day, String plantCode, String state, long entered, long exited,
+                                      double completionHours) {
+        mergeWithRetry(MERGE_WORKFLOW_ROLLUP_SQL, java.sql.Date.valueOf(day), plantCode, state,
+            entered, exited, completionHours,
+            entered, exited, completionHours);
+    }
+
+    private void mergeWithRetry(String sql, Object... args) {
+        try {
+            jdbcTemplate.update(sql, args);
+        } catch (DuplicateKeyException e) {
+            // Two writers inserted the same new row at once; the row exists now so the
+            // second attempt takes the update branch
+            jdbcTemplate.update(sql, args);
+        }
+        metricsService.increment("rollup.updates");
+    }
+
+    private static double hoursBetween(LocalDateTime start, LocalDateTime end) {
+        return Duration.between(start, end).getSeconds() / 3600.0;
+    }
+
+    private static LocalDate startOf(LocalDate from) {
+        return from != null ? from : EARLIEST_DAY;
+    }
+
+    private static LocalDate endOf(LocalDate to) {
+        return to != null ? to : LATEST_DAY;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+}
@@ -31,10 +31,12 @@ public interface NotificationService {
     void notifyWorkflowCompleted(MaterialWorkflow workflow, String completedBy);
     void notifyWorkflowStateChanged(MaterialWorkflow workflow, WorkflowState previousState, String changedBy);
     void notifyWorkflowOverdue(MaterialWorkflow workflow);
+    void notifyWorkflowsStateChanged(List<MaterialWorkflow> workflows, WorkflowState newState, String changedBy);
     
     // Query-specific notification methods
     void notifyQueryRaised(Query query);
     void notifyQueryResolved(Query query);
+    void notifyQueriesResolved(List<Query> queries);
     void notifyQueryAssigned(Query query, String assignedBy);
     void notifyQueryOverdue(Query query);
     
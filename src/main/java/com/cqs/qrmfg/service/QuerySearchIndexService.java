@@ -0,0 +1,376 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.QuerySummaryDto;
+import com.cqs.qrmfg.event.QueryChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over query question, response, material code and material name.
+ * Replaces the LIKE '%term%' table scan: terms are kept in a sorted dictionary so prefix
+ * lookups are range scans, and hits are ranked by field-weighted TF-IDF.
+ * The index is rebuilt from the database on startup and updated after each committed
+ * create or resolve; it only returns ids, so stale entries can never leak deleted rows.
+ * Memory is one posting per distinct term of each query plus the dictionary; no query
+ * text is kept.
+ */
+@Service
+public class QuerySearchIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuerySearchIndexService.class);
+
+    // Field weights - a material code hit is worth more than a word in a long response
+    private static final int MATERIAL_CODE_WEIGHT = 4;
+    private static final int MATERIAL_NAME_WEIGHT = 3;
+    private static final int QUESTION_WEIGHT = 2;
+    private static final int RESPONSE_WEIGHT = 1;
+
+    // Expanded prefix matches score below exact term matches
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    private static final String REBUILD_SQL =
+        "SELECT q.id, q.question, q.response, w.material_code, w.material_name " +
+        "FROM qrmfg_queries q JOIN qrmfg_material_workflows w ON q.workflow_id = w.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // One rebuild at a time, so there is a single log of changes to replay
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    // term -> (query id -> weighted term frequency)
+    private NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+    // query id -> its terms, needed to remove a document before re-indexing it. The
+    // frequencies live only in the postings and the strings are the dictionary's own keys.
+    private Map<Long, String[]> documents = new HashMap<>();
+
+    // Changes applied while a rebuild scans the table, replayed onto the new index before
+    // it is swapped in; a null value is a removal. Guarded by the write lock.
+    private Map<Long, Map<String, Integer>> changesDuringRebuild;
+
+    @PostConstruct
+    public void registerMetrics() {
+        metricsService.registerGauge("query.search_index.documents", this::getDocumentCount);
+        metricsService.registerGauge("query.search_index.terms", this::getTermCount);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warn("Query search index rebuild on startup failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the database. Rows are streamed into a fresh index
+     * which is then swapped in, so searches keep working while the rebuild runs.
+     * Incremental updates that arrive during the scan are replayed onto the fresh index first.
+     */
+    public int rebuild() {
+        rebuildLock.lock();
+        try {
+            return rebuildIndex();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private int rebuildIndex() {
+        long start = System.currentTimeMillis();
+        NavigableMap<String, Map<Long, Integer>> newPostings = new TreeMap<>();
+        Map<Long, String[]> newDocuments = new HashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            jdbcTemplate.query(REBUILD_SQL, rs -> {
+                long id = rs.getLong("id");
+                Map<String, Integer> terms = analyze(rs.getString("material_code"), rs.getString("material_name"),
+                    rs.getString("question"), rs.getString("response"));
+                addDocument(newPostings, newDocuments, id, terms);
+            });
+        } catch (RuntimeException e) {
+            // The live index kept every change, so it stays as it is
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            // Changes committed while the scan ran may not be in what it read
+            replayed = changesDuringRebuild.size();
+            for (Map.Entry<Long, Map<String, Integer>> change : changesDuringRebuild.entrySet()) {
+                removeDocument(newPostings, newDocuments, change.getKey());
+                if (change.getValue() != null) {
+                    addDocument(newPostings, newDocuments, change.getKey(), change.getValue());
+                }
+            }
+            changesDuringRebuild = null;
+            postings = newPostings;
+            documents = newDocuments;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        metricsService.increment("query.search_index.rebuilds");
+        logger.info("Rebuilt query search index: {} documents, {} terms in {} ms, {} changes replayed",
+                   newDocuments.size(), newPostings.size(), System.currentTimeMillis() - start, replayed);
+        return newDocuments.size();
+    }
+
+    /**
+     * Keep the index in step with committed changes; a rolled back create or
+     * resolve never becomes searchable
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQueryChanged(QueryChangedEvent event) {
+        if (event.getChangeType() == QueryChangedEvent.ChangeType.DELETED) {
+            remove(event.getQueryId());
+            return;
+        }
+        QuerySummaryDto query = event.getQuery();
+        index(event.getQueryId(), analyze(query.getMaterialCode(), query.getMaterialName(),
+            query.getQuestion(), query.getResponse()));
+    }
+
+    public void remove(Long queryId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(postings, documents, queryId);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(queryId, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search. Every search term must match (as a whole term or a prefix);
+     * returns the requested page of query ids, best match first.
+     */
+    public SearchHits search(String text, int page, int size) {
+        long start = System.nanoTime();
+        List<String> searchTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(text)));
+        if (searchTerms.isEmpty()) {
+            return new SearchHits(Collections.<Long>emptyList(), 0);
+        }
+
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            int documentCount = Math.max(documents.size(), 1);
+            for (String searchTerm : searchTerms) {
+                Map<Long, Double> termScores = scoreTerm(searchTerm, documentCount);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // AND semantics: keep only documents matching every term
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(b.getValue(), a.getValue());
+            // Newer queries (higher ids) first on ties
+            return byScore != 0 ? byScore : Long.compare(b.getKey(), a.getKey());
+        });
+
+        int from = Math.min(page * size, ranked.size());
+        int to = Math.min(from + size, ranked.size());
+        List<Long> ids = new ArrayList<>(to - from);
+        for (Map.Entry<Long, Double> entry : ranked.subList(from, to)) {
+            ids.add(entry.getKey());
+        }
+
+        metricsService.increment("query.search_index.searches");
+        metricsService.add("query.search_index.search_micros", (System.nanoTime() - start) / 1000);
+        return new SearchHits(ids, ranked.size());
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(String searchTerm, int documentCount) {
+        Map<Long, Double> termScores = new HashMap<>();
+        // All dictionary terms starting with the search term form one contiguous range
+        NavigableMap<String, Map<Long, Integer>> matches =
+            postings.subMap(searchTerm, true, searchTerm + Character.MAX_VALUE, false);
+
+        for (Map.Entry<String, Map<Long, Integer>> match : matches.entrySet()) {
+            Map<Long, Integer> postingList = match.getValue();
+            double idf = Math.log(1.0 + (double) documentCount / postingList.size());
+            double factor = match.getKey().equals(searchTerm) ? 1.0 : PREFIX_MATCH_FACTOR;
+
+            for (Map.Entry<Long, Integer> posting : postingList.entrySet()) {
+                double score = factor * idf * (1.0 + Math.log(posting.getValue()));
+                // A document matching several expansions counts its best one
+                termScores.merge(posting.getKey(), score, Math::max);
+            }
+        }
+        return termScores;
+    }
+
+    private void index(Long id, Map<String, Integer> terms) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(postings, documents, id);
+            addDocument(postings, documents, id, terms);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.put(id, terms);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        metricsService.increment("query.search_index.updates");
+    }
+
+    private static void removeDocument(NavigableMap<String, Map<Long, Integer>> postings,
+                                       Map<Long, String[]> documents, Long id) {
+        String[] previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous) {
+            Map<Long, Integer> postingList = postings.get(term);
+            if (postingList != null) {
+                postingList.remove(id);
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static void addDocument(NavigableMap<String, Map<Long, Integer>> postings,
+                                    Map<Long, String[]> documents,
+                                    Long id, Map<String, Integer> terms) {
+        String[] documentTerms = new String[terms.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            Map<Long, Integer> postingList = postings.get(term.getKey());
+            if (postingList == null) {
+                postingList = new HashMap<>();
+                postings.put(term.getKey(), postingList);
+                documentTerms[i++] = term.getKey();
+            } else {
+                // Share the dictionary's string instead of keeping this document's copy
+                documentTerms[i++] = postings.ceilingKey(term.getKey());
+            }
+            postingList.put(id, term.getValue());
+        }
+        documents.put(id, documentTerms);
+    }
+
+    private static Map<String, Integer> analyze(String materialCode, String materialName,
+                                                String question, String response) {
+        Map<String, Integer> terms = new HashMap<>();
+        addField(terms, materialCode, MATERIAL_CODE_WEIGHT);
+        addField(terms, materialName, MATERIAL_NAME_WEIGHT);
+        addField(terms, question, QUESTION_WEIGHT);
+        addField(terms, response, RESPONSE_WEIGHT);
+        return terms;
+    }
+
+    private static void addField(Map<String, Integer> terms, String value, int weight) {
+        for (String token : tokenize(value)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * One page of ranked query ids plus the total number of matches
+     */
+    public static class SearchHits {
+        private final List<Long> queryIds;
+        private final int totalHits;
+
+        public SearchHits(List<Long> queryIds, int totalHits) {
+            this.queryIds = queryIds;
+            this.totalHits = totalHits;
+        }
+
+        public List<Long> getQueryIds() { return queryIds; }
+
+        public int getTotalHits() { return totalHits; }
+    }
+}
@@ -1,8 +1,12 @@
 package com.cqs.qrmfg.service;
 
+import com.cqs.qrmfg.dto.QuerySearchCriteria;
+import com.cqs.qrmfg.dto.QuerySearchResult;
 import com.cqs.qrmfg.model.Query;
 import com.cqs.qrmfg.model.QueryStatus;
 import com.cqs.qrmfg.model.QueryTeam;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -61,8 +65,10 @@ public interface QueryService {
     // SLA and metrics
     List<Query> findQueriesOverSLA(int slaHours);
     double getAverageResolutionTimeHours(QueryTeam team);
+    // Exact for any range; ranges on midnight boundaries are served from the daily rollups with end exclusive
     double getAverageResolutionTimeHours(QueryTeam team, LocalDateTime start, LocalDateTime end);
     long countOpenQueriesByTeam(QueryTeam team);
+    // Counts queries in the hot table only; archived queries are not included
     long countResolvedQueriesByTeam(QueryTeam team);
     long countOverdueQueries();
     long countQueriesCreatedToday();
@@ -85,4 +91,9 @@ public interface QueryService {
     List<Query> findQueriesBlockingWorkflow(Long workflowId);
     boolean hasWorkflowOpenQueries(Long workflowId);
     List<Query> searchQueriesWithContext(String materialCode, String projectCode, String plantCode, String blockId, String team, String status, String priority, int minDaysOpen);
+    QuerySearchResult searchQueriesWithContext(QuerySearchCriteria criteria);
+    
+    // Full-text search over question, response and material, ranked by relevance
+    Page<Query> searchQueriesByText(String text, Pageable pageable);
+    int rebuildSearchIndex();
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.QueryStatsDto;
+import com.cqs.qrmfg.util.SnapshotCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query statistics served from a shared snapshot. One conditional-aggregation
+ * pass computes every counter for every team; the snapshot is recomputed at most
+ * once per refresh interval no matter how many dashboards are polling.
+ */
+@Service
+public class QueryStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryStatsService.class);
+
+    // Overdue: open for more than 3 days, same business rule as Query.isOverdue()
+    private static final String STATS_SQL =
+        "SELECT assigned_team, " +
+        "SUM(CASE WHEN query_status = 'OPEN' THEN 1 ELSE 0 END) AS open_count, " +
+        "SUM(CASE WHEN query_status = 'RESOLVED' THEN 1 ELSE 0 END) AS resolved_count, " +
+        "SUM(CASE WHEN query_status = 'OPEN' AND created_at < SYSDATE - 3 THEN 1 ELSE 0 END) AS overdue_count, " +
+        "SUM(CASE WHEN created_at >= TRUNC(SYSDATE) THEN 1 ELSE 0 END) AS created_today, " +
+        "SUM(CASE WHEN resolved_at >= TRUNC(SYSDATE) THEN 1 ELSE 0 END) AS resolved_today, " +
+        "AVG(CASE WHEN query_status = 'RESOLVED' AND resolved_at IS NOT NULL " +
+        "    THEN (CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) * 24 END) AS avg_resolution_hours " +
+        "FROM " + WorkflowArchiveService.ALL_QUERIES + " GROUP BY assigned_team";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Autowired
+    private WorkflowArchiveService archiveService;
+
+    @Value("${app.query.stats.refresh-seconds:5}")
+    private long refreshSeconds;
+
+    private SnapshotCache<QueryStatsDto> snapshot;
+
+    @PostConstruct
+    public void init() {
+        snapshot = new SnapshotCache<>(this::computeStats, refreshSeconds * 1000);
+    }
+
+    public QueryStatsDto getStats() {
+        return snapshot.get();
+    }
+
+    private QueryStatsDto computeStats() {
+        long start = System.currentTimeMillis();
+        Map<String, QueryStatsDto.TeamStats> teams = new LinkedHashMap<>();
+
+        // Archived queries count towards the resolved totals and resolution times
+        jdbcTemplate.query(archiveService.includeArchivedQueries(STATS_SQL), rs -> {
+            teams.put(rs.getString("assigned_team"), new QueryStatsDto.TeamStats(
+                rs.getLong("open_count"),
+                rs.getLong("resolved_count"),
+                rs.getLong("overdue_count"),
+                rs.getLong("created_today"),
+                rs.getLong("resolved_today"),
+                rs.getDouble("avg_resolution_hours")));
+        });
+
+        metricsService.increment("query.stats.computations");
+        logger.debug("Computed query statistics for {} teams in {} ms", teams.size(), System.currentTimeMillis() - start);
+        return new QueryStatsDto(LocalDateTime.now(), teams);
+    }
+}
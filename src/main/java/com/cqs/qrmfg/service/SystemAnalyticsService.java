@@ -0,0 +1,138 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.util.SnapshotCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * User, role, session and audit activity counts for the report and system endpoints.
+ * Each figure is one grouped count query, and the results are held in a snapshot that
+ * is recomputed at most once per refresh interval, so the cost of these endpoints no
+ * longer depends on how many users, sessions or audit rows exist.
+ */
+@Service
+public class SystemAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SystemAnalyticsService.class);
+
+    // Same rules as User.isEnabled()
+    private static final String USER_COUNTS_SQL =
+        "SELECT COUNT(*) AS total, " +
+        "SUM(CASE WHEN enabled = 1 AND status = 'ACTIVE' THEN 1 ELSE 0 END) AS active " +
+        "FROM qrmfg_users";
+
+    private static final String ROLE_DISTRIBUTION_SQL =
+        "SELECT r.name, COUNT(*) AS user_count " +
+        "FROM qrmfg_user_roles ur JOIN qrmfg_roles r ON r.id = ur.role_id " +
+        "GROUP BY r.name";
+
+    // Same rules as UserSession.isActive()
+    private static final String SESSION_COUNTS_SQL =
+        "SELECT COUNT(*) AS total, " +
+        "SUM(CASE WHEN active = 1 AND status = 'ACTIVE' " +
+        "    AND (expires_at IS NULL OR expires_at >= SYSTIMESTAMP) THEN 1 ELSE 0 END) AS active " +
+        "FROM qrmfg_user_sessions";
+
+    // Bounded by time so only the recent monthly audit partitions are read
+    private static final String ACTIVITY_TIMELINE_SQL =
+        "SELECT TO_CHAR(TRUNC(event_timestamp), 'YYYY-MM-DD') AS activity_day, COUNT(*) AS event_count " +
+        "FROM qrmfg_audit_logs " +
+        "WHERE event_timestamp >= TRUNC(SYSDATE) - ? " +
+        "GROUP BY TRUNC(event_timestamp)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.analytics.refresh-seconds:60}")
+    private long refreshSeconds;
+
+    @Value("${app.analytics.timeline-days:90}")
+    private int timelineDays;
+
+    private SnapshotCache<AnalyticsSnapshot> snapshot;
+
+    @PostConstruct
+    public void init() {
+        snapshot = new SnapshotCache<>(this::computeSnapshot, refreshSeconds * 1000);
+    }
+
+    public Map<String, Object> getUserStats() {
+        AnalyticsSnapshot current = snapshot.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", current.totalUsers);
+        stats.put("active", current.activeUsers);
+        return stats;
+    }
+
+    public Map<String, Long> getRoleDistribution() {
+        return snapshot.get().roleDistribution;
+    }
+
+    /**
+     * Audit events per day (yyyy-MM-dd) over the configured number of recent days
+     */
+    public Map<String, Long> getActivityTimeline() {
+        return snapshot.get().activityTimeline;
+    }
+
+    public Map<String, Object> getSystemStats() {
+        AnalyticsSnapshot current = snapshot.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeUsers", current.activeUsers);
+        stats.put("totalUsers", current.totalUsers);
+        stats.put("activeSessions", current.activeSessions);
+        stats.put("totalSessions", current.totalSessions);
+        stats.put("generatedAt", current.generatedAtMillis);
+        return stats;
+    }
+
+    private AnalyticsSnapshot computeSnapshot() {
+        long start = System.currentTimeMillis();
+        AnalyticsSnapshot result = new AnalyticsSnapshot();
+
+        jdbcTemplate.query(USER_COUNTS_SQL, rs -> {
+            result.totalUsers = rs.getLong("total");
+            result.activeUsers = rs.getLong("active");
+        });
+        jdbcTemplate.query(SESSION_COUNTS_SQL, rs -> {
+            result.totalSessions = rs.getLong("total");
+            result.activeSessions = rs.getLong("active");
+        });
+
+        Map<String, Long> roles = new TreeMap<>();
+        jdbcTemplate.query(ROLE_DISTRIBUTION_SQL, rs -> {
+            roles.put(rs.getString("name"), rs.getLong("user_count"));
+        });
+        result.roleDistribution = Collections.unmodifiableMap(roles);
+
+        Map<String, Long> timeline = new TreeMap<>();
+        jdbcTemplate.query(ACTIVITY_TIMELINE_SQL, rs -> {
+            timeline.put(rs.getString("activity_day"), rs.getLong("event_count"));
+        }, timelineDays);
+        result.activityTimeline = Collections.unmodifiableMap(timeline);
+
+        result.generatedAtMillis = System.currentTimeMillis();
+        logger.debug("Computed system analytics snapshot in {} ms", result.generatedAtMillis - start);
+        return result;
+    }
+
+    private static class AnalyticsSnapshot {
+        private long totalUsers;
+        private long activeUsers;
+        private long totalSessions;
+        private long activeSessions;
+        private Map<String, Long> roleDistribution;
+        private Map<String, Long> activityTimeline;
+        private long generatedAtMillis;
+    }
+}
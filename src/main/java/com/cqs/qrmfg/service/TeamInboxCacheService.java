@@ -0,0 +1,259 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.dto.QuerySummaryDto;
+import com.cqs.qrmfg.event.QueryChangedEvent;
+import com.cqs.qrmfg.model.QueryStatus;
+import com.cqs.qrmfg.model.QueryTeam;
+import com.cqs.qrmfg.repository.QueryRepository;
+import com.cqs.qrmfg.util.QueryMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-team open query inbox kept in memory as ready-to-serve DTOs.
+ * Each inbox is loaded once, then patched from committed QueryChangedEvents;
+ * loads are single-flight per team and run without holding any lock, so one
+ * team's database read never delays other teams or event handling;
+ * every change produces a new immutable snapshot with a new ETag so clients
+ * polling with If-None-Match get a 304 without a database round trip.
+ */
+@Service
+public class TeamInboxCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TeamInboxCacheService.class);
+
+    // Same order as QueryRepository.findTeamInboxQueries: priority DESC, oldest first
+    private static final Comparator<QuerySummaryDto> INBOX_ORDER = Comparator
+        .comparing(QuerySummaryDto::getPriorityLevel, Comparator.nullsFirst(Comparator.<String>reverseOrder()))
+        .thenComparing(QuerySummaryDto::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()))
+        .thenComparing(QuerySummaryDto::getId);
+
+    @Autowired
+    private QueryRepository queryRepository;
+
+    @Autowired
+    private QueryMapper queryMapper;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    // Safety net for changes that bypass QueryService and for the days-open counter aging
+    @Value("${app.query.inbox-cache.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    // Distinguishes ETags issued before and after a restart
+    private final long bootId = System.currentTimeMillis();
+
+    private final Map<QueryTeam, InboxSnapshot> inboxes = new ConcurrentHashMap<>();
+
+    // In-flight loads, one per team, so concurrent misses share a single database read
+    private final Map<QueryTeam, InboxLoad> loads = new ConcurrentHashMap<>();
+
+    // Guards one team's snapshot and load; never held across a database call
+    private final Map<QueryTeam, Object> teamLocks = new EnumMap<>(QueryTeam.class);
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    public TeamInboxCacheService() {
+        for (QueryTeam team : QueryTeam.values()) {
+            teamLocks.put(team, new Object());
+        }
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        metricsService.registerGauge("query.inbox_cache.loaded_teams", inboxes::size);
+    }
+
+    public InboxSnapshot getInbox(QueryTeam team) {
+        InboxSnapshot snapshot = inboxes.get(team);
+        if (snapshot != null && !snapshot.isOlderThan(maxAgeSeconds)) {
+            metricsService.increment("query.inbox_cache.hits");
+            return snapshot;
+        }
+
+        InboxLoad load;
+        boolean owner = false;
+        synchronized (teamLocks.get(team)) {
+            load = loads.get(team);
+            if (load == null) {
+                load = new InboxLoad();
+                loads.put(team, load);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            // Another request is already reloading: serve the expiring snapshot, or wait for the first load
+            return snapshot != null ? snapshot : load.await();
+        }
+        return load(team, load);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQueryChanged(QueryChangedEvent event) {
+        for (QueryTeam team : QueryTeam.values()) {
+            synchronized (teamLocks.get(team)) {
+                // A load running now may have read the table before this change committed
+                InboxLoad load = loads.get(team);
+                if (load != null) {
+                    load.changes.add(event);
+                }
+
+                InboxSnapshot current = inboxes.get(team);
+                // Inboxes not loaded yet will read the committed change from the database
+                if (current == null) {
+                    continue;
+                }
+                List<QuerySummaryDto> items = applyChange(current.getItems(), event, team);
+                if (items != null) {
+                    inboxes.put(team, newSnapshot(team, items, current.loadedAtMillis));
+                    metricsService.increment("query.inbox_cache.incremental_updates");
+                }
+            }
+        }
+    }
+
+    private InboxSnapshot load(QueryTeam team, InboxLoad load) {
+        try {
+            List<QuerySummaryDto> items = queryMapper.toSummaryDtoList(queryRepository.findTeamInboxQueriesWithWorkflow(team));
+            long loadedAtMillis = System.currentTimeMillis();
+
+            InboxSnapshot snapshot;
+            synchronized (teamLocks.get(team)) {
+                // Changes are idempotent, so replaying one the read already saw is harmless
+                for (QueryChangedEvent change : load.changes) {
+                    List<QuerySummaryDto> changed = applyChange(items, change, team);
+                    if (changed != null) {
+                        items = changed;
+                    }
+                }
+                snapshot = newSnapshot(team, items, loadedAtMillis);
+                inboxes.put(team, snapshot);
+                loads.remove(team);
+            }
+            load.complete(snapshot, null);
+
+            metricsService.increment("query.inbox_cache.loads");
+            logger.debug("Loaded {} inbox with {} open queries", team, items.size());
+            return snapshot;
+        } catch (RuntimeException e) {
+            synchronized (teamLocks.get(team)) {
+                loads.remove(team);
+            }
+            load.complete(null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * The team's items after the change, or null when the change does not touch this team
+     */
+    private static List<QuerySummaryDto> applyChange(List<QuerySummaryDto> current, QueryChangedEvent event,
+                                                     QueryTeam team) {
+        QuerySummaryDto changed = event.getQuery();
+        boolean belongsHere = changed != null && changed.getStatus() == QueryStatus.OPEN
+            && changed.getAssignedTeam() == team;
+        boolean presentHere = contains(current, event.getQueryId());
+        if (!belongsHere && !presentHere) {
+            return null;
+        }
+
+        List<QuerySummaryDto> items = new ArrayList<>(current.size() + 1);
+        for (QuerySummaryDto item : current) {
+            if (!item.getId().equals(event.getQueryId())) {
+                items.add(item);
+            }
+        }
+        if (belongsHere) {
+            items.add(changed);
+            items.sort(INBOX_ORDER);
+        }
+        return items;
+    }
+
+    private static boolean contains(List<QuerySummaryDto> items, Long queryId) {
+        for (QuerySummaryDto item : items) {
+            if (item.getId().equals(queryId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InboxSnapshot newSnapshot(QueryTeam team, List<QuerySummaryDto> items, long loadedAtMillis) {
+        long version = versionSequence.incrementAndGet();
+        String etag = "\"inbox-" + team.name() + "-" + bootId + "-" + version + "\"";
+        return new InboxSnapshot(Collections.unmodifiableList(items), etag, loadedAtMillis);
+    }
+
+    /**
+     * One team's inbox being read from the database, with the changes that arrived meanwhile
+     */
+    private static class InboxLoad {
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Guarded by the team lock
+        private final List<QueryChangedEvent> changes = new ArrayList<>();
+        private volatile InboxSnapshot snapshot;
+        private volatile RuntimeException failure;
+
+        void complete(InboxSnapshot snapshot, RuntimeException failure) {
+            this.snapshot = snapshot;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        InboxSnapshot await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading team inbox", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Immutable view of one team's inbox at a point in time
+     */
+    public static class InboxSnapshot {
+        private final List<QuerySummaryDto> items;
+        private final String etag;
+        // Incremental updates keep the original load time so the full reload still happens
+        private final long loadedAtMillis;
+
+        InboxSnapshot(List<QuerySummaryDto> items, String etag, long loadedAtMillis) {
+            this.items = items;
+            this.etag = etag;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+
+        public List<QuerySummaryDto> getItems() { return items; }
+
+        public String getEtag() { return etag; }
+
+        boolean isOlderThan(long seconds) {
+            return System.currentTimeMillis() - loadedAtMillis > seconds * 1000;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.event.WorkflowStateChangedEvent;
+import com.cqs.qrmfg.model.MaterialWorkflow;
+import com.cqs.qrmfg.model.Query;
+import com.cqs.qrmfg.model.QuestionnaireResponse;
+import com.cqs.qrmfg.model.WorkflowState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archive tier for long-completed workflows. The scheduled job moves the queries and
+ * questionnaire responses of workflows completed more than completed-days ago into the
+ * archive tables (V11 migration), a batch of workflows per transaction, so the hot
+ * tables behind the inboxes and pending lists only hold current work. The workflow row
+ * itself stays: documents and their access log reference it, and it is a single row.
+ * Reads of a workflow that isArchived fall back to the archive when the hot table has
+ * nothing, and reopening an archived workflow moves its children back.
+ *
+ * Reports that aggregate over every query write ALL_QUERIES in place of the table and
+ * read through includeArchivedQueries: the query statistics, the admin dashboard query
+ * totals, SLA report and resolution times, the performance metrics, the workflow export,
+ * the dashboard summary and per-workflow query counts, the exact resolution-time average
+ * and the query rollup backfill. Open, overdue and today's counters read the hot table
+ * only, since archived queries are resolved and old; so do the query lists and search,
+ * and QueryService.countResolvedQueriesByTeam. No report reads questionnaire responses.
+ */
+@Service
+public class WorkflowArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowArchiveService.class);
+
+    private static final ArchivedTable QUERIES = new ArchivedTable("qrmfg_queries", "qrmfg_arch_queries");
+    private static final ArchivedTable RESPONSES =
+        new ArchivedTable("qrmfg_questionnaire_responses", "qrmfg_arch_responses");
+
+    private static final List<ArchivedTable> TABLES = Arrays.asList(QUERIES, RESPONSES);
+
+    // Workflows completed before the cutoff that still have children in the hot tables
+    private static final String CANDIDATES_SQL =
+        "SELECT w.id FROM qrmfg_material_workflows w " +
+        "WHERE w.workflow_state = 'COMPLETED' AND w.completed_at < ? " +
+        "AND (EXISTS (SELECT 1 FROM qrmfg_queries q WHERE q.workflow_id = w.id) " +
+        "  OR EXISTS (SELECT 1 FROM qrmfg_questionnaire_responses r WHERE r.workflow_id = w.id)) " +
+        "ORDER BY w.completed_at FETCH FIRST ? ROWS ONLY";
+
+    private static final String ARCHIVE_TABLES_SQL =
+        "SELECT COUNT(*) FROM user_tables WHERE table_name IN ('QRMFG_ARCH_QUERIES', 'QRMFG_ARCH_RESPONSES')";
+
+    /**
+     * Placeholder for the query source of a report, replaced by includeArchivedQueries.
+     * Usable with or without an alias.
+     */
+    public static final String ALL_QUERIES = "{all_queries}";
+
+    // The query columns reports aggregate over
+    private static final String REPORTED_QUERY_COLUMNS =
+        "id, workflow_id, assigned_team, query_status, created_at, resolved_at";
+
+    private static final String COLUMNS_SQL =
+        "SELECT column_name FROM user_tab_columns WHERE table_name = ? ORDER BY column_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Autowired
+    private QuerySearchIndexService querySearchIndexService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.completed-days:180}")
+    private int completedDays;
+
+    // Workflows per transaction; also bounds the IN lists below Oracle's 1000 limit
+    @Value("${app.archive.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.archive.max-batches:50}")
+    private int maxBatches;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Hot table columns, read once from the dictionary so the copies follow the mapping
+    private final Map<String, String> columnLists = new ConcurrentHashMap<>();
+
+    // Whether the V11 archive tables exist, checked once; they do not under ddl-auto=create-drop
+    private volatile Boolean archiveAvailable;
+
+    public WorkflowArchiveService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 0 3 * * *}")
+    public void archiveOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveCompleted();
+        } catch (Exception e) {
+            logger.warn("Scheduled workflow archival failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move the children of workflows completed before the cutoff into the archive,
+     * one batch of workflows per transaction, up to max-batches per run
+     */
+    public Map<String, Object> archiveCompleted() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(completedDays);
+        int workflows = 0;
+        long queries = 0;
+        long responses = 0;
+
+        int batches = maxBatches;
+        if (!isArchiveAvailable()) {
+            logger.warn("Archive tables not found, skipping workflow archival");
+            batches = 0;
+        }
+        for (int batch = 0; batch < batches; batch++) {
+            List<Long> candidates = jdbcTemplate.queryForList(CANDIDATES_SQL, Long.class,
+                Timestamp.valueOf(cutoff), Math.min(batchSize, 1000));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            List<Long> archivedQueryIds = new ArrayList<>();
+            int[] moved = transactionTemplate.execute(status -> archiveBatch(candidates, archivedQueryIds));
+            // Archived queries are no longer served by search, which only reads the hot table
+            for (Long queryId : archivedQueryIds) {
+                querySearchIndexService.remove(queryId);
+            }
+            workflows += moved[0];
+            queries += moved[1];
+            responses += moved[2];
+            if (candidates.size() < batchSize) {
+                break;
+            }
+        }
+
+        metricsService.add("archive.workflows", workflows);
+        metricsService.add("archive.queries", queries);
+        metricsService.add("archive.responses", responses);
+        if (workflows > 0) {
+            logger.info("Archived {} workflows completed before {}: {} queries, {} responses",
+                       workflows, cutoff, queries, responses);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("cutoff", cutoff);
+        result.put("workflows", workflows);
+        result.put("queries", queries);
+        result.put("responses", responses);
+        return result;
+    }
+
+    /**
+     * Whether the children of the workflow may have been moved to the archive: it has been
+     * completed for longer than completed-days and the archive tables exist
+     */
+    public boolean isArchived(MaterialWorkflow workflow) {
+        return workflow != null
+            && workflow.getState() == WorkflowState.COMPLETED
+            && workflow.getCompletedAt() != null
+            && workflow.getCompletedAt().isBefore(LocalDateTime.now().minusDays(completedDays))
+            && isArchiveAvailable();
+    }
+
+    public boolean isArchiveAvailable() {
+        Boolean available = archiveAvailable;
+        if (available == null) {
+            try {
+                Integer tables = jdbcTemplate.queryForObject(ARCHIVE_TABLES_SQL, Integer.class);
+                available = tables != null && tables == TABLES.size();
+            } catch (DataAccessException e) {
+                logger.warn("Could not check for the archive tables: {}", e.getMessage());
+                available = false;
+            }
+            archiveAvailable = available;
+            if (!available) {
+                logger.info("Archive tables not found, reads will not fall back to the archive");
+            }
+        }
+        return available;
+    }
+
+    /**
+     * The report SQL with ALL_QUERIES replaced by the hot and archived queries, or by the
+     * hot table alone while the archive tables do not exist
+     */
+    public String includeArchivedQueries(String sql) {
+        String source = QUERIES.hot;
+        if (isArchiveAvailable()) {
+            source = "(SELECT " + REPORTED_QUERY_COLUMNS + " FROM " + QUERIES.hot +
+                " UNION ALL SELECT " + REPORTED_QUERY_COLUMNS + " FROM " + QUERIES.archive + ")";
+        }
+        return sql.replace(ALL_QUERIES, source);
+    }
+
+    /**
+     * Queries of a workflow from the archive; empty when the workflow is not archived
+     */
+    public List<Query> findArchivedQueries(Long workflowId) {
+        return readArchive(QUERIES, Query.class, "workflow_id", workflowId);
+    }
+
+    public Query findArchivedQuery(Long queryId) {
+        List<Query> queries = readArchive(QUERIES, Query.class, "id", queryId);
+        return queries.isEmpty() ? null : queries.get(0);
+    }
+
+    public List<QuestionnaireResponse> findArchivedResponses(Long workflowId) {
+        return readArchive(RESPONSES, QuestionnaireResponse.class, "workflow_id", workflowId);
+    }
+
+    /**
+     * A reopened workflow gets its children back in the transaction that reopens it
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onWorkflowStateChanged(WorkflowStateChangedEvent event) {
+        if (event.getPreviousState() != WorkflowState.COMPLETED || event.getNewState() == WorkflowState.COMPLETED
+                || !isArchiveAvailable()) {
+            return;
+        }
+        long restored = 0;
+        for (ArchivedTable table : TABLES) {
+            String columns = columnList(table);
+            restored += jdbcTemplate.update("INSERT INTO " + table.hot + " (" + columns + ") SELECT " + columns +
+                " FROM " + table.archive + " WHERE workflow_id = ?", event.getWorkflowId());
+            jdbcTemplate.update("DELETE FROM " + table.archive + " WHERE workflow_id = ?", event.getWorkflowId());
+        }
+        if (restored > 0) {
+            metricsService.increment("archive.restored_workflows");
+            logger.info("Restored {} archived rows of reopened workflow {}", restored, event.getWorkflowId());
+        }
+    }
+
+    /**
+     * @param archivedQueryIds receives the ids of the queries moved to the archive
+     */
+    private int[] archiveBatch(List<Long> candidates, List<Long> archivedQueryIds) {
+        // Lock the workflows and skip any reopened since they were selected
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM qrmfg_material_workflows WHERE id IN (" + placeholders(candidates.size()) + ") " +
+            "AND workflow_state = 'COMPLETED' FOR UPDATE", Long.class, candidates.toArray());
+        if (ids.isEmpty()) {
+            return new int[]{0, 0, 0};
+        }
+
+        String in = placeholders(ids.size());
+        Object[] args = ids.toArray();
+        archivedQueryIds.addAll(jdbcTemplate.queryForList(
+            "SELECT id FROM " + QUERIES.hot + " WHERE workflow_id IN (" + in + ")", Long.class, args));
+        int[] moved = new int[]{ids.size(), 0, 0};
+        for (int i = 0; i < TABLES.size(); i++) {
+            ArchivedTable table = TABLES.get(i);
+            String columns = columnList(table);
+            moved[i + 1] = jdbcTemplate.update("INSERT INTO " + table.archive + " (" + columns + ", archived_at) " +
+                "SELECT " + columns + ", SYSTIMESTAMP FROM " + table.hot + " WHERE workflow_id IN (" + in + ")", args);
+            jdbcTemplate.update("DELETE FROM " + table.hot + " WHERE workflow_id IN (" + in + ")", args);
+        }
+        return moved;
+    }
+
+    /**
+     * Archived rows mapped to the entity. They are only read inside read-only
+     * transactions, which never flush, so they are not written back to the hot table.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> readArchive(ArchivedTable table, Class<T> entityClass, String column, Long value) {
+        if (value == null || !isArchiveAvailable()) {
+            return Collections.emptyList();
+        }
+        List<T> rows = entityManager.createNativeQuery(
+                "SELECT " + columnList(table) + " FROM " + table.archive + " WHERE " + column + " = ?1", entityClass)
+            .setParameter(1, value)
+            .getResultList();
+        if (!rows.isEmpty()) {
+            metricsService.increment("archive.reads");
+        }
+        return new ArrayList<>(rows);
+    }
+
+    private String columnList(ArchivedTable table) {
+        return columnLists.computeIfAbsent(table.hot, name -> {
+            List<String> columns = jdbcTemplate.queryForList(COLUMNS_SQL, String.class, name.toUpperCase());
+            if (columns.isEmpty()) {
+                throw new IllegalStateException("No columns found for " + name);
+            }
+            return String.join(", ", columns);
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static class ArchivedTable {
+        private final String hot;
+        private final String archive;
+
+        ArchivedTable(String hot, String archive) {
+            this.hot = hot;
+            this.archive = archive;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.cqs.qrmfg.service;
 
 import com.cqs.qrmfg.dto.AuditHistoryDto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Service for workflow audit operations
@@ -17,6 +19,17 @@ public interface WorkflowAuditService {
      */
     List<AuditHistoryDto> getWorkflowAuditHistory(Long workflowId);
 
+    /**
+     * Get one page of a workflow's audit history within a date window
+     * @param workflowId The workflow ID
+     * @param from Optional start of the window (inclusive)
+     * @param to Optional end of the window (inclusive)
+     * @param page Zero-based page number
+     * @param size Page size, zero or less for all entries
+     * @return List of audit history entries, oldest first
+     */
+    List<AuditHistoryDto> getWorkflowAuditHistory(Long workflowId, LocalDateTime from, LocalDateTime to, int page, int size);
+
     /**
      * Get complete audit trail including all related entities (queries, responses)
      * @param workflowId The workflow ID
@@ -24,6 +37,17 @@ public interface WorkflowAuditService {
      */
     List<AuditHistoryDto> getCompleteWorkflowAuditTrail(Long workflowId);
 
+    /**
+     * Get one page of the complete audit trail within a date window
+     * @param workflowId The workflow ID
+     * @param from Optional start of the window (inclusive)
+     * @param to Optional end of the window (inclusive)
+     * @param page Zero-based page number
+     * @param size Page size, zero or less for all entries
+     * @return Complete audit trail entries, oldest first
+     */
+    List<AuditHistoryDto> getCompleteWorkflowAuditTrail(Long workflowId, LocalDateTime from, LocalDateTime to, int page, int size);
+
     /**
      * Get audit history for a specific query
      * @param queryId The query ID
@@ -68,12 +92,18 @@ public interface WorkflowAuditService {
     List<AuditHistoryDto> searchAuditLogs(Map<String, Object> searchParams);
 
     /**
-     * Export audit logs for a workflow
+     * Stream the complete audit trail of a workflow, oldest first, reading revisions in pages
      * @param workflowId The workflow ID
-     * @param format Export format (csv, json)
-     * @return Exported data as string
+     * @param sink Receives each entry as it is read
+     */
+    void exportAuditLogs(Long workflowId, Consumer<AuditHistoryDto> sink);
+
+    /**
+     * Stream the audit trails of every workflow in a project, one workflow after another
+     * @param projectCode The project code
+     * @param sink Receives each entry as it is read
      */
-    String exportAuditLogs(Long workflowId, String format);
+    void exportProjectAuditLogs(String projectCode, Consumer<AuditHistoryDto> sink);
 
     /**
      * Get version history for questionnaire responses
@@ -1,5 +1,6 @@
 package com.cqs.qrmfg.service;
 
+import com.cqs.qrmfg.dto.WorkflowTransitionResultDto;
 import com.cqs.qrmfg.model.MaterialWorkflow;
 import com.cqs.qrmfg.model.WorkflowState;
 import java.util.List;
@@ -30,6 +31,11 @@ public interface WorkflowService {
     boolean canTransitionTo(Long workflowId, WorkflowState newState);
     boolean canTransitionTo(String materialCode, WorkflowState newState);
     
+    // Bulk state transition - one load, one batched update, per-item outcomes
+    List<WorkflowTransitionResultDto> bulkTransitionToState(List<Long> workflowIds, WorkflowState newState, String updatedBy);
+    // Same transition inside the caller's transaction, with no size cap; the caller sends the notifications
+    List<MaterialWorkflow> bulkTransitionInTransaction(List<Long> workflowIds, WorkflowState newState, String updatedBy);
+    
     // Specific workflow actions
     MaterialWorkflow extendToPlant(Long workflowId, String updatedBy);
     MaterialWorkflow extendToPlant(String materialCode, String updatedBy);
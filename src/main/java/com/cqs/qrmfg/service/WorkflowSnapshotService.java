@@ -0,0 +1,218 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.event.WorkflowStateChangedEvent;
+import com.cqs.qrmfg.model.MaterialWorkflow;
+import com.cqs.qrmfg.model.WorkflowSnapshot;
+import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.repository.WorkflowRepository;
+import com.cqs.qrmfg.repository.WorkflowSnapshotRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the read-only view of a completed workflow once, as gzip-compressed JSON,
+ * so later reads return the stored bytes instead of assembling the workflow, its
+ * queries, responses, documents and audit trail again. Snapshots are written in the
+ * background after the completing transaction commits, and on first read for
+ * workflows that completed before snapshots existed. Reopening a workflow deletes
+ * its snapshot; a snapshot is only served while it records the workflow's current
+ * completedAt, so one that outlived a reopen and re-completion is rebuilt.
+ */
+@Service
+public class WorkflowSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowSnapshotService.class);
+
+    @Autowired
+    private WorkflowSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowAuditService workflowAuditService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // One thread, so a completion and a reopen of the same workflow are applied in order
+    private ExecutorService executor;
+
+    public WorkflowSnapshotService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Listeners run after the caller's commit, where joining its transaction would write nothing
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workflow-snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onWorkflowStateChanged(WorkflowStateChangedEvent event) {
+        Long workflowId = event.getWorkflowId();
+        if (event.getNewState() == WorkflowState.COMPLETED) {
+            executor.execute(() -> {
+                try {
+                    createSnapshot(workflowId);
+                } catch (RuntimeException e) {
+                    // The first read creates it instead
+                    logger.warn("Failed to snapshot completed workflow {}: {}", workflowId, e.getMessage());
+                }
+            });
+        } else if (event.getPreviousState() == WorkflowState.COMPLETED) {
+            executor.execute(() -> deleteSnapshot(workflowId));
+        }
+    }
+
+    /**
+     * Snapshot of a completed workflow, created on demand if missing or stale.
+     * Returns null while the workflow is not completed.
+     */
+    public WorkflowSnapshot getSnapshot(Long workflowId) {
+        MaterialWorkflow workflow = workflowRepository.findById(workflowId).orElse(null);
+        if (workflow == null || workflow.getState() != WorkflowState.COMPLETED) {
+            return null;
+        }
+        WorkflowSnapshot snapshot = snapshotRepository.findById(workflowId).orElse(null);
+        if (isCurrent(snapshot, workflow)) {
+            metricsService.increment("workflow.snapshot.hits");
+            return snapshot;
+        }
+        metricsService.increment("workflow.snapshot.misses");
+        return createSnapshot(workflowId);
+    }
+
+    /**
+     * The uncompressed JSON, for clients that do not accept gzip
+     */
+    public byte[] decompress(WorkflowSnapshot snapshot) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot.getSnapshotData()))) {
+            return StreamUtils.copyToByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private WorkflowSnapshot createSnapshot(Long workflowId) {
+        try {
+            return transactionTemplate.execute(status -> {
+                MaterialWorkflow workflow = workflowRepository.findById(workflowId).orElse(null);
+                // Reopened again before the background write ran
+                if (workflow == null || workflow.getState() != WorkflowState.COMPLETED) {
+                    return null;
+                }
+                WorkflowSnapshot existing = snapshotRepository.findById(workflowId).orElse(null);
+                if (isCurrent(existing, workflow)) {
+                    return existing;
+                }
+
+                // Replaces a snapshot of an earlier completion the reopen did not get to delete
+                Map<String, Object> view = workflowAuditService.getReadOnlyWorkflowView(workflowId);
+                byte[] json = toJson(view);
+                WorkflowSnapshot snapshot = snapshotRepository.save(new WorkflowSnapshot(workflowId, gzip(json),
+                    sha256(json), json.length, LocalDateTime.now(), workflow.getCompletedAt()));
+
+                metricsService.increment("workflow.snapshot.created");
+                logger.info("Stored snapshot of completed workflow {}: {} bytes, {} compressed",
+                           workflowId, json.length, snapshot.getSnapshotData().length);
+                return snapshot;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Written concurrently by the background writer or another reader
+            MaterialWorkflow workflow = workflowRepository.findById(workflowId).orElse(null);
+            WorkflowSnapshot snapshot = snapshotRepository.findById(workflowId).orElse(null);
+            return isCurrent(snapshot, workflow) ? snapshot : null;
+        }
+    }
+
+    private static boolean isCurrent(WorkflowSnapshot snapshot, MaterialWorkflow workflow) {
+        return snapshot != null && workflow != null
+            && workflow.getState() == WorkflowState.COMPLETED
+            && Objects.equals(workflow.getCompletedAt(), snapshot.getWorkflowCompletedAt());
+    }
+
+    private void deleteSnapshot(Long workflowId) {
+        transactionTemplate.execute(status -> {
+            if (snapshotRepository.existsById(workflowId)) {
+                snapshotRepository.deleteById(workflowId);
+                metricsService.increment("workflow.snapshot.deleted");
+                logger.info("Deleted snapshot of reopened workflow {}", workflowId);
+            }
+            return null;
+        });
+    }
+
+    private byte[] toJson(Map<String, Object> view) {
+        try {
+            return objectMapper.writeValueAsBytes(view);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.cqs.qrmfg.service;
+
+import com.cqs.qrmfg.exception.WorkflowConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs idempotent workflow and query transitions in their own transaction and
+ * replays them when an optimistic locking conflict is detected on commit.
+ * Each attempt re-reads the entities, so a replay sees the winning writer's state.
+ * Inside a caller's transaction the work runs once and may be replayed by the
+ * caller's own retry, so side effects such as notifications belong in an
+ * afterCommit synchronization, not directly after execute.
+ */
+@Service
+public class WorkflowTransitionExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowTransitionExecutor.class);
+
+    /**
+     * A unit of work that can be safely replayed. The attempt number starts at 1
+     * so that implementations can recognise a replay and skip work already applied.
+     */
+    @FunctionalInterface
+    public interface TransitionAttempt<T> {
+        T run(int attempt);
+    }
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Value("${app.workflow.transition.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.workflow.transition.retry.initial-backoff-ms:20}")
+    private long initialBackoffMs;
+
+    @Value("${app.workflow.transition.retry.max-backoff-ms:500}")
+    private long maxBackoffMs;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public WorkflowTransitionExecutor(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> T execute(String operation, TransitionAttempt<T> work) {
+        metricsService.increment("workflow.transition.executions");
+
+        // Inside a caller's transaction a conflict only surfaces at the caller's commit,
+        // so the retry has to happen at that outer boundary instead
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            metricsService.increment("workflow.transition.attempts");
+            return work.run(1);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            final int currentAttempt = attempt;
+            metricsService.increment("workflow.transition.attempts");
+            try {
+                return transactionTemplate.execute(status -> work.run(currentAttempt));
+            } catch (OptimisticLockingFailureException e) {
+                metricsService.increment("workflow.transition.conflicts");
+
+                if (attempt >= maxAttempts) {
+                    metricsService.increment("workflow.transition.exhausted");
+                    logger.warn("Giving up on {} after {} conflicting attempts: {}", operation, attempt, e.getMessage());
+                    throw new WorkflowConflictException(
+                        "Concurrent update detected for " + operation + ", please retry", e);
+                }
+
+                metricsService.increment("workflow.transition.retries");
+                logger.debug("Optimistic lock conflict on {} (attempt {}), retrying", operation, attempt);
+                backoff(attempt, operation, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, String operation, OptimisticLockingFailureException cause) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 16));
+        try {
+            // Full jitter keeps competing writers from retrying in lock-step
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowConflictException("Interrupted while retrying " + operation, cause);
+        }
+    }
+}
@@ -3,30 +3,110 @@ package com.cqs.qrmfg.service.impl;
 import com.cqs.qrmfg.dto.QuerySlaReportDto;
 import com.cqs.qrmfg.dto.UserRoleAssignmentDto;
 import com.cqs.qrmfg.dto.WorkflowMonitoringDto;
-import com.cqs.qrmfg.model.MaterialWorkflow;
-import com.cqs.qrmfg.model.Query;
-import com.cqs.qrmfg.model.QueryStatus;
 import com.cqs.qrmfg.model.WorkflowState;
 import com.cqs.qrmfg.repository.DashboardRepository;
 import com.cqs.qrmfg.repository.WorkflowRepository;
 import com.cqs.qrmfg.repository.QueryRepository;
 import com.cqs.qrmfg.service.AdminMonitoringService;
 import com.cqs.qrmfg.service.AuditLogService;
+import com.cqs.qrmfg.service.MetricsRollupService;
+import com.cqs.qrmfg.service.OperationalMetricsService;
 import com.cqs.qrmfg.service.UserService;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import com.cqs.qrmfg.util.SnapshotCache;
+import com.cqs.qrmfg.util.TableWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class AdminMonitoringServiceImpl implements AdminMonitoringService {
 
+    // Overdue: not completed 7 days after creation. Completion time uses completed_at,
+    // falling back to last_modified for workflows completed before it was recorded
+    private static final String DASHBOARD_WORKFLOW_SQL =
+        "SELECT workflow_state, plant_code, COUNT(*) AS workflow_count, " +
+        "SUM(CASE WHEN workflow_state != 'COMPLETED' AND created_at < SYSDATE - 7 THEN 1 ELSE 0 END) AS overdue_count, " +
+        "SUM(CASE WHEN workflow_state = 'COMPLETED' " +
+        "    THEN (CAST(COALESCE(completed_at, last_modified) AS DATE) - CAST(created_at AS DATE)) * 24 " +
+        "    ELSE 0 END) AS completion_hours_sum " +
+        "FROM qrmfg_material_workflows GROUP BY workflow_state, plant_code";
+
+    // Overdue: open for more than 3 days, same business rule as Query.isOverdue()
+    private static final String DASHBOARD_QUERY_SQL =
+        "SELECT COUNT(*) AS total_count, " +
+        "SUM(CASE WHEN query_status = 'OPEN' THEN 1 ELSE 0 END) AS open_count, " +
+        "SUM(CASE WHEN query_status = 'OPEN' AND created_at < SYSDATE - 3 THEN 1 ELSE 0 END) AS overdue_count, " +
+        "COUNT(DISTINCT CASE WHEN query_status = 'OPEN' THEN workflow_id END) AS workflows_with_open " +
+        "FROM " + WorkflowArchiveService.ALL_QUERIES;
+
+    // Resolution time is counted in whole hours and the SLA in whole days (<= 3),
+    // matching the Duration.toHours()/toDays() rules the report has always used
+    private static final String RESOLUTION_HOURS =
+        "TRUNC((CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) * 24)";
+
+    private static final String SLA_REPORT_SQL =
+        "SELECT assigned_team, COUNT(*) AS total_count, " +
+        "SUM(CASE WHEN query_status = 'RESOLVED' THEN 1 ELSE 0 END) AS resolved_count, " +
+        "SUM(CASE WHEN query_status = 'OPEN' AND created_at < ? THEN 1 ELSE 0 END) AS overdue_count, " +
+        "SUM(CASE WHEN query_status = 'RESOLVED' AND resolved_at IS NOT NULL THEN 1 ELSE 0 END) AS timed_count, " +
+        "SUM(CASE WHEN query_status = 'RESOLVED' AND resolved_at IS NOT NULL " +
+        "    THEN " + RESOLUTION_HOURS + " ELSE 0 END) AS resolution_hours_sum, " +
+        "SUM(CASE WHEN query_status = 'RESOLVED' AND resolved_at IS NOT NULL " +
+        "    AND TRUNC(CAST(resolved_at AS DATE) - CAST(created_at AS DATE)) <= 3 THEN 1 ELSE 0 END) AS within_sla_count " +
+        "FROM " + WorkflowArchiveService.ALL_QUERIES + " WHERE 1 = 1";
+
+    // Query counts are pre-aggregated per workflow so the join never multiplies workflow rows
+    private static final String PERFORMANCE_TOTALS_SQL =
+        "SELECT COUNT(*) AS total_count, " +
+        "SUM(CASE WHEN w.workflow_state = 'COMPLETED' THEN 1 ELSE 0 END) AS completed_count, " +
+        "SUM(CASE WHEN w.workflow_state = 'COMPLETED' AND w.completed_at IS NOT NULL THEN 1 ELSE 0 END) AS timed_count, " +
+        "SUM(CASE WHEN w.workflow_state = 'COMPLETED' AND w.completed_at IS NOT NULL " +
+        "    THEN (CAST(w.completed_at AS DATE) - CAST(w.created_at AS DATE)) * 24 ELSE 0 END) AS completion_hours_sum " +
+        "FROM qrmfg_material_workflows w " +
+        "WHERE 1 = 1";
+
+    // Joined from the workflows in range, so only their queries are read through the workflow_id index
+    private static final String PERFORMANCE_QUERY_COUNT_SQL =
+        "SELECT COUNT(*) FROM qrmfg_material_workflows w " +
+        "JOIN " + WorkflowArchiveService.ALL_QUERIES + " q ON q.workflow_id = w.id " +
+        "WHERE 1 = 1";
+
+    private static final String PERFORMANCE_THROUGHPUT_SQL =
+        "SELECT TO_CHAR(w.completed_at, 'YYYY-MM') AS completion_month, COUNT(*) AS completed_count " +
+        "FROM qrmfg_material_workflows w " +
+        "WHERE w.workflow_state = 'COMPLETED' AND w.completed_at IS NOT NULL";
+
+    private static final String AUDIT_EXPORT_SQL =
+        "SELECT a.event_timestamp, u.username, a.action, a.entity_type, a.entity_id, a.details " +
+        "FROM qrmfg_audit_logs a LEFT JOIN qrmfg_users u ON u.id = a.user_id " +
+        "WHERE 1 = 1";
+
+    // Query counts are joined pre-aggregated instead of loading each workflow's queries
+    private static final String WORKFLOW_EXPORT_SQL =
+        "SELECT w.material_code, w.workflow_state, w.plant_code, w.initiated_by, w.created_at, w.last_modified, " +
+        "NVL(q.open_queries, 0) AS open_queries, NVL(q.total_queries, 0) AS total_queries " +
+        "FROM qrmfg_material_workflows w " +
+        "LEFT JOIN (SELECT workflow_id, SUM(CASE WHEN query_status = 'OPEN' THEN 1 ELSE 0 END) AS open_queries, " +
+        "    COUNT(*) AS total_queries FROM " + WorkflowArchiveService.ALL_QUERIES + " GROUP BY workflow_id) q " +
+        "    ON q.workflow_id = w.id " +
+        "WHERE 1 = 1";
+
+    private static final String RESOLUTION_TIMES_SQL =
+        "SELECT assigned_team, AVG(" + RESOLUTION_HOURS + ") AS avg_resolution_hours " +
+        "FROM " + WorkflowArchiveService.ALL_QUERIES + " WHERE query_status = 'RESOLVED' AND resolved_at IS NOT NULL";
+
     @Autowired
     private WorkflowRepository materialWorkflowRepository;
 
@@ -42,95 +122,113 @@ public class AdminMonitoringServiceImpl implements AdminMonitoringService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private MetricsRollupService metricsRollupService;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Autowired
+    private WorkflowArchiveService archiveService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.admin.dashboard.refresh-seconds:30}")
+    private long dashboardRefreshSeconds;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Rows fetched per round trip by the forward-only export cursors
+    @Value("${app.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    private SnapshotCache<WorkflowMonitoringDto> dashboardSnapshot;
+
+    // Separate template so the large fetch size only applies to exports
+    private JdbcTemplate exportJdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        dashboardSnapshot = new SnapshotCache<>(this::computeMonitoringDashboard, dashboardRefreshSeconds * 1000);
+        exportJdbcTemplate = new JdbcTemplate(dataSource);
+        exportJdbcTemplate.setFetchSize(exportFetchSize);
+    }
+
     @Override
     public WorkflowMonitoringDto getWorkflowMonitoringDashboard() {
-        long totalWorkflows = materialWorkflowRepository.count();
-        long activeWorkflows = materialWorkflowRepository.countByStateNot(WorkflowState.COMPLETED);
-        long completedWorkflows = materialWorkflowRepository.countByState(WorkflowState.COMPLETED);
-        
-        // Calculate workflows with open queries
-        long workflowsWithOpenQueries = queryRepository.countDistinctWorkflowIdByStatus(QueryStatus.OPEN);
-        
-        // Calculate overdue workflows (more than 7 days old and not completed)
-        LocalDateTime sevenDaysAgo = LocalDateTime.now().minusDays(7);
-        long overdueWorkflows = materialWorkflowRepository.countByStateNotAndCreatedAtBefore(
-                WorkflowState.COMPLETED, sevenDaysAgo);
+        return dashboardSnapshot.get();
+    }
+
+    @Override
+    public Map<String, Long> getWorkflowStatusDistribution() {
+        return new HashMap<>(dashboardSnapshot.get().getWorkflowsByState());
+    }
+
+    private WorkflowMonitoringDto computeMonitoringDashboard() {
+        long start = System.currentTimeMillis();
         
-        // Get workflows by state
-        Map<String, Long> workflowsByState = new HashMap<>();
+        // Every state is listed, including the ones without workflows
+        Map<String, Long> workflowsByState = new LinkedHashMap<>();
         for (WorkflowState state : WorkflowState.values()) {
-            workflowsByState.put(state.name(), materialWorkflowRepository.countByState(state));
+            workflowsByState.put(state.name(), 0L);
         }
-        
-        // Get workflows by plant
         Map<String, Long> workflowsByPlant = new HashMap<>();
-        List<Object[]> plantCounts = materialWorkflowRepository.countByPlantCodeGrouped();
-        for (Object[] row : plantCounts) {
-            workflowsByPlant.put((String) row[0], (Long) row[1]);
-        }
-        
-        // Get recent activity (last 30 days)
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        Map<String, Long> recentActivity = new HashMap<>();
-        List<Object[]> activityCounts = materialWorkflowRepository.countByCreatedAtAfterGroupByDay(thirtyDaysAgo);
-        for (Object[] row : activityCounts) {
-            recentActivity.put(row[0].toString(), (Long) row[1]);
-        }
-        
-        // Calculate average completion time in hours
-        Double avgCompletionTime = materialWorkflowRepository.calculateAverageCompletionTimeHours();
-        double averageCompletionTimeHours = avgCompletionTime != null ? avgCompletionTime : 0.0;
-        
-        // Query statistics
-        long totalQueries = queryRepository.count();
-        long openQueries = queryRepository.countByStatus(QueryStatus.OPEN);
-        
-        // Calculate overdue queries (more than 3 days old and not resolved)
-        LocalDateTime threeDaysAgo = LocalDateTime.now().minusDays(3);
-        long overdueQueries = queryRepository.countByStatusAndCreatedAtBefore(QueryStatus.OPEN, threeDaysAgo);
-        
-        return new WorkflowMonitoringDto(
-                totalWorkflows,
-                activeWorkflows,
-                completedWorkflows,
-                overdueWorkflows,
-                workflowsWithOpenQueries,
-                workflowsByState,
-                workflowsByPlant,
-                recentActivity,
-                averageCompletionTimeHours,
-                totalQueries,
-                openQueries,
-                overdueQueries
+        long[] workflowTotals = new long[3]; // total, completed, overdue
+        double[] completionHours = new double[1];
+        
+        jdbcTemplate.query(DASHBOARD_WORKFLOW_SQL, rs -> {
+            String state = rs.getString("workflow_state");
+            long count = rs.getLong("workflow_count");
+            workflowsByState.merge(state, count, Long::sum);
+            workflowsByPlant.merge(rs.getString("plant_code"), count, Long::sum);
+            
+            workflowTotals[0] += count;
+            if (WorkflowState.COMPLETED.name().equals(state)) {
+                workflowTotals[1] += count;
+            }
+            workflowTotals[2] += rs.getLong("overdue_count");
+            completionHours[0] += rs.getDouble("completion_hours_sum");
+        });
+        
+        Map<String, Object> queryTotals = jdbcTemplate.queryForMap(archiveService.includeArchivedQueries(DASHBOARD_QUERY_SQL));
+        
+        // Get recent activity (workflows created per day over the last 30 days)
+        Map<String, Long> recentActivity = metricsRollupService.getWorkflowsEnteredByDay(
+                WorkflowState.JVC_PENDING, LocalDate.now().minusDays(30), null);
+        
+        WorkflowMonitoringDto dashboard = new WorkflowMonitoringDto(
+                workflowTotals[0],
+                workflowTotals[0] - workflowTotals[1],
+                workflowTotals[1],
+                workflowTotals[2],
+                toLong(queryTotals.get("workflows_with_open")),
+                Collections.unmodifiableMap(workflowsByState),
+                Collections.unmodifiableMap(workflowsByPlant),
+                Collections.unmodifiableMap(recentActivity),
+                workflowTotals[1] > 0 ? completionHours[0] / workflowTotals[1] : 0.0,
+                toLong(queryTotals.get("total_count")),
+                toLong(queryTotals.get("open_count")),
+                toLong(queryTotals.get("overdue_count"))
         );
+        dashboard.setGeneratedAt(LocalDateTime.now());
+        
+        metricsService.increment("admin.dashboard.computations");
+        metricsService.add("admin.dashboard.compute_millis", System.currentTimeMillis() - start);
+        return dashboard;
     }
 
-    @Override
-    public Map<String, Long> getWorkflowStatusDistribution() {
-        Map<String, Long> distribution = new HashMap<>();
-        for (WorkflowState state : WorkflowState.values()) {
-            distribution.put(state.name(), materialWorkflowRepository.countByState(state));
-        }
-        return distribution;
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
     }
 
     @Override
     public QuerySlaReportDto getQuerySlaReport(LocalDateTime startDate, LocalDateTime endDate) {
-        // Apply date filters if provided
-        List<Query> queries;
-        if (startDate != null && endDate != null) {
-            queries = queryRepository.findByCreatedAtBetween(startDate, endDate);
-        } else if (startDate != null) {
-            queries = queryRepository.findByCreatedAtAfter(startDate);
-        } else if (endDate != null) {
-            queries = queryRepository.findByCreatedAtBefore(endDate);
-        } else {
-            queries = queryRepository.findAll();
-        }
-        
-        // Calculate metrics by team
-        Map<String, List<Query>> queriesByTeam = queries.stream()
-                .collect(Collectors.groupingBy(q -> q.getAssignedTeam().name()));
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(LocalDateTime.now().minusDays(3)));
+        String sql = archiveService.includeArchivedQueries(SLA_REPORT_SQL)
+                + dateRangeFilter("created_at", startDate, endDate, args) + " GROUP BY assigned_team";
         
         Map<String, Double> averageResolutionTimesByTeam = new HashMap<>();
         Map<String, Long> totalQueriesByTeam = new HashMap<>();
@@ -138,81 +236,32 @@ public class AdminMonitoringServiceImpl implements AdminMonitoringService {
         Map<String, Long> overdueQueriesByTeam = new HashMap<>();
         Map<String, Double> slaComplianceByTeam = new HashMap<>();
         
-        LocalDateTime threeDaysAgo = LocalDateTime.now().minusDays(3);
-        
-        for (Map.Entry<String, List<Query>> entry : queriesByTeam.entrySet()) {
-            String team = entry.getKey();
-            List<Query> teamQueries = entry.getValue();
-            
-            // Total queries for this team
-            totalQueriesByTeam.put(team, (long) teamQueries.size());
+        // One row per team; the overall figures are sums of the team rows
+        long[] totals = new long[5]; // total, resolved, overdue, timed resolutions, within SLA
+        double[] resolutionHours = new double[1];
+        
+        jdbcTemplate.query(sql, rs -> {
+            String team = rs.getString("assigned_team");
+            long total = rs.getLong("total_count");
+            long resolved = rs.getLong("resolved_count");
+            long overdue = rs.getLong("overdue_count");
+            long timed = rs.getLong("timed_count");
+            long withinSla = rs.getLong("within_sla_count");
+            double hours = rs.getDouble("resolution_hours_sum");
             
-            // Resolved queries for this team
-            List<Query> resolvedQueries = teamQueries.stream()
-                    .filter(q -> q.getStatus() == QueryStatus.RESOLVED)
-                    .collect(Collectors.toList());
-            resolvedQueriesByTeam.put(team, (long) resolvedQueries.size());
-            
-            // Overdue queries for this team
-            long overdue = teamQueries.stream()
-                    .filter(q -> q.getStatus() == QueryStatus.OPEN && q.getCreatedAt().isBefore(threeDaysAgo))
-                    .count();
+            totalQueriesByTeam.put(team, total);
+            resolvedQueriesByTeam.put(team, resolved);
             overdueQueriesByTeam.put(team, overdue);
+            averageResolutionTimesByTeam.put(team, timed > 0 ? hours / timed : 0.0);
+            slaComplianceByTeam.put(team, resolved > 0 ? (double) withinSla / resolved * 100 : 0.0);
             
-            // Average resolution time for this team
-            if (!resolvedQueries.isEmpty()) {
-                double avgHours = resolvedQueries.stream()
-                        .mapToDouble(q -> {
-                            if (q.getResolvedAt() != null) {
-                                return Duration.between(q.getCreatedAt(), q.getResolvedAt()).toHours();
-                            }
-                            return 0;
-                        })
-                        .average()
-                        .orElse(0);
-                averageResolutionTimesByTeam.put(team, avgHours);
-                
-                // SLA compliance (% resolved within 3 days)
-                long resolvedWithinSla = resolvedQueries.stream()
-                        .filter(q -> {
-                            if (q.getResolvedAt() != null) {
-                                return Duration.between(q.getCreatedAt(), q.getResolvedAt()).toDays() <= 3;
-                            }
-                            return false;
-                        })
-                        .count();
-                double compliance = (double) resolvedWithinSla / resolvedQueries.size() * 100;
-                slaComplianceByTeam.put(team, compliance);
-            } else {
-                averageResolutionTimesByTeam.put(team, 0.0);
-                slaComplianceByTeam.put(team, 0.0);
-            }
-        }
-        
-        // Calculate overall metrics
-        double overallAverageResolutionTime = queries.stream()
-                .filter(q -> q.getStatus() == QueryStatus.RESOLVED && q.getResolvedAt() != null)
-                .mapToDouble(q -> Duration.between(q.getCreatedAt(), q.getResolvedAt()).toHours())
-                .average()
-                .orElse(0);
-        
-        long totalQueries = queries.size();
-        long totalResolvedQueries = queries.stream()
-                .filter(q -> q.getStatus() == QueryStatus.RESOLVED)
-                .count();
-        
-        long totalOverdueQueries = queries.stream()
-                .filter(q -> q.getStatus() == QueryStatus.OPEN && q.getCreatedAt().isBefore(threeDaysAgo))
-                .count();
-        
-        double overallSlaCompliance = 0;
-        if (totalResolvedQueries > 0) {
-            long resolvedWithinSla = queries.stream()
-                    .filter(q -> q.getStatus() == QueryStatus.RESOLVED && q.getResolvedAt() != null)
-                    .filter(q -> Duration.between(q.getCreatedAt(), q.getResolvedAt()).toDays() <= 3)
-                    .count();
-            overallSlaCompliance = (double) resolvedWithinSla / totalResolvedQueries * 100;
-        }
+            totals[0] += total;
+            totals[1] += resolved;
+            totals[2] += overdue;
+            totals[3] += timed;
+            totals[4] += withinSla;
+            resolutionHours[0] += hours;
+        }, args.toArray());
         
         return new QuerySlaReportDto(
                 averageResolutionTimesByTeam,
@@ -220,34 +269,38 @@ public class AdminMonitoringServiceImpl implements AdminMonitoringService {
                 resolvedQueriesByTeam,
                 overdueQueriesByTeam,
                 slaComplianceByTeam,
-                overallAverageResolutionTime,
-                totalQueries,
-                totalResolvedQueries,
-                totalOverdueQueries,
-                overallSlaCompliance
+                totals[3] > 0 ? resolutionHours[0] / totals[3] : 0.0,
+                totals[0],
+                totals[1],
+                totals[2],
+                totals[1] > 0 ? (double) totals[4] / totals[1] * 100 : 0.0
         );
     }
 
     @Override
     public Map<String, Double> getAverageResolutionTimesByTeam(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Query> queries;
-        if (startDate != null && endDate != null) {
-            queries = queryRepository.findByStatusAndResolvedAtBetween(QueryStatus.RESOLVED, startDate, endDate);
-        } else if (startDate != null) {
-            queries = queryRepository.findByStatusAndResolvedAtAfter(QueryStatus.RESOLVED, startDate);
-        } else if (endDate != null) {
-            queries = queryRepository.findByStatusAndResolvedAtBefore(QueryStatus.RESOLVED, endDate);
-        } else {
-            queries = queryRepository.findByStatus(QueryStatus.RESOLVED);
+        List<Object> args = new ArrayList<>();
+        String sql = archiveService.includeArchivedQueries(RESOLUTION_TIMES_SQL)
+                + dateRangeFilter("resolved_at", startDate, endDate, args) + " GROUP BY assigned_team";
+        
+        Map<String, Double> resolutionTimes = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            resolutionTimes.put(rs.getString("assigned_team"), rs.getDouble("avg_resolution_hours"));
+        }, args.toArray());
+        return resolutionTimes;
+    }
+
+    private static String dateRangeFilter(String column, LocalDateTime startDate, LocalDateTime endDate, List<Object> args) {
+        StringBuilder filter = new StringBuilder();
+        if (startDate != null) {
+            filter.append(" AND ").append(column).append(" >= ?");
+            args.add(Timestamp.valueOf(startDate));
         }
-        
-        return queries.stream()
-                .filter(q -> q.getResolvedAt() != null)
-                .collect(Collectors.groupingBy(
-                        q -> q.getAssignedTeam().name(),
-                        Collectors.averagingDouble(q -> 
-                            Duration.between(q.getCreatedAt(), q.getResolvedAt()).toHours())
-                ));
+        if (endDate != null) {
+            filter.append(" AND ").append(column).append(" <= ?");
+            args.add(Timestamp.valueOf(endDate));
+        }
+        return filter.toString();
     }
 
     @Override
@@ -299,117 +352,125 @@ public class AdminMonitoringServiceImpl implements AdminMonitoringService {
     public Map<String, Object> getWorkflowPerformanceMetrics(LocalDateTime startDate, LocalDateTime endDate) {
         Map<String, Object> metrics = new HashMap<>();
         
-        // Apply date filters
-        List<MaterialWorkflow> workflows;
-        if (startDate != null && endDate != null) {
-            workflows = materialWorkflowRepository.findByCreatedAtBetween(startDate, endDate);
-        } else if (startDate != null) {
-            workflows = materialWorkflowRepository.findByCreatedAtAfter(startDate);
-        } else if (endDate != null) {
-            workflows = materialWorkflowRepository.findByCreatedAtBefore(endDate);
-        } else {
-            workflows = materialWorkflowRepository.findAll();
-        }
+        List<Object> args = new ArrayList<>();
+        String filter = dateRangeFilter("w.created_at", startDate, endDate, args);
+        
+        Map<String, Object> totals = jdbcTemplate.queryForMap(PERFORMANCE_TOTALS_SQL + filter, args.toArray());
+        long totalWorkflows = toLong(totals.get("total_count"));
+        long completedWorkflows = toLong(totals.get("completed_count"));
+        long timedCompletions = toLong(totals.get("timed_count"));
+        double completionHours = totals.get("completion_hours_sum") != null
+                ? ((Number) totals.get("completion_hours_sum")).doubleValue() : 0.0;
         
         // Calculate completion rate
-        long totalWorkflows = workflows.size();
-        long completedWorkflows = workflows.stream()
-                .filter(w -> w.getState() == WorkflowState.COMPLETED)
-                .count();
         double completionRate = totalWorkflows > 0 ? (double) completedWorkflows / totalWorkflows * 100 : 0;
         metrics.put("completionRate", completionRate);
         
         // Calculate average completion time
-        double avgCompletionTime = workflows.stream()
-                .filter(w -> w.getState() == WorkflowState.COMPLETED)
-                .mapToDouble(w -> {
-                    // Assuming lastModified is updated when workflow is completed
-                    return Duration.between(w.getCreatedAt(), w.getLastModified()).toHours();
-                })
-                .average()
-                .orElse(0);
-        metrics.put("averageCompletionTimeHours", avgCompletionTime);
+        metrics.put("averageCompletionTimeHours", timedCompletions > 0 ? completionHours / timedCompletions : 0.0);
         
         // Calculate query rate (queries per workflow)
-        double queryRate = workflows.stream()
-                .mapToLong(w -> w.getQueries().size())
-                .average()
-                .orElse(0);
+        long queryCount = totalWorkflows > 0
+                ? toLong(jdbcTemplate.queryForObject(
+                        archiveService.includeArchivedQueries(PERFORMANCE_QUERY_COUNT_SQL) + filter, Long.class, args.toArray())) : 0;
+        double queryRate = totalWorkflows > 0 ? (double) queryCount / totalWorkflows : 0;
         metrics.put("queriesPerWorkflow", queryRate);
         
         // Calculate workflow throughput by month
-        Map<String, Long> throughputByMonth = workflows.stream()
-                .filter(w -> w.getState() == WorkflowState.COMPLETED)
-                .collect(Collectors.groupingBy(
-                        w -> w.getLastModified().format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                        Collectors.counting()
-                ));
+        Map<String, Long> throughputByMonth = new TreeMap<>();
+        jdbcTemplate.query(PERFORMANCE_THROUGHPUT_SQL + filter + " GROUP BY TO_CHAR(w.completed_at, 'YYYY-MM')", rs -> {
+            throughputByMonth.put(rs.getString("completion_month"), rs.getLong("completed_count"));
+        }, args.toArray());
         metrics.put("throughputByMonth", throughputByMonth);
         
         return metrics;
     }
 
     @Override
-    public byte[] exportAuditLogsAsCsv(LocalDateTime startDate, LocalDateTime endDate, String entityType, String action) {
-        List<Map<String, Object>> auditLogs = auditLogService.getFilteredAuditLogs(startDate, endDate, entityType, action);
-        
-        // Convert to CSV
-        StringBuilder csv = new StringBuilder();
-        csv.append("Timestamp,User,Action,Entity Type,Entity ID,Details\n");
-        
-        for (Map<String, Object> log : auditLogs) {
-            csv.append(formatCsvField(log.get("timestamp")))
-               .append(",").append(formatCsvField(log.get("user")))
-               .append(",").append(formatCsvField(log.get("action")))
-               .append(",").append(formatCsvField(log.get("entityType")))
-               .append(",").append(formatCsvField(log.get("entityId")))
-               .append(",").append(formatCsvField(log.get("details")))
-               .append("\n");
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportAuditLogs(LocalDateTime startDate, LocalDateTime endDate, String entityType, String action,
+                                TableWriter writer) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(AUDIT_EXPORT_SQL)
+                .append(dateRangeFilter("a.event_timestamp", startDate, endDate, args));
+        if (entityType != null && !entityType.trim().isEmpty()) {
+            sql.append(" AND a.entity_type = ?");
+            args.add(entityType);
         }
-        
-        return csv.toString().getBytes();
+        if (action != null && !action.trim().isEmpty()) {
+            sql.append(" AND a.action = ?");
+            args.add(action);
+        }
+        sql.append(" ORDER BY a.event_timestamp DESC");
+        
+        writer.writeHeader("Timestamp", "User", "Action", "Entity Type", "Entity ID", "Details");
+        
+        exportJdbcTemplate.query(sql.toString(), rs -> {
+            writer.writeRow(
+                    toLocalDateTime(rs.getTimestamp("event_timestamp")),
+                    rs.getString("username"),
+                    rs.getString("action"),
+                    rs.getString("entity_type"),
+                    rs.getString("entity_id"),
+                    rs.getString("details"));
+        }, args.toArray());
+        writer.finish();
     }
 
     @Override
-    public byte[] exportWorkflowReportAsCsv(LocalDateTime startDate, LocalDateTime endDate, String state) {
-        List<MaterialWorkflow> workflows;
-        
-        // Apply filters
-        if (startDate != null && endDate != null) {
-            if (state != null) {
-                WorkflowState workflowState = WorkflowState.valueOf(state);
-                workflows = materialWorkflowRepository.findByStateAndCreatedAtBetween(workflowState, startDate, endDate);
-            } else {
-                workflows = materialWorkflowRepository.findByCreatedAtBetween(startDate, endDate);
-            }
-        } else if (state != null) {
-            WorkflowState workflowState = WorkflowState.valueOf(state);
-            workflows = materialWorkflowRepository.findByState(workflowState);
-        } else {
-            workflows = materialWorkflowRepository.findAll();
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportWorkflowReport(LocalDateTime startDate, LocalDateTime endDate, WorkflowState state,
+                                     TableWriter writer) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(archiveService.includeArchivedQueries(WORKFLOW_EXPORT_SQL))
+                .append(dateRangeFilter("w.created_at", startDate, endDate, args));
+        if (state != null) {
+            sql.append(" AND w.workflow_state = ?");
+            args.add(state.name());
         }
         
-        // Convert to CSV
-        StringBuilder csv = new StringBuilder();
-        csv.append("Material ID,State,Assigned Plant,Initiated By,Created At,Last Modified,Open Queries,Total Queries\n");
-        
-        for (MaterialWorkflow workflow : workflows) {
-            long openQueries = workflow.getQueries().stream()
-                    .filter(q -> q.getStatus() == QueryStatus.OPEN)
-                    .count();
-            
-            csv.append(formatCsvField(workflow.getMaterialCode()))
-               .append(",").append(formatCsvField(workflow.getState().name()))
-               .append(",").append(formatCsvField(workflow.getAssignedPlant()))
-               .append(",").append(formatCsvField(workflow.getInitiatedBy()))
-               .append(",").append(formatCsvField(workflow.getCreatedAt()))
-               .append(",").append(formatCsvField(workflow.getLastModified()))
-               .append(",").append(openQueries)
-               .append(",").append(workflow.getQueries().size())
-               .append("\n");
+        writer.writeHeader("Material ID", "State", "Assigned Plant", "Initiated By", "Created At", "Last Modified",
+                "Open Queries", "Total Queries");
+        
+        exportJdbcTemplate.query(sql.toString(), rs -> {
+            writer.writeRow(
+                    rs.getString("material_code"),
+                    rs.getString("workflow_state"),
+                    rs.getString("plant_code"),
+                    rs.getString("initiated_by"),
+                    toLocalDateTime(rs.getTimestamp("created_at")),
+                    toLocalDateTime(rs.getTimestamp("last_modified")),
+                    rs.getLong("open_queries"),
+                    rs.getLong("total_queries"));
+        }, args.toArray());
+        writer.finish();
+    }
+
+    @Override
+    public void exportQuerySlaReport(LocalDateTime startDate, LocalDateTime endDate, TableWriter writer) {
+        QuerySlaReportDto report = getQuerySlaReport(startDate, endDate);
+        
+        writer.writeHeader("Team", "Total Queries", "Resolved Queries", "Overdue Queries",
+                "Average Resolution Hours", "SLA Compliance %");
+        for (String team : new TreeSet<>(report.getTotalQueriesByTeam().keySet())) {
+            writer.writeRow(team,
+                    report.getTotalQueriesByTeam().get(team),
+                    report.getResolvedQueriesByTeam().get(team),
+                    report.getOverdueQueriesByTeam().get(team),
+                    report.getAverageResolutionTimesByTeam().get(team),
+                    report.getSlaComplianceByTeam().get(team));
         }
-        
-        return csv.toString().getBytes();
+        writer.writeRow("ALL",
+                report.getTotalQueries(),
+                report.getTotalResolvedQueries(),
+                report.getTotalOverdueQueries(),
+                report.getOverallAverageResolutionTime(),
+                report.getOverallSlaCompliance());
+        writer.finish();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
     }
 
     @Override
@@ -421,19 +482,4 @@ public class AdminMonitoringServiceImpl implements AdminMonitoringService {
     public UserRoleAssignmentDto updateUserRoles(Long userId, List<Long> roleIds) {
         return userService.updateUserRoles(userId, roleIds);
     }
-    
-    /**
-     * Helper method to format CSV fields properly
-     */
-    private String formatCsvField(Object field) {
-        if (field == null) {
-            return "";
-        }
-        String value = field.toString();
-        // Escape quotes and wrap in quotes if contains comma
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
-        }
-        return value;
-    }
-}
\ No newline at end of file
+}
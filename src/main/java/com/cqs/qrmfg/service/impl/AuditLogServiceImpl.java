@@ -1,15 +1,21 @@
 package com.cqs.qrmfg.service.impl;
 
+import com.cqs.qrmfg.dto.AuditLogSearchCriteria;
+import com.cqs.qrmfg.dto.AuditLogSearchResult;
 import com.cqs.qrmfg.service.AuditLogService;
+import com.cqs.qrmfg.service.AuditLogWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import com.cqs.qrmfg.model.AuditLog;
@@ -19,9 +25,39 @@ import com.cqs.qrmfg.model.User;
 @Transactional
 public class AuditLogServiceImpl implements AuditLogService {
 
+    // API field name -> column, the only names that ever reach the SELECT list
+    private static final Map<String, String> SEARCH_COLUMNS = new LinkedHashMap<>();
+    static {
+        SEARCH_COLUMNS.put("id", "a.id");
+        SEARCH_COLUMNS.put("eventTime", "a.event_timestamp");
+        SEARCH_COLUMNS.put("userId", "a.user_id");
+        SEARCH_COLUMNS.put("username", "u.username");
+        SEARCH_COLUMNS.put("action", "a.action");
+        SEARCH_COLUMNS.put("entityType", "a.entity_type");
+        SEARCH_COLUMNS.put("entityId", "a.entity_id");
+        SEARCH_COLUMNS.put("description", "a.description");
+        SEARCH_COLUMNS.put("severity", "a.severity");
+        SEARCH_COLUMNS.put("category", "a.category");
+        SEARCH_COLUMNS.put("eventType", "a.event_type");
+        SEARCH_COLUMNS.put("eventCategory", "a.event_category");
+        SEARCH_COLUMNS.put("details", "a.details");
+        SEARCH_COLUMNS.put("ipAddress", "a.ip_address");
+        SEARCH_COLUMNS.put("userAgent", "a.user_agent");
+        SEARCH_COLUMNS.put("sessionId", "a.session_id");
+        SEARCH_COLUMNS.put("resource", "a.resource_path");
+        SEARCH_COLUMNS.put("result", "a.result");
+        SEARCH_COLUMNS.put("errorMessage", "a.error_message");
+    }
+
+    private static final List<String> DEFAULT_SEARCH_FIELDS = Arrays.asList(
+        "id", "eventTime", "username", "action", "entityType", "entityId", "severity", "result");
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
     @Override
     public List<Map<String, Object>> getUserActivitySummary(LocalDateTime startDate) {
         String sql = "SELECT " +
@@ -108,10 +144,119 @@ public class AuditLogServiceImpl implements AuditLogService {
 
     @Override
     public void logAuditEvent(String user, String action, String entityType, String entityId, String details) {
-        String sql = "INSERT INTO qrmfg_audit_logs (timestamp, username, action, entity_type, entity_id, details) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
-        
-        jdbcTemplate.update(sql, LocalDateTime.now(), user, action, entityType, entityId, details);
+        AuditLog log = new AuditLog();
+        log.setAction(action);
+        log.setEntityType(entityType);
+        log.setEntityId(entityId);
+        log.setDetails(details);
+        log.setEventTime(LocalDateTime.now());
+        auditLogWriter.write(log, user);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AuditLogSearchResult search(AuditLogSearchCriteria criteria) {
+        List<String> fields = criteria.getFields() != null && !criteria.getFields().isEmpty()
+            ? criteria.getFields() : DEFAULT_SEARCH_FIELDS;
+
+        // id and event time are always read, they form the cursor
+        StringBuilder sql = new StringBuilder("SELECT a.id, a.event_timestamp");
+        boolean joinUser = false;
+        for (String field : fields) {
+            String column = SEARCH_COLUMNS.get(field);
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown audit field: " + field);
+            }
+            if (!"id".equals(field) && !"eventTime".equals(field)) {
+                sql.append(", ").append(column).append(" AS ").append(toAlias(field));
+            }
+            joinUser |= "username".equals(field);
+        }
+        sql.append(" FROM qrmfg_audit_logs a");
+        if (joinUser) {
+            sql.append(" LEFT JOIN qrmfg_users u ON u.id = a.user_id");
+        }
+        sql.append(" WHERE 1 = 1");
+
+        // Equality filters lead the composite (..., event_timestamp, id) indexes
+        List<Object> params = new ArrayList<>();
+        appendEquals(sql, params, "a.user_id", criteria.getUserId());
+        if (criteria.getUsername() != null && !criteria.getUsername().trim().isEmpty()) {
+            sql.append(" AND a.user_id = (SELECT id FROM qrmfg_users WHERE username = ?)");
+            params.add(criteria.getUsername());
+        }
+        appendEquals(sql, params, "a.entity_type", criteria.getEntityType());
+        appendEquals(sql, params, "a.entity_id", criteria.getEntityId());
+        appendEquals(sql, params, "a.action", criteria.getAction());
+        appendEquals(sql, params, "a.severity", criteria.getSeverity());
+        appendEquals(sql, params, "a.category", criteria.getCategory());
+        appendEquals(sql, params, "a.result", criteria.getResult());
+
+        // The time bounds prune monthly partitions
+        if (criteria.getStart() != null) {
+            sql.append(" AND a.event_timestamp >= ?");
+            params.add(Timestamp.valueOf(criteria.getStart()));
+        }
+        if (criteria.getEnd() != null) {
+            sql.append(" AND a.event_timestamp <= ?");
+            params.add(Timestamp.valueOf(criteria.getEnd()));
+        }
+        if (criteria.hasCursor()) {
+            Timestamp before = Timestamp.valueOf(criteria.getBeforeEventTime());
+            sql.append(" AND (a.event_timestamp < ? OR (a.event_timestamp = ? AND a.id < ?))");
+            params.add(before);
+            params.add(before);
+            params.add(criteria.getBeforeId());
+        }
+
+        // One extra row tells whether another page exists
+        sql.append(" ORDER BY a.event_timestamp DESC, a.id DESC FETCH FIRST ? ROWS ONLY");
+        params.add(criteria.getLimit() + 1);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        List<LocalDateTime> eventTimes = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            LocalDateTime eventTime = rs.getTimestamp("event_timestamp").toLocalDateTime();
+            for (String field : fields) {
+                if ("id".equals(field)) {
+                    row.put(field, rs.getLong("id"));
+                } else if ("eventTime".equals(field)) {
+                    row.put(field, eventTime);
+                } else if ("userId".equals(field)) {
+                    long userId = rs.getLong(toAlias(field));
+                    row.put(field, rs.wasNull() ? null : userId);
+                } else {
+                    row.put(field, rs.getString(toAlias(field)));
+                }
+            }
+            // Cursor columns are kept aside, the client may not have asked for them
+            ids.add(rs.getLong("id"));
+            eventTimes.add(eventTime);
+            rows.add(row);
+        }, params.toArray());
+
+        String nextCursor = null;
+        if (rows.size() > criteria.getLimit()) {
+            rows.remove(rows.size() - 1);
+            int last = rows.size() - 1;
+            nextCursor = AuditLogSearchCriteria.encodeCursor(eventTimes.get(last), ids.get(last));
+        }
+        return new AuditLogSearchResult(rows, nextCursor);
+    }
+
+    private static void appendEquals(StringBuilder sql, List<Object> params, String column, Object value) {
+        if (value == null || (value instanceof String && ((String) value).trim().isEmpty())) {
+            return;
+        }
+        sql.append(" AND ").append(column).append(" = ?");
+        params.add(value);
+    }
+
+    // Column aliases stay within the 30 character identifier limit
+    private static String toAlias(String field) {
+        return "f_" + field.toLowerCase();
     }
 
     @Override
@@ -161,27 +306,7 @@ public class AuditLogServiceImpl implements AuditLogService {
 
     @Override
     public void save(AuditLog log) {
-        String sql = "INSERT INTO qrmfg_audit_logs (user_id, action, entity_type, entity_id, description, ip_address, user_agent, session_id, event_timestamp, severity, category, event_type, event_category, details, resource_path, result, errorMessage) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        Long userId = log.getUser() != null ? log.getUser().getId() : null;
-        jdbcTemplate.update(sql,
-            userId,
-            log.getAction(),
-            log.getEntityType(),
-            log.getEntityId(),
-            log.getDescription(),
-            log.getIpAddress(),
-            log.getUserAgent(),
-            log.getSessionId(),
-            log.getEventTime(),
-            log.getSeverity(),
-            log.getCategory(),
-            log.getEventType(),
-            log.getEventCategory(),
-            log.getDetails(),
-            log.getResource(),
-            log.getResult(),
-            log.getErrorMessage()
-        );
+        auditLogWriter.write(log, null);
     }
 
     @Override
@@ -252,7 +377,7 @@ public class AuditLogServiceImpl implements AuditLogService {
 
     @Override
     public List<AuditLog> findByEventTimeBetween(java.time.LocalDateTime start, java.time.LocalDateTime end) {
-        String sql = "SELECT id, user_id, action, entity_type, entity_id, details, event_timestamp, severity FROM qrmfg_audit_logs WHERE event_timestamp BETWEEN ? AND ?";
+        String sql = "SELECT id, user_id, action, entity_type, entity_id, details, event_timestamp, severity FROM qrmfg_audit_logs WHERE event_timestamp BETWEEN ? AND ? ORDER BY event_timestamp DESC";
         return jdbcTemplate.query(sql, new Object[]{start, end}, (rs, rowNum) -> {
             AuditLog log = new AuditLog();
             log.setId(rs.getLong("id"));
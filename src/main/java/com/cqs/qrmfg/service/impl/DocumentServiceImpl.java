@@ -6,12 +6,15 @@ import com.cqs.qrmfg.exception.DocumentException;
 import com.cqs.qrmfg.exception.DocumentNotFoundException;
 import com.cqs.qrmfg.exception.WorkflowException;
 import com.cqs.qrmfg.model.DocumentAccessLog;
+import com.cqs.qrmfg.model.DocumentAccessStats;
 import com.cqs.qrmfg.model.DocumentAccessType;
 import com.cqs.qrmfg.model.MaterialWorkflow;
 import com.cqs.qrmfg.model.WorkflowDocument;
 import com.cqs.qrmfg.repository.DocumentAccessLogRepository;
+import com.cqs.qrmfg.repository.DocumentAccessStatsRepository;
 import com.cqs.qrmfg.repository.WorkflowRepository;
 import com.cqs.qrmfg.repository.WorkflowDocumentRepository;
+import com.cqs.qrmfg.service.DocumentAccessLogWriter;
 import com.cqs.qrmfg.service.DocumentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,7 +32,9 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -44,6 +49,12 @@ public class DocumentServiceImpl implements DocumentService {
     @Autowired
     private DocumentAccessLogRepository documentAccessLogRepository;
 
+    @Autowired
+    private DocumentAccessStatsRepository documentAccessStatsRepository;
+
+    @Autowired
+    private DocumentAccessLogWriter documentAccessLogWriter;
+
     @Value("${app.document.storage.path:app}")
     private String documentStoragePath;
 
@@ -66,21 +77,8 @@ public class DocumentServiceImpl implements DocumentService {
 
             try {
                 String fileName = storeFile(file, projectCode, materialCode);
-                
-                WorkflowDocument document = new WorkflowDocument();
-                document.setWorkflow(workflow);
-                document.setFileName(fileName);
-                document.setOriginalFileName(file.getOriginalFilename());
-                document.setFilePath(getFilePath(projectCode, materialCode, fileName));
-                document.setFileType(getFileExtension(file.getOriginalFilename()));
-                document.setFileSize(file.getSize());
-                document.setUploadedBy(uploadedBy);
-                document.setUploadedAt(LocalDateTime.now());
-                document.setIsReused(false);
-
-                WorkflowDocument savedDocument = workflowDocumentRepository.save(document);
-                uploadedDocuments.add(convertToDocumentSummary(savedDocument));
-
+                uploadedDocuments.add(saveDocument(workflow, fileName, file.getOriginalFilename(),
+                                                   projectCode, materialCode, file.getSize(), uploadedBy));
             } catch (IOException e) {
                 throw new DocumentException("Failed to upload file: " + file.getOriginalFilename(), e);
             }
@@ -89,6 +87,55 @@ public class DocumentServiceImpl implements DocumentService {
         return uploadedDocuments;
     }
 
+    @Override
+    public DocumentSummary createDocument(Path file, String originalFileName, String projectCode, String materialCode,
+                                          Long workflowId, String uploadedBy) {
+        MaterialWorkflow workflow = materialWorkflowRepository.findById(workflowId)
+                .orElseThrow(() -> new WorkflowException("Workflow not found with ID: " + workflowId));
+
+        try {
+            Path uploadPath = Paths.get(documentStoragePath, projectCode, materialCode);
+            Files.createDirectories(uploadPath);
+
+            long fileSize = Files.size(file);
+            String fileName = uniqueFileName(originalFileName);
+            Path storedFile = uploadPath.resolve(fileName);
+            // Same file system as the upload staging directory, so this is a rename rather than a copy
+            Files.move(file, storedFile, StandardCopyOption.REPLACE_EXISTING);
+
+            try {
+                return saveDocument(workflow, fileName, originalFileName, projectCode, materialCode, fileSize, uploadedBy);
+            } catch (RuntimeException e) {
+                // Put the file back so the caller still has it and can retry
+                try {
+                    Files.move(storedFile, file, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException moveBack) {
+                    e.addSuppressed(moveBack);
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new DocumentException("Failed to store file: " + originalFileName, e);
+        }
+    }
+
+    private DocumentSummary saveDocument(MaterialWorkflow workflow, String fileName, String originalFileName,
+                                         String projectCode, String materialCode, long fileSize, String uploadedBy) {
+        WorkflowDocument document = new WorkflowDocument();
+        document.setWorkflow(workflow);
+        document.setFileName(fileName);
+        document.setOriginalFileName(originalFileName);
+        document.setFilePath(getFilePath(projectCode, materialCode, fileName));
+        document.setFileType(getFileExtension(originalFileName));
+        document.setFileSize(fileSize);
+        document.setUploadedBy(uploadedBy);
+        document.setUploadedAt(LocalDateTime.now());
+        document.setIsReused(false);
+
+        WorkflowDocument savedDocument = workflowDocumentRepository.save(document);
+        return convertToDocumentSummary(savedDocument);
+    }
+
     @Override
     public List<DocumentSummary> getWorkflowDocuments(Long workflowId) {
         List<WorkflowDocument> documents = workflowDocumentRepository.findByWorkflowId(workflowId);
@@ -183,12 +230,16 @@ public class DocumentServiceImpl implements DocumentService {
         if (file.isEmpty()) {
             return false;
         }
+        return isValidUpload(file.getOriginalFilename(), file.getSize());
+    }
 
-        if (file.getSize() > maxFileSize) {
+    @Override
+    public boolean isValidUpload(String fileName, long fileSize) {
+        if (fileSize <= 0 || fileSize > maxFileSize) {
             return false;
         }
 
-        String fileExtension = getFileExtension(file.getOriginalFilename());
+        String fileExtension = getFileExtension(fileName);
         return ALLOWED_FILE_TYPES.contains(fileExtension.toLowerCase());
     }
 
@@ -203,9 +254,7 @@ public class DocumentServiceImpl implements DocumentService {
         Files.createDirectories(uploadPath);
 
         // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = getFileExtension(originalFilename);
-        String uniqueFilename = UUID.randomUUID().toString() + "." + fileExtension;
+        String uniqueFilename = uniqueFileName(file.getOriginalFilename());
 
         // Store the file
         Path filePath = uploadPath.resolve(uniqueFilename);
@@ -214,6 +263,10 @@ public class DocumentServiceImpl implements DocumentService {
         return uniqueFilename;
     }
 
+    private String uniqueFileName(String originalFilename) {
+        return UUID.randomUUID().toString() + "." + getFileExtension(originalFilename);
+    }
+
     private String getFilePath(String projectCode, String materialCode, String fileName) {
         return Paths.get(documentStoragePath, projectCode, materialCode, fileName).toString();
     }
@@ -281,14 +334,9 @@ public class DocumentServiceImpl implements DocumentService {
     public void logDocumentAccess(Long documentId, String userId, DocumentAccessType accessType, 
                                 String ipAddress, String userAgent, Long workflowId, 
                                 boolean accessGranted, String denialReason) {
-        WorkflowDocument document = workflowDocumentRepository.findById(documentId).orElse(null);
-        if (document != null) {
-            DocumentAccessLog accessLog = new DocumentAccessLog(
-                document, userId, accessType, LocalDateTime.now(), 
-                ipAddress, userAgent, workflowId, accessGranted, denialReason
-            );
-            documentAccessLogRepository.save(accessLog);
-        }
+        // Queued for a batch insert; accesses to unknown documents are discarded by the writer
+        documentAccessLogWriter.write(documentId, userId, accessType, ipAddress, userAgent,
+                                      workflowId, accessGranted, denialReason);
     }
 
     @Override
@@ -302,29 +350,18 @@ public class DocumentServiceImpl implements DocumentService {
     @Override
     public DocumentSummary getEnhancedDocumentSummary(Long documentId) {
         WorkflowDocument document = getDocumentById(documentId);
-        
-        // Get download count
-        long downloadCount = documentAccessLogRepository.countDocumentAccess(documentId, DocumentAccessType.DOWNLOAD);
-        
-        // Get last access time
-        List<DocumentAccessLog> recentLogs = documentAccessLogRepository.findRecentAccessLogs(
-            documentId, LocalDateTime.now().minusDays(30));
-        LocalDateTime lastAccessedAt = recentLogs.isEmpty() ? null : recentLogs.get(0).getAccessTime();
-
-        return convertToEnhancedDocumentSummary(document, downloadCount, lastAccessedAt);
+        DocumentAccessStats stats = documentAccessStatsRepository.findById(documentId).orElse(null);
+        return convertToEnhancedDocumentSummary(document, stats);
     }
 
     @Override
     public List<DocumentSummary> getReusableDocumentsEnhanced(String projectCode, String materialCode) {
         List<WorkflowDocument> documents = workflowDocumentRepository.findReusableDocuments(projectCode, materialCode);
+        List<Long> documentIds = documents.stream().map(WorkflowDocument::getId).collect(Collectors.toList());
+        Map<Long, DocumentAccessStats> statsById = documentAccessStatsRepository.findAllById(documentIds).stream()
+                .collect(Collectors.toMap(DocumentAccessStats::getDocumentId, Function.identity()));
         return documents.stream()
-                .map(doc -> {
-                    long downloadCount = documentAccessLogRepository.countDocumentAccess(doc.getId(), DocumentAccessType.DOWNLOAD);
-                    List<DocumentAccessLog> recentLogs = documentAccessLogRepository.findRecentAccessLogs(
-                        doc.getId(), LocalDateTime.now().minusDays(30));
-                    LocalDateTime lastAccessedAt = recentLogs.isEmpty() ? null : recentLogs.get(0).getAccessTime();
-                    return convertToEnhancedDocumentSummary(doc, downloadCount, lastAccessedAt);
-                })
+                .map(doc -> convertToEnhancedDocumentSummary(doc, statsById.get(doc.getId())))
                 .collect(Collectors.toList());
     }
 
@@ -342,7 +379,9 @@ public class DocumentServiceImpl implements DocumentService {
         );
     }
 
-    private DocumentSummary convertToEnhancedDocumentSummary(WorkflowDocument document, long downloadCount, LocalDateTime lastAccessedAt) {
+    private DocumentSummary convertToEnhancedDocumentSummary(WorkflowDocument document, DocumentAccessStats stats) {
+        long downloadCount = stats != null ? stats.getDownloadCount() : 0;
+        LocalDateTime lastAccessedAt = stats != null ? stats.getLastAccessedAt() : null;
         MaterialWorkflow workflow = document.getWorkflow();
         return new DocumentSummary(
             document.getId(),
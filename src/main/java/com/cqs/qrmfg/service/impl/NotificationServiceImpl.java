@@ -297,6 +297,42 @@ public class NotificationServiceImpl implements NotificationService {
         }
     }
     
+    @Override
+    public void notifyWorkflowsStateChanged(List<MaterialWorkflow> workflows, WorkflowState newState, String changedBy) {
+        // Group by receiving team so each team gets a single digest instead of one message per workflow
+        Map<String, List<String>> materialsByTeam = new LinkedHashMap<>();
+        for (MaterialWorkflow workflow : workflows) {
+            String teamName = getTeamNameForState(newState, workflow);
+            if (teamName != null) {
+                materialsByTeam.computeIfAbsent(teamName, key -> new ArrayList<>()).add(workflow.getMaterialCode());
+            }
+        }
+        
+        for (Map.Entry<String, List<String>> entry : materialsByTeam.entrySet()) {
+            List<String> materialCodes = entry.getValue();
+            String subject = String.format("%d workflows moved to %s", materialCodes.size(), newState.getDisplayName());
+            String message = String.format("%s moved the following materials to %s: %s",
+                    changedBy, newState.getDisplayName(), String.join(", ", materialCodes));
+            notifyTeam(entry.getKey(), subject, message);
+        }
+    }
+    
+    private String getTeamNameForState(WorkflowState state, MaterialWorkflow workflow) {
+        switch (state) {
+            case JVC_PENDING:
+                return "JVC";
+            case PLANT_PENDING:
+            case COMPLETED:
+                return "PLANT_" + workflow.getAssignedPlant();
+            case CQS_PENDING:
+                return "CQS";
+            case TECH_PENDING:
+                return "TECH";
+            default:
+                return null;
+        }
+    }
+    
     @Override
     public void notifyWorkflowOverdue(MaterialWorkflow workflow) {
         Map<String, Object> data = new HashMap<>();
@@ -420,6 +456,42 @@ public class NotificationServiceImpl implements NotificationService {
         }
     }
     
+    @Override
+    public void notifyQueriesResolved(List<Query> queries) {
+        // Coalesce by recipient address so a raiser or plant member gets one message for the whole batch
+        Map<String, List<NotificationPreference>> prefsByRaiser = new HashMap<>();
+        Map<String, List<NotificationPreference>> prefsByPlant = new HashMap<>();
+        Map<String, Set<Query>> queriesByRecipient = new LinkedHashMap<>();
+        
+        for (Query query : queries) {
+            List<NotificationPreference> raiserPrefs = prefsByRaiser.computeIfAbsent(query.getRaisedBy(),
+                    preferenceRepository::findActivePreferencesForUser);
+            List<NotificationPreference> plantPrefs = prefsByPlant.computeIfAbsent(query.getWorkflow().getAssignedPlant(),
+                    plant -> preferenceRepository.findActivePreferencesForType("TEAM_PLANT_" + plant));
+            
+            for (List<NotificationPreference> prefs : Arrays.asList(raiserPrefs, plantPrefs)) {
+                for (NotificationPreference pref : prefs) {
+                    if ("EMAIL".equalsIgnoreCase(pref.getChannel())) {
+                        queriesByRecipient.computeIfAbsent(getRecipientAddress(pref.getUsername(), pref),
+                                key -> new LinkedHashSet<>()).add(query);
+                    }
+                }
+            }
+        }
+        
+        for (Map.Entry<String, Set<Query>> entry : queriesByRecipient.entrySet()) {
+            StringBuilder message = new StringBuilder("The following queries have been resolved:\n");
+            for (Query query : entry.getValue()) {
+                message.append(String.format("- #%d (%s): %s%n", query.getId(),
+                        query.getWorkflow().getMaterialCode(), query.getQuestion()));
+            }
+            
+            NotificationRequest request = new NotificationRequest("EMAIL", Collections.singletonList(entry.getKey()),
+                    String.format("%d Queries Resolved", entry.getValue().size()), message.toString());
+            sendNotificationAsync(request);
+        }
+    }
+    
     @Override
     public void notifyQueryAssigned(Query query, String assignedBy) {
         Map<String, Object> data = new HashMap<>();
@@ -1,5 +1,8 @@
 package com.cqs.qrmfg.service.impl;
 
+import com.cqs.qrmfg.dto.QuerySearchCriteria;
+import com.cqs.qrmfg.dto.QuerySearchResult;
+import com.cqs.qrmfg.event.QueryChangedEvent;
 import com.cqs.qrmfg.exception.QueryAlreadyResolvedException;
 import com.cqs.qrmfg.exception.QueryException;
 import com.cqs.qrmfg.exception.QueryNotFoundException;
@@ -11,24 +14,46 @@ import com.cqs.qrmfg.model.QueryTeam;
 import com.cqs.qrmfg.model.WorkflowState;
 import com.cqs.qrmfg.repository.WorkflowRepository;
 import com.cqs.qrmfg.repository.QueryRepository;
+import com.cqs.qrmfg.service.MetricsRollupService;
 import com.cqs.qrmfg.service.NotificationService;
+import com.cqs.qrmfg.service.QuerySearchIndexService;
 import com.cqs.qrmfg.service.QueryService;
 import com.cqs.qrmfg.service.WorkflowService;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import com.cqs.qrmfg.service.WorkflowTransitionExecutor;
+import com.cqs.qrmfg.util.QueryMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class QueryServiceImpl implements QueryService {
     
     private static final Logger logger = LoggerFactory.getLogger(QueryServiceImpl.class);
+    private static final int OPEN_QUERY_LOOKUP_CHUNK = 500;
     private static final int DEFAULT_SLA_HOURS = 72; // 3 days
     
     @Autowired
@@ -43,11 +68,33 @@ public class QueryServiceImpl implements QueryService {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private WorkflowTransitionExecutor transitionExecutor;
+    
+    @Autowired
+    private QuerySearchIndexService searchIndexService;
+    
+    @Autowired
+    private QueryMapper queryMapper;
+    
+    @Autowired
+    private MetricsRollupService metricsRollupService;
+    
+    @Autowired
+    private WorkflowArchiveService archiveService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Basic CRUD operations
     @Override
     public Query save(Query query) {
         logger.debug("Saving query: {}", query.getQuestion());
-        return queryRepository.save(query);
+        QueryChangedEvent.ChangeType changeType = query.getId() == null 
+            ? QueryChangedEvent.ChangeType.CREATED : QueryChangedEvent.ChangeType.UPDATED;
+        Query savedQuery = queryRepository.save(query);
+        publishQueryChanged(savedQuery, changeType);
+        return savedQuery;
     }
     
     @Override
@@ -62,7 +109,9 @@ public class QueryServiceImpl implements QueryService {
         }
         
         logger.debug("Updating query ID: {}", query.getId());
-        return queryRepository.save(query);
+        Query savedQuery = queryRepository.save(query);
+        publishQueryChanged(savedQuery, QueryChangedEvent.ChangeType.UPDATED);
+        return savedQuery;
     }
     
     @Override
@@ -72,12 +121,14 @@ public class QueryServiceImpl implements QueryService {
         }
         logger.debug("Deleting query with ID: {}", id);
         queryRepository.deleteById(id);
+        eventPublisher.publishEvent(QueryChangedEvent.deleted(id));
     }
     
     @Override
     @Transactional(readOnly = true)
     public Optional<Query> findById(Long id) {
-        return queryRepository.findById(id);
+        Optional<Query> query = queryRepository.findById(id);
+        return query.isPresent() ? query : Optional.ofNullable(archiveService.findArchivedQuery(id));
     }
     
     @Override
@@ -106,22 +157,25 @@ public class QueryServiceImpl implements QueryService {
                    workflow.getMaterialCode(), assignedTeam, raisedBy);
         
         Query savedQuery = queryRepository.save(query);
+        publishQueryChanged(savedQuery, QueryChangedEvent.ChangeType.CREATED);
         
         // Transition workflow to appropriate query state
         WorkflowState queryState = assignedTeam.getCorrespondingWorkflowState();
         workflowService.transitionToState(workflowId, queryState, raisedBy);
         
         // Send comprehensive notifications for query creation
-        try {
-            // Notify the assigned team about the new query
-            notificationService.notifyQueryRaised(savedQuery);
-            
-            // Also notify as a query assignment to the team
-            notificationService.notifyQueryAssigned(savedQuery, raisedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send query raised notification for query {}: {}", 
-                       savedQuery.getId(), e.getMessage());
-        }
+        afterCommit(() -> {
+            try {
+                // Notify the assigned team about the new query
+                notificationService.notifyQueryRaised(savedQuery);
+                
+                // Also notify as a query assignment to the team
+                notificationService.notifyQueryAssigned(savedQuery, raisedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send query raised notification for query {}: {}", 
+                           savedQuery.getId(), e.getMessage());
+            }
+        });
         
         return savedQuery;
     }
@@ -150,7 +204,25 @@ public class QueryServiceImpl implements QueryService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Query resolveQuery(Long queryId, String response, String resolvedBy, String priorityLevel) {
+        Query resolvedQuery = transitionExecutor.execute("resolve query " + queryId,
+            attempt -> applyQueryResolution(queryId, response, resolvedBy, priorityLevel));
+        
+        // Send notification for query resolution
+        afterCommit(() -> {
+            try {
+                notificationService.notifyQueryResolved(resolvedQuery);
+            } catch (Exception e) {
+                logger.warn("Failed to send query resolved notification for query {}: {}", 
+                           resolvedQuery.getId(), e.getMessage());
+            }
+        });
+        
+        return resolvedQuery;
+    }
+    
+    private Query applyQueryResolution(Long queryId, String response, String resolvedBy, String priorityLevel) {
         Query query = queryRepository.findById(queryId)
             .orElseThrow(() -> new QueryNotFoundException(queryId));
         
@@ -170,18 +242,12 @@ public class QueryServiceImpl implements QueryService {
         }
         
         Query resolvedQuery = queryRepository.save(query);
+        publishQueryChanged(resolvedQuery, QueryChangedEvent.ChangeType.RESOLVED);
         
-        // Send notification for query resolution
-        try {
-            notificationService.notifyQueryResolved(resolvedQuery);
-        } catch (Exception e) {
-            logger.warn("Failed to send query resolved notification for query {}: {}", 
-                       resolvedQuery.getId(), e.getMessage());
-        }
-        
-        // Check if workflow can return to PLANT_PENDING state
+        // Check if workflow can return to PLANT_PENDING state; a concurrent resolution
+        // of a sibling query may already have moved it back
         MaterialWorkflow workflow = query.getWorkflow();
-        if (!workflow.hasOpenQueries()) {
+        if (!workflow.hasOpenQueries() && workflow.getState().isQueryState()) {
             workflowService.returnFromQueryState(workflow.getId(), resolvedBy);
         }
         
@@ -189,20 +255,141 @@ public class QueryServiceImpl implements QueryService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void bulkResolveQueries(List<Long> queryIds, String response, String resolvedBy) {
-        for (Long queryId : queryIds) {
+        if (queryIds == null || queryIds.isEmpty()) {
+            return;
+        }
+        
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(queryIds));
+        List<Query> resolvedQueries = new ArrayList<>();
+        List<MaterialWorkflow> returnedWorkflows = new ArrayList<>();
+        
+        transitionExecutor.execute("bulk resolve of " + distinctIds.size() + " queries",
+            attempt -> applyBulkResolution(distinctIds, response, resolvedBy, resolvedQueries, returnedWorkflows));
+        
+        // One coalesced notification per recipient for the whole batch, once the resolution has committed
+        afterCommit(() -> {
+            if (!resolvedQueries.isEmpty()) {
+                try {
+                    notificationService.notifyQueriesResolved(resolvedQueries);
+                } catch (Exception e) {
+                    logger.warn("Failed to send bulk query resolved notification for {} queries: {}", 
+                               resolvedQueries.size(), e.getMessage());
+                }
+            }
+            if (!returnedWorkflows.isEmpty()) {
+                try {
+                    notificationService.notifyWorkflowsStateChanged(returnedWorkflows, WorkflowState.PLANT_PENDING, resolvedBy);
+                } catch (Exception e) {
+                    logger.warn("Failed to send bulk state change notification for {} workflows: {}", 
+                               returnedWorkflows.size(), e.getMessage());
+                }
+            }
+        });
+    }
+    
+    // Runs after the caller's transaction commits, or right away when there is none
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private List<Query> applyBulkResolution(List<Long> queryIds, String response, String resolvedBy, 
+                                            List<Query> resolvedQueries, List<MaterialWorkflow> returnedWorkflows) {
+        resolvedQueries.clear();
+        returnedWorkflows.clear();
+        
+        List<Query> queries = queryRepository.findByIdsWithWorkflow(queryIds);
+        if (queries.size() < queryIds.size()) {
+            logger.warn("Bulk resolve: {} of {} queries not found", queryIds.size() - queries.size(), queryIds.size());
+        }
+        
+        Map<Long, MaterialWorkflow> affectedWorkflows = new LinkedHashMap<>();
+        for (Query query : queries) {
             try {
-                resolveQuery(queryId, response, resolvedBy);
-            } catch (Exception e) {
-                logger.error("Failed to resolve query {}: {}", queryId, e.getMessage());
+                validateQueryResolution(query, resolvedBy);
+            } catch (QueryException e) {
+                logger.error("Failed to resolve query {}: {}", query.getId(), e.getMessage());
                 // Continue with other queries
+                continue;
+            }
+            
+            query.resolve(response, resolvedBy);
+            resolvedQueries.add(query);
+            affectedWorkflows.put(query.getWorkflow().getId(), query.getWorkflow());
+        }
+        
+        if (resolvedQueries.isEmpty()) {
+            return resolvedQueries;
+        }
+        
+        // Flushed as one JDBC batch; the open-query lookup below auto-flushes it first
+        queryRepository.saveAll(resolvedQueries);
+        for (Query query : resolvedQueries) {
+            publishQueryChanged(query, QueryChangedEvent.ChangeType.RESOLVED);
+        }
+        
+        List<Long> workflowIds = new ArrayList<>(affectedWorkflows.keySet());
+        Set<Long> stillOpen = new HashSet<>();
+        // Chunked so the IN list stays below Oracle's limit however many workflows the queries span
+        for (int from = 0; from < workflowIds.size(); from += OPEN_QUERY_LOOKUP_CHUNK) {
+            stillOpen.addAll(queryRepository.findWorkflowIdsWithOpenQueries(
+                workflowIds.subList(from, Math.min(from + OPEN_QUERY_LOOKUP_CHUNK, workflowIds.size()))));
+        }
+        
+        List<Long> workflowsToReturn = new ArrayList<>();
+        for (MaterialWorkflow workflow : affectedWorkflows.values()) {
+            if (!stillOpen.contains(workflow.getId()) && workflow.getState().isQueryState()) {
+                workflowsToReturn.add(workflow.getId());
             }
         }
+        
+        if (!workflowsToReturn.isEmpty()) {
+            // Joins this transaction, so the resolution and the returns commit or roll back together
+            returnedWorkflows.addAll(
+                workflowService.bulkTransitionInTransaction(workflowsToReturn, WorkflowState.PLANT_PENDING, resolvedBy));
+        }
+        
+        logger.info("Bulk resolved {} queries across {} workflows by user: {}, {} workflows returned to plant", 
+                   resolvedQueries.size(), workflowIds.size(), resolvedBy, returnedWorkflows.size());
+        return resolvedQueries;
+    }
+    
+    // Read models (search index, team inbox cache) apply this after the transaction commits
+    private void publishQueryChanged(Query query, QueryChangedEvent.ChangeType changeType) {
+        eventPublisher.publishEvent(new QueryChangedEvent(query.getId(), changeType, queryMapper.toSummaryDto(query)));
     }
     
     // Query assignment and management
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Query assignToTeam(Long queryId, QueryTeam newTeam, String updatedBy) {
+        Query updatedQuery = transitionExecutor.execute("assign query " + queryId + " to " + newTeam,
+            attempt -> applyTeamAssignment(queryId, newTeam, updatedBy));
+        
+        // Send notification for query assignment
+        afterCommit(() -> {
+            try {
+                notificationService.notifyQueryAssigned(updatedQuery, updatedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send query assignment notification for query {}: {}", 
+                           updatedQuery.getId(), e.getMessage());
+            }
+        });
+        
+        return updatedQuery;
+    }
+    
+    private Query applyTeamAssignment(Long queryId, QueryTeam newTeam, String updatedBy) {
         Query query = queryRepository.findById(queryId)
             .orElseThrow(() -> new QueryNotFoundException(queryId));
         
@@ -218,18 +405,14 @@ public class QueryServiceImpl implements QueryService {
                    queryId, oldTeam, newTeam, updatedBy);
         
         Query updatedQuery = queryRepository.save(query);
-        
-        // Send notification for query assignment
-        try {
-            notificationService.notifyQueryAssigned(updatedQuery, updatedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send query assignment notification for query {}: {}", 
-                       updatedQuery.getId(), e.getMessage());
-        }
+        eventPublisher.publishEvent(new QueryChangedEvent(updatedQuery.getId(), QueryChangedEvent.ChangeType.REASSIGNED,
+            queryMapper.toSummaryDto(updatedQuery), oldTeam));
         
         // Update workflow state if necessary
         WorkflowState newState = newTeam.getCorrespondingWorkflowState();
-        workflowService.transitionToState(query.getWorkflow().getId(), newState, updatedBy);
+        if (query.getWorkflow().getState() != newState) {
+            workflowService.transitionToState(query.getWorkflow().getId(), newState, updatedBy);
+        }
         
         return updatedQuery;
     }
@@ -243,7 +426,9 @@ public class QueryServiceImpl implements QueryService {
         query.setUpdatedBy(updatedBy);
         
         logger.debug("Updated priority for query {} to {} by user: {}", queryId, priorityLevel, updatedBy);
-        return queryRepository.save(query);
+        Query savedQuery = queryRepository.save(query);
+        publishQueryChanged(savedQuery, QueryChangedEvent.ChangeType.UPDATED);
+        return savedQuery;
     }
     
     @Override
@@ -262,7 +447,8 @@ public class QueryServiceImpl implements QueryService {
     @Override
     @Transactional(readOnly = true)
     public List<Query> findByWorkflowId(Long workflowId) {
-        return queryRepository.findByWorkflowId(workflowId);
+        List<Query> queries = queryRepository.findByWorkflowId(workflowId);
+        return queries.isEmpty() && isArchived(workflowId) ? archiveService.findArchivedQueries(workflowId) : queries;
     }
     
     @Override
@@ -330,7 +516,18 @@ public class QueryServiceImpl implements QueryService {
     @Override
     @Transactional(readOnly = true)
     public List<Query> findQueriesByWorkflowAndStatus(Long workflowId, QueryStatus status) {
-        return queryRepository.findByWorkflowIdAndStatus(workflowId, status);
+        List<Query> queries = queryRepository.findByWorkflowIdAndStatus(workflowId, status);
+        if (!queries.isEmpty() || !isArchived(workflowId)) {
+            return queries;
+        }
+        return archiveService.findArchivedQueries(workflowId).stream()
+                .filter(query -> query.getStatus() == status)
+                .collect(Collectors.toList());
+    }
+    
+    // Only long-completed workflows have their queries in the archive
+    private boolean isArchived(Long workflowId) {
+        return workflowRepository.findById(workflowId).filter(archiveService::isArchived).isPresent();
     }
     
     @Override
@@ -380,15 +577,24 @@ public class QueryServiceImpl implements QueryService {
     @Override
     @Transactional(readOnly = true)
     public double getAverageResolutionTimeHours(QueryTeam team) {
-        Double avgTime = queryRepository.getAverageResolutionTimeHours(team.name());
-        return avgTime != null ? avgTime : 0.0;
+        return metricsRollupService.getAverageResolutionHours(team.name(), null, null);
     }
     
     @Override
     @Transactional(readOnly = true)
     public double getAverageResolutionTimeHours(QueryTeam team, LocalDateTime start, LocalDateTime end) {
-        Double avgTime = queryRepository.getAverageResolutionTimeHours(team.name(), start, end);
-        return avgTime != null ? avgTime : 0.0;
+        // Ranges on day boundaries read the daily rollups, with a midnight end taken as exclusive;
+        // any other range needs the exact timestamps and reads the queries themselves
+        if (isStartOfDay(start) && isStartOfDay(end)) {
+            return metricsRollupService.getAverageResolutionHours(team.name(),
+                start != null ? start.toLocalDate() : null, end != null ? end.toLocalDate().minusDays(1) : null);
+        }
+        return metricsRollupService.getExactAverageResolutionHours(team.name(), start, end);
+    }
+    
+    // Null counts as an unbounded side of the range
+    private static boolean isStartOfDay(LocalDateTime dateTime) {
+        return dateTime == null || dateTime.toLocalTime().equals(LocalTime.MIDNIGHT);
     }
     
     @Override
@@ -520,7 +726,76 @@ public class QueryServiceImpl implements QueryService {
     @Override
     @Transactional(readOnly = true)
     public List<Query> searchQueriesWithContext(String materialCode, String projectCode, String plantCode, String blockId, String team, String status, String priority, int minDaysOpen) {
-        // TODO: Implement actual search logic
-        return java.util.Collections.emptyList();
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+        criteria.setMaterialCode(materialCode);
+        criteria.setProjectCode(projectCode);
+        criteria.setPlantCode(plantCode);
+        criteria.setBlockId(blockId);
+        criteria.setTeam(team != null && !team.trim().isEmpty() ? QueryTeam.valueOf(team) : null);
+        criteria.setStatus(status != null && !status.trim().isEmpty() ? QueryStatus.valueOf(status) : null);
+        criteria.setPriority(priority);
+        criteria.setMinDaysOpen(minDaysOpen);
+        criteria.setLimit(QuerySearchCriteria.MAX_LIMIT);
+        
+        // This overload has always returned every match, so it walks all the pages
+        List<Query> queries = new ArrayList<>();
+        QuerySearchResult result;
+        do {
+            result = searchQueriesWithContext(criteria);
+            queries.addAll(result.getQueries());
+            criteria.setCursor(result.getNextCursor());
+        } while (result.hasMore());
+        return queries;
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public QuerySearchResult searchQueriesWithContext(QuerySearchCriteria criteria) {
+        List<Query> page = queryRepository.searchWithContext(criteria);
+        
+        // The cursor follows the last scanned row so refinement below never skips rows
+        String nextCursor = null;
+        if (page.size() == criteria.getLimit()) {
+            Query last = page.get(page.size() - 1);
+            nextCursor = QuerySearchCriteria.encodeCursor(last.getCreatedAt(), last.getId());
+        }
+        
+        // Resolved queries count days open until resolution, which the SQL predicate cannot express
+        if (criteria.getMinDaysOpen() > 0) {
+            page = page.stream()
+                .filter(q -> q.getDaysOpen() >= criteria.getMinDaysOpen())
+                .collect(Collectors.toList());
+        }
+        
+        return new QuerySearchResult(page, nextCursor);
+    }
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Query> searchQueriesByText(String text, Pageable pageable) {
+        QuerySearchIndexService.SearchHits hits = searchIndexService.search(
+            text, pageable.getPageNumber(), pageable.getPageSize());
+        if (hits.getQueryIds().isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, hits.getTotalHits());
+        }
+        
+        // Load the page in one query and restore the index's rank order
+        Map<Long, Query> queriesById = new HashMap<>();
+        for (Query query : queryRepository.findByIdsWithWorkflow(hits.getQueryIds())) {
+            queriesById.put(query.getId(), query);
+        }
+        List<Query> ranked = new ArrayList<>(hits.getQueryIds().size());
+        for (Long id : hits.getQueryIds()) {
+            Query query = queriesById.get(id);
+            if (query != null) {
+                ranked.add(query);
+            }
+        }
+        return new PageImpl<>(ranked, pageable, hits.getTotalHits());
+    }
+    
+    @Override
+    public int rebuildSearchIndex() {
+        return searchIndexService.rebuild();
     }
 }
\ No newline at end of file
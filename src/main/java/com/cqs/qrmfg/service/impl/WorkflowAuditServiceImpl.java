@@ -0,0 +1,813 @@
+package com.cqs.qrmfg.service.impl;
+
+import com.cqs.qrmfg.config.EnversConfig;
+import com.cqs.qrmfg.dto.AuditHistoryDto;
+import com.cqs.qrmfg.event.WorkflowStateChangedEvent;
+import com.cqs.qrmfg.exception.WorkflowNotFoundException;
+import com.cqs.qrmfg.model.MaterialWorkflow;
+import com.cqs.qrmfg.model.Query;
+import com.cqs.qrmfg.model.QueryStatus;
+import com.cqs.qrmfg.model.QuestionnaireResponse;
+import com.cqs.qrmfg.model.WorkflowDocument;
+import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.repository.QueryRepository;
+import com.cqs.qrmfg.repository.QuestionnaireResponseRepository;
+import com.cqs.qrmfg.repository.WorkflowDocumentRepository;
+import com.cqs.qrmfg.repository.WorkflowRepository;
+import com.cqs.qrmfg.service.OperationalMetricsService;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import com.cqs.qrmfg.service.WorkflowAuditService;
+import com.cqs.qrmfg.util.QueryMapper;
+import com.cqs.qrmfg.util.WorkflowMapper;
+import org.hibernate.envers.AuditReader;
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.envers.query.AuditEntity;
+import org.hibernate.envers.query.AuditQuery;
+import org.hibernate.envers.query.criteria.AuditCriterion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Audit history read from the Envers revision tables. Each audited entity type is
+ * read with one query that also returns the revision entity, so a workflow's full
+ * trail costs four queries however many queries, responses and documents it has.
+ * Field changes are derived by comparing consecutive revisions in memory.
+ * Trails of completed workflows no longer change and are kept in a small LRU cache.
+ * Exports page through the revisions instead, so they run in bounded memory.
+ */
+@Service
+@Transactional(readOnly = true)
+public class WorkflowAuditServiceImpl implements WorkflowAuditService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowAuditServiceImpl.class);
+
+    private static final AuditedType<MaterialWorkflow> WORKFLOW =
+        new AuditedType<>(MaterialWorkflow.class, "MaterialWorkflow", MaterialWorkflow::getId)
+            .field("state", MaterialWorkflow::getState)
+            .field("plantCode", MaterialWorkflow::getPlantCode)
+            .field("materialName", MaterialWorkflow::getMaterialName)
+            .field("materialDescription", MaterialWorkflow::getMaterialDescription)
+            .field("priorityLevel", MaterialWorkflow::getPriorityLevel)
+            .field("safetyDocumentsPath", MaterialWorkflow::getSafetyDocumentsPath)
+            .field("extendedAt", MaterialWorkflow::getExtendedAt)
+            .field("completedAt", MaterialWorkflow::getCompletedAt);
+
+    private static final AuditedType<Query> QUERY =
+        new AuditedType<>(Query.class, "Query", Query::getId)
+            .field("status", Query::getStatus)
+            .field("assignedTeam", Query::getAssignedTeam)
+            .field("question", Query::getQuestion)
+            .field("response", Query::getResponse)
+            .field("priorityLevel", Query::getPriorityLevel)
+            .field("queryCategory", Query::getQueryCategory)
+            .field("resolvedBy", Query::getResolvedBy)
+            .field("resolvedAt", Query::getResolvedAt);
+
+    private static final AuditedType<QuestionnaireResponse> RESPONSE =
+        new AuditedType<>(QuestionnaireResponse.class, "QuestionnaireResponse", QuestionnaireResponse::getId)
+            .field("fieldValue", QuestionnaireResponse::getFieldValue)
+            .field("validationStatus", QuestionnaireResponse::getValidationStatus)
+            .field("validationMessage", QuestionnaireResponse::getValidationMessage)
+            .field("isDraft", QuestionnaireResponse::getIsDraft);
+
+    private static final AuditedType<WorkflowDocument> DOCUMENT =
+        new AuditedType<>(WorkflowDocument.class, "WorkflowDocument", WorkflowDocument::getId)
+            .field("fileName", WorkflowDocument::getFileName)
+            .field("originalFileName", WorkflowDocument::getOriginalFileName)
+            .field("fileType", WorkflowDocument::getFileType)
+            .field("fileSize", WorkflowDocument::getFileSize)
+            .field("isReused", WorkflowDocument::getIsReused);
+
+    private static final List<AuditedType<?>> ALL_TYPES = Arrays.asList(WORKFLOW, QUERY, RESPONSE, DOCUMENT);
+
+    private static final Comparator<AuditHistoryDto> OLDEST_FIRST = Comparator
+        .comparing(AuditHistoryDto::getRevisionId)
+        .thenComparing(AuditHistoryDto::getEntityType)
+        .thenComparing(AuditHistoryDto::getEntityId);
+
+    private static final Comparator<AuditHistoryDto> NEWEST_FIRST = OLDEST_FIRST.reversed();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private QueryRepository queryRepository;
+
+    @Autowired
+    private QuestionnaireResponseRepository responseRepository;
+
+    @Autowired
+    private WorkflowDocumentRepository documentRepository;
+
+    @Autowired
+    private WorkflowMapper workflowMapper;
+
+    @Autowired
+    private QueryMapper queryMapper;
+
+    @Autowired
+    private OperationalMetricsService metricsService;
+
+    @Autowired
+    private WorkflowArchiveService archiveService;
+
+    // Upper bound on rows read per entity type for the cross-workflow views
+    @Value("${app.audit.history.max-results:500}")
+    private int maxResults;
+
+    @Value("${app.audit.history.completed-cache-size:200}")
+    private int completedCacheSize;
+
+    // Revisions read per entity type and query while streaming an export
+    @Value("${app.audit.history.export-page-size:1000}")
+    private int exportPageSize;
+
+    private Map<Long, List<AuditHistoryDto>> completedTrails;
+
+    // Bumped on every state change of the workflows in a stripe; a trail loaded across a bump is not cached
+    private final AtomicLongArray trailGenerations = new AtomicLongArray(64);
+
+    @PostConstruct
+    public void init() {
+        completedTrails = Collections.synchronizedMap(new LinkedHashMap<Long, List<AuditHistoryDto>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<AuditHistoryDto>> eldest) {
+                return size() > completedCacheSize;
+            }
+        });
+        metricsService.registerGauge("audit.history.cached_workflows", completedTrails::size);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getWorkflowAuditHistory(Long workflowId) {
+        return getWorkflowAuditHistory(workflowId, null, null, 0, 0);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getWorkflowAuditHistory(Long workflowId, LocalDateTime from, LocalDateTime to,
+                                                         int page, int size) {
+        List<AuditHistoryDto> cached = completedTrails.get(workflowId);
+        List<AuditHistoryDto> history = new ArrayList<>();
+        if (cached != null) {
+            metricsService.increment("audit.history.cache_hits");
+            for (AuditHistoryDto entry : cached) {
+                if (WORKFLOW.name.equals(entry.getEntityType())) {
+                    history.add(entry);
+                }
+            }
+        } else {
+            history = readHistory(WORKFLOW, AuditEntity.id().eq(workflowId));
+        }
+        return page(window(history, from, to), page, size);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getCompleteWorkflowAuditTrail(Long workflowId) {
+        return getCompleteWorkflowAuditTrail(workflowId, null, null, 0, 0);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getCompleteWorkflowAuditTrail(Long workflowId, LocalDateTime from, LocalDateTime to,
+                                                               int page, int size) {
+        return page(window(loadCompleteTrail(workflowId), from, to), page, size);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getQueryAuditHistory(Long queryId) {
+        return readHistory(QUERY, AuditEntity.id().eq(queryId));
+    }
+
+    @Override
+    public List<AuditHistoryDto> getQuestionnaireResponseAuditHistory(Long responseId) {
+        return readHistory(RESPONSE, AuditEntity.id().eq(responseId));
+    }
+
+    @Override
+    public List<AuditHistoryDto> getRecentAuditActivity(int days) {
+        return readActivity(ALL_TYPES, Collections.<AuditCriterion>emptyList(),
+                            LocalDateTime.now().minusDays(days), null, 0, maxResults);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getAuditActivityByUser(String username) {
+        return readActivity(ALL_TYPES, Collections.singletonList(AuditEntity.revisionProperty("username").eq(username)),
+                            null, null, 0, maxResults);
+    }
+
+    @Override
+    public List<AuditHistoryDto> getAuditActivityByEntityType(String entityType, int days) {
+        AuditedType<?> type = findType(entityType);
+        if (type == null) {
+            return Collections.emptyList();
+        }
+        return readActivity(Collections.<AuditedType<?>>singletonList(type), Collections.<AuditCriterion>emptyList(),
+                            LocalDateTime.now().minusDays(days), null, 0, maxResults);
+    }
+
+    /**
+     * Supported parameters: workflowId, entityType, username, action (CREATE/UPDATE/DELETE or
+     * ADD/MOD/DEL), startDate, endDate (ISO date-time), page and size
+     */
+    @Override
+    public List<AuditHistoryDto> searchAuditLogs(Map<String, Object> searchParams) {
+        String entityType = stringParam(searchParams, "entityType");
+        String username = stringParam(searchParams, "username");
+        String action = stringParam(searchParams, "action");
+        LocalDateTime startDate = dateParam(searchParams, "startDate");
+        LocalDateTime endDate = dateParam(searchParams, "endDate");
+        int page = intParam(searchParams, "page", 0);
+        int size = Math.min(intParam(searchParams, "size", 50), maxResults);
+
+        RevisionType revisionType = action != null ? parseRevisionType(action) : null;
+        List<AuditedType<?>> types = ALL_TYPES;
+        if (entityType != null) {
+            AuditedType<?> type = findType(entityType);
+            if (type == null) {
+                return Collections.emptyList();
+            }
+            types = Collections.<AuditedType<?>>singletonList(type);
+        }
+
+        String workflowId = stringParam(searchParams, "workflowId");
+        if (workflowId != null) {
+            // One workflow's trail is small and usually cached, filter it in memory
+            List<AuditHistoryDto> matches = new ArrayList<>();
+            for (AuditHistoryDto entry : window(loadCompleteTrail(Long.valueOf(workflowId)), startDate, endDate)) {
+                if ((entityType == null || types.get(0).name.equals(entry.getEntityType()))
+                        && (username == null || username.equals(entry.getUsername()))
+                        && (revisionType == null || revisionType.name().equals(entry.getRevisionType()))) {
+                    matches.add(entry);
+                }
+            }
+            Collections.reverse(matches);
+            return page(matches, page, size);
+        }
+
+        List<AuditCriterion> criteria = new ArrayList<>();
+        if (username != null) {
+            criteria.add(AuditEntity.revisionProperty("username").eq(username));
+        }
+        if (revisionType != null) {
+            criteria.add(AuditEntity.revisionType().eq(revisionType));
+        }
+        return readActivity(types, criteria, startDate, endDate, page, size);
+    }
+
+    @Override
+    public void exportAuditLogs(Long workflowId, Consumer<AuditHistoryDto> sink) {
+        List<AuditHistoryDto> cached = completedTrails.get(workflowId);
+        if (cached != null) {
+            metricsService.increment("audit.history.cache_hits");
+            cached.forEach(sink);
+            return;
+        }
+
+        AuditCriterion byWorkflow = AuditEntity.relatedId("workflow").eq(workflowId);
+        List<RevisionCursor<?>> cursors = Arrays.<RevisionCursor<?>>asList(
+            new RevisionCursor<>(WORKFLOW, AuditEntity.id().eq(workflowId)),
+            new RevisionCursor<>(QUERY, byWorkflow),
+            new RevisionCursor<>(RESPONSE, byWorkflow),
+            new RevisionCursor<>(DOCUMENT, byWorkflow));
+
+        // Merge the per-type cursors into one oldest-first stream
+        long exported = 0;
+        while (true) {
+            RevisionCursor<?> oldest = null;
+            for (RevisionCursor<?> cursor : cursors) {
+                AuditHistoryDto head = cursor.peek();
+                if (head != null && (oldest == null || OLDEST_FIRST.compare(head, oldest.peek()) < 0)) {
+                    oldest = cursor;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            sink.accept(oldest.next());
+            exported++;
+        }
+        metricsService.add("audit.history.exported_entries", exported);
+        logger.debug("Exported audit trail of workflow {}: {} entries", workflowId, exported);
+    }
+
+    @Override
+    public void exportProjectAuditLogs(String projectCode, Consumer<AuditHistoryDto> sink) {
+        for (Long workflowId : workflowRepository.findIdsByProjectCode(projectCode)) {
+            exportAuditLogs(workflowId, sink);
+        }
+    }
+
+    @Override
+    public List<AuditHistoryDto> getQuestionnaireResponseVersions(Long workflowId) {
+        return readHistory(RESPONSE, AuditEntity.relatedId("workflow").eq(workflowId));
+    }
+
+    @Override
+    public Map<String, Object> getReadOnlyWorkflowView(Long workflowId) {
+        MaterialWorkflow workflow = workflowRepository.findById(workflowId)
+            .orElseThrow(() -> new WorkflowNotFoundException(workflowId));
+
+        List<QuestionnaireResponse> workflowResponses = responseRepository.findByWorkflowId(workflowId);
+        List<Query> queries = queryRepository.findByWorkflowId(workflowId);
+        if (workflowResponses.isEmpty() && queries.isEmpty() && archiveService.isArchived(workflow)) {
+            // Children of long-completed workflows live in the archive tables
+            workflowResponses = archiveService.findArchivedResponses(workflowId);
+            queries = archiveService.findArchivedQueries(workflowId);
+        }
+
+        List<Map<String, Object>> responses = new ArrayList<>();
+        for (QuestionnaireResponse response : workflowResponses) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", response.getId());
+            item.put("stepNumber", response.getStepNumber());
+            item.put("sectionName", response.getSectionName());
+            item.put("fieldName", response.getFieldName());
+            item.put("fieldValue", response.getFieldValue());
+            item.put("modifiedBy", response.getModifiedBy());
+            item.put("lastModified", response.getLastModified());
+            responses.add(item);
+        }
+
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (WorkflowDocument document : documentRepository.findByWorkflowId(workflowId)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", document.getId());
+            item.put("originalFileName", document.getOriginalFileName());
+            item.put("fileType", document.getFileType());
+            item.put("fileSize", document.getFileSize());
+            item.put("uploadedBy", document.getUploadedBy());
+            item.put("uploadedAt", document.getUploadedAt());
+            documents.add(item);
+        }
+
+        Map<String, Object> view = new HashMap<>();
+        view.put("workflow", workflowMapper.toSummaryDto(workflow));
+        view.put("queries", queryMapper.toSummaryDtoList(queries));
+        view.put("responses", responses);
+        view.put("documents", documents);
+        view.put("auditTrail", loadCompleteTrail(workflowId));
+        view.put("readOnly", workflow.getState() == WorkflowState.COMPLETED);
+        return view;
+    }
+
+    /**
+     * A state change (including a completed workflow being reopened) ends the
+     * immutability the cache relies on
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWorkflowStateChanged(WorkflowStateChangedEvent event) {
+        synchronized (completedTrails) {
+            trailGenerations.incrementAndGet(generationStripe(event.getWorkflowId()));
+            completedTrails.remove(event.getWorkflowId());
+        }
+    }
+
+    private List<AuditHistoryDto> loadCompleteTrail(Long workflowId) {
+        List<AuditHistoryDto> cached = completedTrails.get(workflowId);
+        if (cached != null) {
+            metricsService.increment("audit.history.cache_hits");
+            return cached;
+        }
+
+        int stripe = generationStripe(workflowId);
+        long generation = trailGenerations.get(stripe);
+        List<AuditHistoryDto> trail = new ArrayList<>(readHistory(WORKFLOW, AuditEntity.id().eq(workflowId)));
+        boolean completed = !trail.isEmpty()
+            && WorkflowState.COMPLETED.name().equals(trail.get(trail.size() - 1).getWorkflowState());
+
+        AuditCriterion byWorkflow = AuditEntity.relatedId("workflow").eq(workflowId);
+        trail.addAll(readHistory(QUERY, byWorkflow));
+        trail.addAll(readHistory(RESPONSE, byWorkflow));
+        trail.addAll(readHistory(DOCUMENT, byWorkflow));
+        trail.sort(OLDEST_FIRST);
+        trail = Collections.unmodifiableList(trail);
+
+        metricsService.increment("audit.history.trail_loads");
+        logger.debug("Loaded audit trail of workflow {}: {} entries", workflowId, trail.size());
+        if (completed) {
+            // A reopen that committed while the trail was read would otherwise put the old trail back
+            synchronized (completedTrails) {
+                if (trailGenerations.get(stripe) == generation) {
+                    completedTrails.put(workflowId, trail);
+                }
+            }
+        }
+        return trail;
+    }
+
+    private int generationStripe(Long workflowId) {
+        return (Long.hashCode(workflowId) & Integer.MAX_VALUE) % trailGenerations.length();
+    }
+
+    /**
+     * Full history of the matching entities, oldest first, with field changes
+     */
+    private <T> List<AuditHistoryDto> readHistory(AuditedType<T> type, AuditCriterion criterion) {
+        AuditQuery query = auditReader().createQuery()
+            .forRevisionsOfEntity(type.entityClass, false, true)
+            .add(criterion)
+            .addOrder(AuditEntity.revisionNumber().asc());
+        return toHistory(type, rows(query));
+    }
+
+    /**
+     * Newest-first activity across entity types. Each type reads at most the rows the
+     * requested page can need; the per-type results are merged and sliced. An update whose
+     * previous revision fell outside the slice looks that revision up only if it is on the page.
+     */
+    private List<AuditHistoryDto> readActivity(List<AuditedType<?>> types, List<AuditCriterion> criteria,
+                                               LocalDateTime from, LocalDateTime to, int page, int size) {
+        int limit = Math.min((page + 1) * size, maxResults);
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<AuditHistoryDto> activity = new ArrayList<>();
+        Map<AuditHistoryDto, Supplier<AuditHistoryDto>> unpaired = new IdentityHashMap<>();
+        for (AuditedType<?> type : types) {
+            AuditQuery query = auditReader().createQuery()
+                .forRevisionsOfEntity(type.entityClass, false, true)
+                .addOrder(AuditEntity.revisionNumber().desc())
+                .setMaxResults(limit);
+            for (AuditCriterion criterion : criteria) {
+                query.add(criterion);
+            }
+            if (from != null) {
+                query.add(AuditEntity.revisionProperty("timestamp").ge(toEpochMillis(from)));
+            }
+            if (to != null) {
+                query.add(AuditEntity.revisionProperty("timestamp").le(toEpochMillis(to)));
+            }
+
+            List<Object[]> rows = rows(query);
+            // Changes are derived walking forward in time
+            Collections.reverse(rows);
+            activity.addAll(toHistory(type, rows, new HashMap<>(), unpaired));
+        }
+
+        activity.sort(NEWEST_FIRST);
+        List<AuditHistoryDto> result = page(activity, page, size);
+        for (int i = 0; i < result.size(); i++) {
+            Supplier<AuditHistoryDto> paired = unpaired.get(result.get(i));
+            if (paired != null) {
+                result.set(i, paired.get());
+            }
+        }
+        return result;
+    }
+
+    private <T> List<AuditHistoryDto> toHistory(AuditedType<T> type, List<Object[]> rows) {
+        return toHistory(type, rows, new HashMap<Long, T>(), null);
+    }
+
+    /**
+     * @param previousById latest revision seen of each entity, carried across calls when paging
+     * @param unpaired if not null, receives updates with no earlier revision in the rows,
+     *                 mapped to a lookup that rebuilds them against the revision before
+     */
+    private <T> List<AuditHistoryDto> toHistory(AuditedType<T> type, List<Object[]> rows, Map<Long, T> previousById,
+                                                Map<AuditHistoryDto, Supplier<AuditHistoryDto>> unpaired) {
+        List<AuditHistoryDto> history = new ArrayList<>(rows.size());
+
+        for (Object[] columns : rows) {
+            T entity = type.entityClass.cast(columns[0]);
+            EnversConfig revision = (EnversConfig) columns[1];
+            RevisionType revisionType = (RevisionType) columns[2];
+
+            Long id = type.id.apply(entity);
+            T previous = previousById.get(id);
+            AuditHistoryDto dto = toDto(type, entity, previous, revision, revisionType);
+            history.add(dto);
+            if (unpaired != null && previous == null && revisionType == RevisionType.MOD) {
+                unpaired.put(dto, () -> toDto(type, entity, previousRevision(type, id, revision.getId()),
+                    revision, revisionType));
+            }
+            if (revisionType == RevisionType.DEL) {
+                previousById.remove(id);
+            } else {
+                previousById.put(id, entity);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * State of the entity at its latest revision before the given one, or null if none
+     */
+    private <T> T previousRevision(AuditedType<T> type, Long id, Long revision) {
+        List<?> entities = auditReader().createQuery()
+            .forRevisionsOfEntity(type.entityClass, true, true)
+            .add(AuditEntity.id().eq(id))
+            .add(AuditEntity.revisionNumber().lt(revision))
+            .addOrder(AuditEntity.revisionNumber().desc())
+            .setMaxResults(1)
+            .getResultList();
+        return entities.isEmpty() ? null : type.entityClass.cast(entities.get(0));
+    }
+
+    private <T> AuditHistoryDto toDto(AuditedType<T> type, T entity, T previous,
+                                      EnversConfig revision, RevisionType revisionType) {
+        AuditHistoryDto dto = new AuditHistoryDto();
+        dto.setId(type.id.apply(entity));
+        dto.setEntityType(type.name);
+        dto.setEntityId(String.valueOf(type.id.apply(entity)));
+        dto.setRevisionId(revision.getId());
+        dto.setRevisionType(revisionType.name());
+        dto.setUsername(revision.getUsername());
+        dto.setRevisionDate(revision.getRevisionDate());
+        dto.setTimestamp(revision.getRevisionDate());
+        dto.setAction(toAction(revisionType));
+
+        if (previous != null && revisionType == RevisionType.MOD) {
+            List<AuditHistoryDto.FieldChangeDto> changes = new ArrayList<>();
+            for (Map.Entry<String, Function<T, Object>> field : type.fields.entrySet()) {
+                Object oldValue = field.getValue().apply(previous);
+                Object newValue = field.getValue().apply(entity);
+                if (!Objects.equals(oldValue, newValue)) {
+                    changes.add(new AuditHistoryDto.FieldChangeDto(field.getKey(),
+                        oldValue != null ? oldValue.toString() : null,
+                        newValue != null ? newValue.toString() : null));
+                }
+            }
+            dto.setChanges(changes);
+        }
+
+        if (entity instanceof MaterialWorkflow) {
+            describeWorkflow(dto, (MaterialWorkflow) entity, (MaterialWorkflow) previous);
+        } else if (entity instanceof Query) {
+            describeQuery(dto, (Query) entity, (Query) previous);
+        } else if (entity instanceof QuestionnaireResponse) {
+            describeResponse(dto, (QuestionnaireResponse) entity, (QuestionnaireResponse) previous);
+        } else if (entity instanceof WorkflowDocument) {
+            describeDocument(dto, (WorkflowDocument) entity);
+        }
+        return dto;
+    }
+
+    private void describeWorkflow(AuditHistoryDto dto, MaterialWorkflow workflow, MaterialWorkflow previous) {
+        dto.setMaterialCode(workflow.getMaterialCode());
+        dto.setWorkflowState(workflow.getState() != null ? workflow.getState().name() : null);
+        if ("CREATE".equals(dto.getAction())) {
+            dto.setDescription("Workflow created for material " + workflow.getMaterialCode());
+        } else if (previous != null && previous.getState() != workflow.getState()) {
+            dto.setAction("STATE_CHANGE");
+            dto.setOldState(previous.getState() != null ? previous.getState().name() : null);
+            dto.setNewState(dto.getWorkflowState());
+            dto.setDescription("Workflow moved from " + dto.getOldState() + " to " + dto.getNewState());
+        } else {
+            dto.setDescription("Workflow " + dto.getAction().toLowerCase());
+        }
+    }
+
+    private void describeQuery(AuditHistoryDto dto, Query query, Query previous) {
+        dto.setQueryStatus(query.getStatus() != null ? query.getStatus().name() : null);
+        dto.setAssignedTeam(query.getAssignedTeam() != null ? query.getAssignedTeam().name() : null);
+        dto.setStepNumber(query.getStepNumber());
+        dto.setFieldName(query.getFieldName());
+        if ("CREATE".equals(dto.getAction())) {
+            dto.setDescription("Query raised for " + dto.getAssignedTeam());
+        } else if (previous != null && previous.getStatus() != query.getStatus()
+                && query.getStatus() == QueryStatus.RESOLVED) {
+            dto.setAction("RESOLVE");
+            dto.setDescription("Query resolved by " + query.getResolvedBy());
+        } else {
+            dto.setDescription("Query " + dto.getAction().toLowerCase());
+        }
+    }
+
+    private void describeResponse(AuditHistoryDto dto, QuestionnaireResponse response, QuestionnaireResponse previous) {
+        dto.setStepNumber(response.getStepNumber());
+        dto.setFieldName(response.getFieldName());
+        dto.setFieldValue(response.getFieldValue());
+        if (previous != null) {
+            dto.setPreviousValue(previous.getFieldValue());
+        }
+        dto.setDescription("Response '" + response.getFieldName() + "' " + dto.getAction().toLowerCase());
+    }
+
+    private void describeDocument(AuditHistoryDto dto, WorkflowDocument document) {
+        dto.setDescription("Document '" + document.getOriginalFileName() + "' " + dto.getAction().toLowerCase());
+    }
+
+    private AuditReader auditReader() {
+        return AuditReaderFactory.get(entityManager);
+    }
+
+    private static String toAction(RevisionType revisionType) {
+        switch (revisionType) {
+            case ADD:
+                return "CREATE";
+            case DEL:
+                return "DELETE";
+            default:
+                return "UPDATE";
+        }
+    }
+
+    private static RevisionType parseRevisionType(String action) {
+        switch (action.toUpperCase()) {
+            case "CREATE":
+            case "ADD":
+                return RevisionType.ADD;
+            case "DELETE":
+            case "DEL":
+                return RevisionType.DEL;
+            case "UPDATE":
+            case "MOD":
+                return RevisionType.MOD;
+            default:
+                throw new IllegalArgumentException("Unknown audit action: " + action);
+        }
+    }
+
+    private static AuditedType<?> findType(String entityType) {
+        for (AuditedType<?> type : ALL_TYPES) {
+            if (type.name.equalsIgnoreCase(entityType)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static List<AuditHistoryDto> window(List<AuditHistoryDto> entries, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return entries;
+        }
+        List<AuditHistoryDto> windowed = new ArrayList<>();
+        for (AuditHistoryDto entry : entries) {
+            LocalDateTime date = entry.getRevisionDate();
+            if (date != null && (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to))) {
+                windowed.add(entry);
+            }
+        }
+        return windowed;
+    }
+
+    // A size of zero or less returns everything
+    private static List<AuditHistoryDto> page(List<AuditHistoryDto> entries, int page, int size) {
+        if (size <= 0) {
+            return entries;
+        }
+        int from = Math.min(page * size, entries.size());
+        int to = Math.min(from + size, entries.size());
+        return new ArrayList<>(entries.subList(from, to));
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String stringParam(Map<String, Object> params, String name) {
+        Object value = params.get(name);
+        return value != null && !value.toString().trim().isEmpty() ? value.toString().trim() : null;
+    }
+
+    private static LocalDateTime dateParam(Map<String, Object> params, String name) {
+        String value = stringParam(params, name);
+        try {
+            return value != null ? LocalDateTime.parse(value) : null;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static int intParam(Map<String, Object> params, String name, int defaultValue) {
+        String value = stringParam(params, name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static Long revisionOf(Object[] row) {
+        return ((EnversConfig) row[1]).getId();
+    }
+
+    // Revision queries that select more than the entity return {entity, revision, revision type} rows
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> rows(AuditQuery query) {
+        return new ArrayList<>((List<Object[]>) query.getResultList());
+    }
+
+    /**
+     * Reads the history of one entity type a page of revisions at a time, oldest first.
+     * A page always ends on a whole revision, so no revision is split between two pages.
+     * The persistence context is cleared after every page, so only use it from the
+     * read-only export methods.
+     */
+    private final class RevisionCursor<T> {
+        private final AuditedType<T> type;
+        private final AuditCriterion criterion;
+        private final Map<Long, T> previousById = new HashMap<>();
+        private final Deque<AuditHistoryDto> buffered = new ArrayDeque<>();
+        private Long lastRevision;
+        private boolean exhausted;
+
+        RevisionCursor(AuditedType<T> type, AuditCriterion criterion) {
+            this.type = type;
+            this.criterion = criterion;
+        }
+
+        AuditHistoryDto peek() {
+            fill();
+            return buffered.peekFirst();
+        }
+
+        AuditHistoryDto next() {
+            fill();
+            return buffered.pollFirst();
+        }
+
+        private void fill() {
+            while (buffered.isEmpty() && !exhausted) {
+                AuditQuery query = newQuery().setMaxResults(exportPageSize);
+                if (lastRevision != null) {
+                    query.add(AuditEntity.revisionNumber().gt(lastRevision));
+                }
+                List<Object[]> rows = rows(query);
+
+                if (rows.size() < exportPageSize) {
+                    exhausted = true;
+                } else {
+                    Long pageEnd = revisionOf(rows.get(rows.size() - 1));
+                    if (revisionOf(rows.get(0)).equals(pageEnd)) {
+                        // One revision fills the page: read all of it
+                        rows = rows(newQuery().add(AuditEntity.revisionNumber().eq(pageEnd)));
+                    } else {
+                        // The last revision may continue past the page; it starts the next page instead
+                        while (revisionOf(rows.get(rows.size() - 1)).equals(pageEnd)) {
+                            rows.remove(rows.size() - 1);
+                        }
+                    }
+                }
+                if (rows.isEmpty()) {
+                    continue;
+                }
+                lastRevision = revisionOf(rows.get(rows.size() - 1));
+
+                List<AuditHistoryDto> page = toHistory(type, rows, previousById, null);
+                page.sort(OLDEST_FIRST);
+                buffered.addAll(page);
+                // Drop the page's revision entities from the session. previousById keeps its
+                // entities detached, which is enough: only their basic fields are compared.
+                entityManager.clear();
+            }
+        }
+
+        private AuditQuery newQuery() {
+            return auditReader().createQuery()
+                .forRevisionsOfEntity(type.entityClass, false, true)
+                .add(criterion)
+                .addOrder(AuditEntity.revisionNumber().asc());
+        }
+    }
+
+    /**
+     * How one audited entity type is read and compared between revisions
+     */
+    private static final class AuditedType<T> {
+        private final Class<T> entityClass;
+        private final String name;
+        private final Function<T, Long> id;
+        private final Map<String, Function<T, Object>> fields = new LinkedHashMap<>();
+
+        AuditedType(Class<T> entityClass, String name, Function<T, Long> id) {
+            this.entityClass = entityClass;
+            this.name = name;
+            this.id = id;
+        }
+
+        AuditedType<T> field(String fieldName, Function<T, Object> getter) {
+            fields.put(fieldName, getter);
+            return this;
+        }
+    }
+}
@@ -1,37 +1,62 @@
 package com.cqs.qrmfg.service.impl;
 
+import com.cqs.qrmfg.dto.WorkflowTransitionResultDto;
+import com.cqs.qrmfg.event.WorkflowStateChangedEvent;
 import com.cqs.qrmfg.exception.InvalidWorkflowStateException;
 import com.cqs.qrmfg.exception.WorkflowException;
 import com.cqs.qrmfg.exception.WorkflowNotFoundException;
 import com.cqs.qrmfg.model.MaterialWorkflow;
 import com.cqs.qrmfg.model.QueryStatus;
 import com.cqs.qrmfg.model.WorkflowState;
+import com.cqs.qrmfg.repository.QueryRepository;
 import com.cqs.qrmfg.repository.WorkflowRepository;
 import com.cqs.qrmfg.service.NotificationService;
 import com.cqs.qrmfg.service.WorkflowService;
+import com.cqs.qrmfg.service.WorkflowTransitionExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
 public class WorkflowServiceImpl implements WorkflowService {
     
     private static final Logger logger = LoggerFactory.getLogger(WorkflowServiceImpl.class);
+    private static final int MAX_BULK_TRANSITION_SIZE = 500;
     
     @Autowired
     private WorkflowRepository workflowRepository;
     
+    @Autowired
+    private QueryRepository queryRepository;
+    
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private WorkflowTransitionExecutor transitionExecutor;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // Basic CRUD operations
     @Override
     public MaterialWorkflow save(MaterialWorkflow workflow) {
@@ -98,6 +123,7 @@ public class WorkflowServiceImpl implements WorkflowService {
         
         logger.info("Initiating workflow for material: {} by user: {}", materialCode, initiatedBy);
         MaterialWorkflow savedWorkflow = workflowRepository.save(workflow);
+        eventPublisher.publishEvent(WorkflowStateChangedEvent.created(savedWorkflow));
         
         // Send notification for workflow creation
         try {
@@ -131,6 +157,7 @@ public class WorkflowServiceImpl implements WorkflowService {
         logger.info("Initiating enhanced workflow for project: {}, material: {}, plant: {}, block: {} by user: {}", 
                    projectCode, materialCode, plantCode, blockId, initiatedBy);
         MaterialWorkflow savedWorkflow = workflowRepository.save(workflow);
+        eventPublisher.publishEvent(WorkflowStateChangedEvent.created(savedWorkflow));
         
         // Send notification for workflow creation
         try {
@@ -145,24 +172,37 @@ public class WorkflowServiceImpl implements WorkflowService {
     
     // State transition operations
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow transitionToState(Long workflowId, WorkflowState newState, String updatedBy) {
-        MaterialWorkflow workflow = workflowRepository.findById(workflowId)
-            .orElseThrow(() -> new WorkflowNotFoundException(workflowId));
+        TransitionResult result = transitionExecutor.execute("workflow " + workflowId + " -> " + newState,
+            attempt -> applyStateTransition(workflowRepository.findById(workflowId)
+                .orElseThrow(() -> new WorkflowNotFoundException(workflowId)), newState, updatedBy, attempt));
         
-        return performStateTransition(workflow, newState, updatedBy);
+        return notifyStateTransition(result, newState, updatedBy);
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow transitionToState(String materialCode, WorkflowState newState, String updatedBy) {
-        MaterialWorkflow workflow = workflowRepository.findByMaterialCode(materialCode)
-            .stream().findFirst().orElseThrow(() -> WorkflowNotFoundException.forMaterialCode(materialCode));
+        TransitionResult result = transitionExecutor.execute("workflow " + materialCode + " -> " + newState,
+            attempt -> applyStateTransition(workflowRepository.findByMaterialCode(materialCode)
+                .stream().findFirst().orElseThrow(() -> WorkflowNotFoundException.forMaterialCode(materialCode)),
+                newState, updatedBy, attempt));
         
-        return performStateTransition(workflow, newState, updatedBy);
+        return notifyStateTransition(result, newState, updatedBy);
     }
     
-    private MaterialWorkflow performStateTransition(MaterialWorkflow workflow, WorkflowState newState, String updatedBy) {
+    private TransitionResult applyStateTransition(MaterialWorkflow workflow, WorkflowState newState, 
+                                                  String updatedBy, int attempt) {
         WorkflowState currentState = workflow.getState();
         
+        // A replay after a conflict may find the winning writer already moved the workflow
+        if (attempt > 1 && currentState == newState) {
+            logger.info("Workflow {} already in state {} after concurrent update, skipping transition", 
+                       workflow.getMaterialCode(), newState);
+            return new TransitionResult(workflow, currentState, false);
+        }
+        
         logger.info("Transitioning workflow {} from {} to {} by user: {}", 
                    workflow.getMaterialCode(), currentState, newState, updatedBy);
         
@@ -171,10 +211,25 @@ public class WorkflowServiceImpl implements WorkflowService {
         
         // Perform transition
         workflow.transitionTo(newState, updatedBy);
+        eventPublisher.publishEvent(WorkflowStateChangedEvent.transitioned(workflow, currentState));
         
-        MaterialWorkflow savedWorkflow = workflowRepository.save(workflow);
+        return new TransitionResult(workflowRepository.save(workflow), currentState, true);
+    }
+    
+    private MaterialWorkflow notifyStateTransition(TransitionResult result, WorkflowState newState, String updatedBy) {
+        MaterialWorkflow savedWorkflow = result.workflow;
+        if (!result.applied) {
+            return savedWorkflow;
+        }
+        WorkflowState currentState = result.previousState;
         
         // Send notification for state change - this is the core integration point
+        afterCommit(() -> sendStateTransitionNotifications(savedWorkflow, currentState, newState, updatedBy));
+        return savedWorkflow;
+    }
+    
+    private void sendStateTransitionNotifications(MaterialWorkflow savedWorkflow, WorkflowState currentState,
+                                                  WorkflowState newState, String updatedBy) {
         try {
             notificationService.notifyWorkflowStateChanged(savedWorkflow, currentState, updatedBy);
             
@@ -196,10 +251,35 @@ public class WorkflowServiceImpl implements WorkflowService {
             }
         } catch (Exception e) {
             logger.warn("Failed to send workflow state change notification for material {}: {}", 
-                       workflow.getMaterialCode(), e.getMessage());
+                       savedWorkflow.getMaterialCode(), e.getMessage());
         }
+    }
+    
+    // Runs after the caller's transaction commits, or right away when there is none,
+    // so a rolled back or replayed transition never notifies anyone
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private static class TransitionResult {
+        private final MaterialWorkflow workflow;
+        private final WorkflowState previousState;
+        private final boolean applied;
         
-        return savedWorkflow;
+        TransitionResult(MaterialWorkflow workflow, WorkflowState previousState, boolean applied) {
+            this.workflow = workflow;
+            this.previousState = previousState;
+            this.applied = applied;
+        }
     }
     
     @Override
@@ -220,38 +300,164 @@ public class WorkflowServiceImpl implements WorkflowService {
         return workflow.canTransitionTo(newState);
     }
     
+    // Bulk state transition
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<WorkflowTransitionResultDto> bulkTransitionToState(List<Long> workflowIds, WorkflowState newState, 
+                                                                 String updatedBy) {
+        if (workflowIds == null || workflowIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (workflowIds.size() > MAX_BULK_TRANSITION_SIZE) {
+            throw new WorkflowException("Bulk transition is limited to " + MAX_BULK_TRANSITION_SIZE + " workflows per request");
+        }
+        
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(workflowIds));
+        List<MaterialWorkflow> transitioned = new ArrayList<>();
+        
+        List<WorkflowTransitionResultDto> results = transitionExecutor.execute(
+            "bulk transition of " + distinctIds.size() + " workflows -> " + newState,
+            attempt -> applyBulkTransition(distinctIds, newState, updatedBy, transitioned));
+        
+        // One aggregated notification per receiving team instead of one per workflow
+        if (!transitioned.isEmpty()) {
+            afterCommit(() -> {
+                try {
+                    notificationService.notifyWorkflowsStateChanged(transitioned, newState, updatedBy);
+                } catch (Exception e) {
+                    logger.warn("Failed to send bulk state change notification for {} workflows: {}", 
+                               transitioned.size(), e.getMessage());
+                }
+            });
+        }
+        
+        return results;
+    }
+    
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<MaterialWorkflow> bulkTransitionInTransaction(List<Long> workflowIds, WorkflowState newState,
+                                                              String updatedBy) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(workflowIds));
+        List<MaterialWorkflow> transitioned = new ArrayList<>();
+        
+        // Chunked like the request cap so the IN lists stay below Oracle's limit
+        for (int from = 0; from < distinctIds.size(); from += MAX_BULK_TRANSITION_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + MAX_BULK_TRANSITION_SIZE, distinctIds.size()));
+            List<MaterialWorkflow> chunkTransitioned = new ArrayList<>();
+            applyBulkTransition(chunk, newState, updatedBy, chunkTransitioned);
+            transitioned.addAll(chunkTransitioned);
+        }
+        return transitioned;
+    }
+    
+    private List<WorkflowTransitionResultDto> applyBulkTransition(List<Long> workflowIds, WorkflowState newState, 
+                                                                 String updatedBy, 
+                                                                 List<MaterialWorkflow> transitioned) {
+        transitioned.clear();
+        
+        Map<Long, MaterialWorkflow> workflowsById = new HashMap<>();
+        for (MaterialWorkflow workflow : workflowRepository.findByIds(workflowIds)) {
+            workflowsById.put(workflow.getId(), workflow);
+        }
+        
+        // Completion needs the open-query check; resolve it for every target in one query
+        Set<Long> withOpenQueries = newState == WorkflowState.COMPLETED
+            ? new HashSet<>(queryRepository.findWorkflowIdsWithOpenQueries(workflowIds))
+            : Collections.<Long>emptySet();
+        
+        List<WorkflowTransitionResultDto> results = new ArrayList<>(workflowIds.size());
+        for (Long workflowId : workflowIds) {
+            MaterialWorkflow workflow = workflowsById.get(workflowId);
+            if (workflow == null) {
+                results.add(new WorkflowTransitionResultDto(workflowId, null, null, newState.name(), 
+                    false, "Workflow not found"));
+                continue;
+            }
+            
+            // Requested twice, or moved there by a concurrent writer before a replay
+            WorkflowState currentState = workflow.getState();
+            if (currentState == newState) {
+                results.add(new WorkflowTransitionResultDto(workflowId, workflow.getMaterialCode(), 
+                    currentState.name(), newState.name(), true, "Already in target state"));
+                continue;
+            }
+            
+            String error = getBulkTransitionError(workflow, newState, withOpenQueries);
+            if (error != null) {
+                results.add(new WorkflowTransitionResultDto(workflowId, workflow.getMaterialCode(), 
+                    currentState.name(), newState.name(), false, error));
+                continue;
+            }
+            
+            workflow.transitionTo(newState, updatedBy);
+            eventPublisher.publishEvent(WorkflowStateChangedEvent.transitioned(workflow, currentState));
+            transitioned.add(workflow);
+            results.add(new WorkflowTransitionResultDto(workflowId, workflow.getMaterialCode(), 
+                currentState.name(), newState.name(), true, "Transitioned"));
+        }
+        
+        // Managed entities are flushed together on commit as a single JDBC batch
+        workflowRepository.saveAll(transitioned);
+        
+        logger.info("Bulk transition to {} by {}: {} of {} workflows transitioned", 
+                   newState, updatedBy, transitioned.size(), workflowIds.size());
+        return results;
+    }
+    
+    private String getBulkTransitionError(MaterialWorkflow workflow, WorkflowState newState, Set<Long> withOpenQueries) {
+        if (!workflow.canTransitionTo(newState)) {
+            return String.format("Invalid state transition: %s -> %s", workflow.getState(), newState);
+        }
+        if (newState == WorkflowState.COMPLETED && withOpenQueries.contains(workflow.getId())) {
+            return "Cannot complete workflow with open queries";
+        }
+        if ((newState == WorkflowState.COMPLETED || newState.isQueryState()) 
+                && workflow.getState() != WorkflowState.PLANT_PENDING) {
+            return "Transition to " + newState + " is only allowed from PLANT_PENDING state";
+        }
+        return null;
+    }
+    
     // Specific workflow actions
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow extendToPlant(Long workflowId, String updatedBy) {
         MaterialWorkflow workflow = transitionToState(workflowId, WorkflowState.PLANT_PENDING, updatedBy);
         
         // Send specific notification for workflow extension
-        try {
-            notificationService.notifyWorkflowExtended(workflow, updatedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send workflow extension notification for material {}: {}", 
-                       workflow.getMaterialCode(), e.getMessage());
-        }
+        afterCommit(() -> {
+            try {
+                notificationService.notifyWorkflowExtended(workflow, updatedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send workflow extension notification for material {}: {}", 
+                           workflow.getMaterialCode(), e.getMessage());
+            }
+        });
         
         return workflow;
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow extendToPlant(String materialCode, String updatedBy) {
         MaterialWorkflow workflow = transitionToState(materialCode, WorkflowState.PLANT_PENDING, updatedBy);
         
         // Send specific notification for workflow extension
-        try {
-            notificationService.notifyWorkflowExtended(workflow, updatedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send workflow extension notification for material {}: {}", 
-                       workflow.getMaterialCode(), e.getMessage());
-        }
+        afterCommit(() -> {
+            try {
+                notificationService.notifyWorkflowExtended(workflow, updatedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send workflow extension notification for material {}: {}", 
+                           workflow.getMaterialCode(), e.getMessage());
+            }
+        });
         
         return workflow;
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow completeWorkflow(Long workflowId, String updatedBy) {
         MaterialWorkflow workflow = workflowRepository.findById(workflowId)
             .orElseThrow(() -> new WorkflowNotFoundException(workflowId));
@@ -260,17 +466,20 @@ public class WorkflowServiceImpl implements WorkflowService {
         MaterialWorkflow completedWorkflow = transitionToState(workflowId, WorkflowState.COMPLETED, updatedBy);
         
         // Send specific notification for workflow completion
-        try {
-            notificationService.notifyWorkflowCompleted(completedWorkflow, updatedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send workflow completion notification for material {}: {}", 
-                       workflow.getMaterialCode(), e.getMessage());
-        }
+        afterCommit(() -> {
+            try {
+                notificationService.notifyWorkflowCompleted(completedWorkflow, updatedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send workflow completion notification for material {}: {}", 
+                           completedWorkflow.getMaterialCode(), e.getMessage());
+            }
+        });
         
         return completedWorkflow;
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow completeWorkflow(String materialCode, String updatedBy) {
         MaterialWorkflow workflow = workflowRepository.findByMaterialCode(materialCode)
             .stream().findFirst().orElseThrow(() -> WorkflowNotFoundException.forMaterialCode(materialCode));
@@ -279,17 +488,20 @@ public class WorkflowServiceImpl implements WorkflowService {
         MaterialWorkflow completedWorkflow = transitionToState(materialCode, WorkflowState.COMPLETED, updatedBy);
         
         // Send specific notification for workflow completion
-        try {
-            notificationService.notifyWorkflowCompleted(completedWorkflow, updatedBy);
-        } catch (Exception e) {
-            logger.warn("Failed to send workflow completion notification for material {}: {}", 
-                       workflow.getMaterialCode(), e.getMessage());
-        }
+        afterCommit(() -> {
+            try {
+                notificationService.notifyWorkflowCompleted(completedWorkflow, updatedBy);
+            } catch (Exception e) {
+                logger.warn("Failed to send workflow completion notification for material {}: {}", 
+                           completedWorkflow.getMaterialCode(), e.getMessage());
+            }
+        });
         
         return completedWorkflow;
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow moveToQueryState(Long workflowId, WorkflowState queryState, String updatedBy) {
         if (!queryState.isQueryState()) {
             throw new InvalidWorkflowStateException("State " + queryState + " is not a query state");
@@ -298,6 +510,7 @@ public class WorkflowServiceImpl implements WorkflowService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public MaterialWorkflow returnFromQueryState(Long workflowId, String updatedBy) {
         return transitionToState(workflowId, WorkflowState.PLANT_PENDING, updatedBy);
     }
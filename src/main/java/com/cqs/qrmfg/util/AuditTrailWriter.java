@@ -0,0 +1,153 @@
+package com.cqs.qrmfg.util;
+
+import com.cqs.qrmfg.dto.AuditHistoryDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams audit trail entries as CSV, newline-delimited JSON or a JSON array.
+ * Entries are written as they are read, so an export holds one buffer of output
+ * rather than the whole trail. I/O failures surface as UncheckedIOException.
+ */
+public class AuditTrailWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Entries between flushes, so the client keeps receiving data during long exports
+    private static final int FLUSH_EVERY = 500;
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        JSON("json", "application/json"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() { return extension; }
+
+        public String getContentType() { return contentType; }
+
+        /**
+         * @throws IllegalArgumentException for an unknown format
+         */
+        public static Format parse(String format) {
+            return valueOf(format.trim().toUpperCase());
+        }
+    }
+
+    // Same layout as the CSV and XLSX export jobs
+    private static final String[] COLUMNS =
+        {"Revision", "Revision Date", "Entity Type", "Entity Id", "Action", "Username", "Description"};
+
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private final Writer writer;
+    private final CsvWriter csvWriter;
+    private long written;
+
+    public AuditTrailWriter(OutputStream out, Format format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        if (format == Format.CSV) {
+            this.csvWriter = new CsvWriter(out);
+            this.writer = null;
+        } else {
+            this.csvWriter = null;
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Write the header or opening bracket and send it right away
+     */
+    public void start() {
+        if (csvWriter != null) {
+            writeHeader(csvWriter);
+        } else if (format == Format.JSON) {
+            write("[");
+            flush();
+        }
+    }
+
+    public void write(AuditHistoryDto entry) {
+        if (csvWriter != null) {
+            writeRow(csvWriter, entry);
+        } else {
+            try {
+                if (format == Format.JSON && written > 0) {
+                    writer.write(',');
+                }
+                writer.write(objectMapper.writeValueAsString(entry));
+                if (format == Format.NDJSON) {
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (++written % FLUSH_EVERY == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Header of the tabular audit trail layout
+     */
+    public static void writeHeader(TableWriter table) {
+        table.writeHeader(COLUMNS);
+    }
+
+    /**
+     * One entry in the tabular audit trail layout
+     */
+    public static void writeRow(TableWriter table, AuditHistoryDto entry) {
+        table.writeRow(entry.getRevisionId(),
+                       entry.getRevisionDate() != null ? entry.getRevisionDate() : entry.getTimestamp(),
+                       entry.getEntityType(), entry.getEntityId(), entry.getAction(),
+                       entry.getUsername(), entry.getDescription());
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public void finish() {
+        if (format == Format.JSON) {
+            write("]");
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (csvWriter != null) {
+            csvWriter.flush();
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.cqs.qrmfg.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal buffered CSV writer for streamed exports. Rows are written straight to
+ * the underlying stream, so nothing beyond the buffer is held in memory.
+ */
+public class CsvWriter implements TableWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BufferedWriter writer;
+
+    public CsvWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void writeHeader(String... columns) {
+        writeRow((Object[]) columns);
+        // Send the header before the query runs so the download starts right away
+        flush();
+    }
+
+    @Override
+    public void writeRow(Object... fields) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(formatField(fields[i]));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void finish() {
+        flush();
+    }
+
+    /**
+     * Escape quotes and wrap in quotes if the value contains a separator
+     */
+    static String formatField(Object field) {
+        if (field == null) {
+            return "";
+        }
+        String value = field.toString();
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
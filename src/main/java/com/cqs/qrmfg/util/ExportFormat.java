@@ -0,0 +1,27 @@
+package com.cqs.qrmfg.util;
+
+import java.io.OutputStream;
+
+/**
+ * File formats supported by the report exports
+ */
+public enum ExportFormat {
+    CSV("csv", "text/csv"),
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() { return extension; }
+
+    public String getContentType() { return contentType; }
+
+    public TableWriter newWriter(OutputStream out, String title) {
+        return this == XLSX ? new XlsxWriter(out, title) : new CsvWriter(out);
+    }
+}
@@ -0,0 +1,65 @@
+package com.cqs.qrmfg.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Holds an immutable snapshot that is recomputed at most once per refresh interval.
+ * Recomputation is single-flight: one caller rebuilds while concurrent callers keep
+ * reading the previous snapshot, and only the very first load makes callers wait.
+ */
+public class SnapshotCache<T> {
+
+    private final Supplier<T> loader;
+    private final long refreshIntervalMillis;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile T value;
+    private volatile long loadedAtMillis;
+
+    public SnapshotCache(Supplier<T> loader, long refreshIntervalMillis) {
+        this.loader = loader;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public T get() {
+        T current = value;
+        if (current != null && !isStale()) {
+            return current;
+        }
+
+        if (current != null) {
+            // Someone else is already refreshing: serve the previous snapshot
+            if (!refreshLock.tryLock()) {
+                return current;
+            }
+        } else {
+            refreshLock.lock();
+        }
+
+        try {
+            if (value == null || isStale()) {
+                value = loader.get();
+                loadedAtMillis = System.currentTimeMillis();
+            }
+            return value;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Drop the snapshot so the next read recomputes it
+     */
+    public void invalidate() {
+        loadedAtMillis = 0;
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    private boolean isStale() {
+        return System.currentTimeMillis() - loadedAtMillis >= refreshIntervalMillis;
+    }
+}
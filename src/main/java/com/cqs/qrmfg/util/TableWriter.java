@@ -0,0 +1,24 @@
+package com.cqs.qrmfg.util;
+
+/**
+ * Row-by-row sink for tabular exports. Export queries write each row as it comes
+ * off the cursor, so the same row source can produce any supported file format.
+ * I/O failures surface as UncheckedIOException so rows can be written from JDBC
+ * row callbacks.
+ */
+public interface TableWriter {
+
+    void writeHeader(String... columns);
+
+    void writeRow(Object... values);
+
+    /**
+     * Push buffered rows to the client where the format allows it
+     */
+    void flush();
+
+    /**
+     * Complete the document; no rows may be written afterwards
+     */
+    void finish();
+}
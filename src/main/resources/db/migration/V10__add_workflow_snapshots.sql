@@ -0,0 +1,20 @@
+-- Read-only views of completed workflows, stored once as gzip-compressed JSON
+-- and served as stored with an ETag derived from content_hash. The data is
+-- already compressed, so the LOB is not; reads are cached as snapshots are hot.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_workflow_snapshots (
+        workflow_id NUMBER(19) NOT NULL,
+        snapshot_data BLOB NOT NULL,
+        content_hash VARCHAR2(64) NOT NULL,
+        json_size NUMBER(19) NOT NULL,
+        created_at TIMESTAMP NOT NULL,
+        CONSTRAINT pk_workflow_snapshots PRIMARY KEY (workflow_id)
+    ) LOB (snapshot_data) STORE AS SECUREFILE (CACHE READS)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
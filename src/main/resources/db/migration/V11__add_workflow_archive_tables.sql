@@ -0,0 +1,61 @@
+-- Archive tier for the children of long-completed workflows
+-- WorkflowArchiveService moves queries and questionnaire responses of workflows completed
+-- more than app.archive.completed-days ago into these tables, so the hot tables and their
+-- indexes only hold active and recently completed work. The archive tables copy the hot
+-- table columns plus archived_at; a column added to a hot table must be added here too.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_arch_queries AS SELECT * FROM qrmfg_queries WHERE 1 = 0';
+    EXECUTE IMMEDIATE 'ALTER TABLE qrmfg_arch_queries ADD (archived_at TIMESTAMP DEFAULT SYSTIMESTAMP NOT NULL)';
+    EXECUTE IMMEDIATE 'ALTER TABLE qrmfg_arch_queries ADD CONSTRAINT pk_arch_queries PRIMARY KEY (id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_arch_responses AS SELECT * FROM qrmfg_questionnaire_responses WHERE 1 = 0';
+    EXECUTE IMMEDIATE 'ALTER TABLE qrmfg_arch_responses ADD (archived_at TIMESTAMP DEFAULT SYSTIMESTAMP NOT NULL)';
+    EXECUTE IMMEDIATE 'ALTER TABLE qrmfg_arch_responses ADD CONSTRAINT pk_arch_responses PRIMARY KEY (id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Archive reads are always by workflow (or by primary key)
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_arch_queries_workflow ON qrmfg_arch_queries(workflow_id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_arch_responses_workflow ON qrmfg_arch_responses(workflow_id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Candidate selection for the archive job: completed workflows by completion time
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_workflows_state_completed ON qrmfg_material_workflows(workflow_state, completed_at)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
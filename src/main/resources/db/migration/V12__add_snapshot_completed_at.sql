@@ -0,0 +1,14 @@
+-- Completion time of the workflow a snapshot was taken from. A snapshot is only
+-- served while it matches the workflow's current completed_at, so one left over
+-- from before a reopen and re-completion is rebuilt instead of served.
+-- Existing snapshots keep NULL and are rebuilt on their next read.
+
+BEGIN
+    EXECUTE IMMEDIATE 'ALTER TABLE qrmfg_workflow_snapshots ADD workflow_completed_at TIMESTAMP';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -1430 THEN -- Column already exists
+            RAISE;
+        END IF;
+END;
+/
@@ -0,0 +1,33 @@
+-- Add optimistic locking version columns
+-- Workflows and queries are updated concurrently by several teams; the version
+-- column lets Hibernate detect lost updates instead of silently overwriting them.
+
+BEGIN
+    EXECUTE IMMEDIATE 'ALTER TABLE QRMFG_MATERIAL_WORKFLOWS ADD VERSION NUMBER(19,0) DEFAULT 0';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -1430 THEN -- Column already exists
+            RAISE;
+        END IF;
+END;
+/
+
+UPDATE QRMFG_MATERIAL_WORKFLOWS SET VERSION = 0 WHERE VERSION IS NULL;
+
+ALTER TABLE QRMFG_MATERIAL_WORKFLOWS MODIFY VERSION NUMBER(19,0) NOT NULL;
+
+BEGIN
+    EXECUTE IMMEDIATE 'ALTER TABLE QRMFG_QUERIES ADD VERSION NUMBER(19,0) DEFAULT 0';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -1430 THEN -- Column already exists
+            RAISE;
+        END IF;
+END;
+/
+
+UPDATE QRMFG_QUERIES SET VERSION = 0 WHERE VERSION IS NULL;
+
+ALTER TABLE QRMFG_QUERIES MODIFY VERSION NUMBER(19,0) NOT NULL;
+
+COMMIT;
@@ -0,0 +1,54 @@
+-- Composite indexes for the query context search
+-- Each index leads with the equality filters and ends with the keyset
+-- ordering columns (created_at, id) so a filtered page is a single range scan.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_query_team_status_created ON qrmfg_queries(assigned_team, query_status, created_at, id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_query_status_prio_created ON qrmfg_queries(query_status, priority_level, created_at, id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_query_workflow_created ON qrmfg_queries(workflow_id, created_at, id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_query_created_id ON qrmfg_queries(created_at, id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Plant and block are usually filtered together from the workflow side
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_mat_workflow_plant_block ON qrmfg_material_workflows(plant_code, block_id)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
@@ -0,0 +1,50 @@
+-- Daily rollup tables for query and workflow reporting
+-- Rows are upserted as queries and workflows change, and recomputed for a
+-- date range by the backfill job, so reports read rollup rows instead of history.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_query_daily_rollup (
+        rollup_day DATE NOT NULL,
+        assigned_team VARCHAR2(20) NOT NULL,
+        created_count NUMBER(19) DEFAULT 0 NOT NULL,
+        resolved_count NUMBER(19) DEFAULT 0 NOT NULL,
+        resolution_hours_sum NUMBER DEFAULT 0 NOT NULL,
+        sla_met_count NUMBER(19) DEFAULT 0 NOT NULL,
+        CONSTRAINT pk_query_daily_rollup PRIMARY KEY (rollup_day, assigned_team)
+    )';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_workflow_daily_rollup (
+        rollup_day DATE NOT NULL,
+        plant_code VARCHAR2(50) NOT NULL,
+        workflow_state VARCHAR2(20) NOT NULL,
+        entered_count NUMBER(19) DEFAULT 0 NOT NULL,
+        exited_count NUMBER(19) DEFAULT 0 NOT NULL,
+        completion_hours_sum NUMBER DEFAULT 0 NOT NULL,
+        CONSTRAINT pk_workflow_daily_rollup PRIMARY KEY (rollup_day, plant_code, workflow_state)
+    )';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Backfill reads completions and resolutions by day
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_query_resolved_at ON qrmfg_queries(resolved_at)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
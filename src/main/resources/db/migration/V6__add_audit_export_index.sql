@@ -0,0 +1,12 @@
+-- Lets the audit export read qrmfg_audit_logs newest first through the index,
+-- so streamed rows start flowing without sorting the whole table
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_audit_logs_event_ts ON qrmfg_audit_logs(event_timestamp)';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
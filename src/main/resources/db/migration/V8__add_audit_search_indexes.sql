@@ -0,0 +1,55 @@
+-- Composite indexes for the keyset audit search
+-- Each index leads with an equality filter and ends with the keyset ordering
+-- columns (event_timestamp, id), so a filtered page newest first is one range
+-- scan with a stop key. They are LOCAL to the monthly partitions from V7.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_audit_logs_ts_id ON qrmfg_audit_logs(event_timestamp, id) LOCAL';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_audit_logs_user_ts ON qrmfg_audit_logs(user_id, event_timestamp, id) LOCAL';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_audit_logs_entity_ts ON qrmfg_audit_logs(entity_type, entity_id, event_timestamp, id) LOCAL';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE INDEX idx_audit_logs_action_ts ON qrmfg_audit_logs(action, event_timestamp, id) LOCAL';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Index already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Superseded by idx_audit_logs_ts_id
+BEGIN
+    EXECUTE IMMEDIATE 'DROP INDEX idx_audit_logs_event_ts';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -1418 THEN -- Index does not exist
+            RAISE;
+        END IF;
+END;
+/
@@ -0,0 +1,38 @@
+-- Per document access counters maintained by DocumentAccessLogWriter
+-- Document summaries read download counts and last access times from here
+-- instead of counting document_access_logs rows on every request.
+
+BEGIN
+    EXECUTE IMMEDIATE 'CREATE TABLE qrmfg_document_access_stats (
+        document_id NUMBER(19) NOT NULL,
+        download_count NUMBER(19) DEFAULT 0 NOT NULL,
+        last_accessed_at TIMESTAMP,
+        CONSTRAINT pk_document_access_stats PRIMARY KEY (document_id)
+    )';
+EXCEPTION
+    WHEN OTHERS THEN
+        IF SQLCODE != -955 THEN -- Table already exists
+            RAISE;
+        END IF;
+END;
+/
+
+-- Seed the counters from the existing log (granted accesses only)
+MERGE INTO qrmfg_document_access_stats s
+USING (
+    SELECT document_id,
+           SUM(CASE WHEN access_type = 'DOWNLOAD' THEN 1 ELSE 0 END) AS downloads,
+           MAX(access_time) AS accessed_at
+    FROM document_access_logs
+    WHERE access_granted = 1
+    GROUP BY document_id
+) a
+ON (s.document_id = a.document_id)
+WHEN MATCHED THEN UPDATE SET s.download_count = a.downloads, s.last_accessed_at = a.accessed_at
+WHEN NOT MATCHED THEN INSERT (document_id, download_count, last_accessed_at)
+    VALUES (a.document_id, a.downloads, a.accessed_at);
+
+COMMIT;
+
+-- The access log is append-only and no longer versioned by Envers. The existing
+-- document_access_logs_aud rows are kept as history; nothing writes to the table.
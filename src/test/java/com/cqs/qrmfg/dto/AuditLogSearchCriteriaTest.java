@@ -0,0 +1,75 @@
+package com.cqs.qrmfg.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogSearchCriteriaTest {
+
+    @Test
+    void cursorRoundTrips() {
+        LocalDateTime eventTime = LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_000_000);
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+
+        criteria.setCursor(AuditLogSearchCriteria.encodeCursor(eventTime, 42L));
+
+        assertTrue(criteria.hasCursor());
+        assertEquals(eventTime, criteria.getBeforeEventTime());
+        assertEquals(Long.valueOf(42L), criteria.getBeforeId());
+    }
+
+    @Test
+    void cursorRoundTripsWholeMinute() {
+        LocalDateTime eventTime = LocalDateTime.of(2024, 3, 15, 10, 30);
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+
+        criteria.setCursor(AuditLogSearchCriteria.encodeCursor(eventTime, 1L));
+
+        assertEquals(eventTime, criteria.getBeforeEventTime());
+    }
+
+    @Test
+    void nullCursorClearsPosition() {
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+        criteria.setCursor(AuditLogSearchCriteria.encodeCursor(LocalDateTime.of(2024, 1, 1, 0, 0), 1L));
+
+        criteria.setCursor(null);
+
+        assertFalse(criteria.hasCursor());
+        assertNull(criteria.getBeforeEventTime());
+        assertNull(criteria.getBeforeId());
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("12345")));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("2024-13-01T00:00_5")));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("2024-01-01T00:00_")));
+        assertFalse(criteria.hasCursor());
+    }
+
+    @Test
+    void clampsLimit() {
+        AuditLogSearchCriteria criteria = new AuditLogSearchCriteria();
+
+        criteria.setLimit(-5);
+        assertEquals(1, criteria.getLimit());
+        criteria.setLimit(AuditLogSearchCriteria.MAX_LIMIT * 2);
+        assertEquals(AuditLogSearchCriteria.MAX_LIMIT, criteria.getLimit());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+package com.cqs.qrmfg.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuerySearchCriteriaTest {
+
+    @Test
+    void cursorRoundTrips() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 15, 10, 30, 45, 123_456_000);
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+
+        criteria.setCursor(QuerySearchCriteria.encodeCursor(createdAt, 42L));
+
+        assertTrue(criteria.hasCursor());
+        assertEquals(createdAt, criteria.getAfterCreatedAt());
+        assertEquals(Long.valueOf(42L), criteria.getAfterId());
+    }
+
+    @Test
+    void cursorRoundTripsWholeMinute() {
+        // LocalDateTime.toString drops zero seconds
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 15, 10, 30);
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+
+        criteria.setCursor(QuerySearchCriteria.encodeCursor(createdAt, Long.MAX_VALUE));
+
+        assertEquals(createdAt, criteria.getAfterCreatedAt());
+        assertEquals(Long.valueOf(Long.MAX_VALUE), criteria.getAfterId());
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = QuerySearchCriteria.encodeCursor(LocalDateTime.of(2024, 12, 31, 23, 59, 59, 999_999_999), 7L);
+
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    }
+
+    @Test
+    void blankCursorClearsPosition() {
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+        criteria.setCursor(QuerySearchCriteria.encodeCursor(LocalDateTime.of(2024, 1, 1, 0, 0), 1L));
+
+        criteria.setCursor("  ");
+
+        assertFalse(criteria.hasCursor());
+        assertNull(criteria.getAfterCreatedAt());
+        assertNull(criteria.getAfterId());
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("no-separator")));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("yesterday_5")));
+        assertThrows(IllegalArgumentException.class, () -> criteria.setCursor(encode("2024-01-01T00:00_abc")));
+        assertFalse(criteria.hasCursor());
+    }
+
+    @Test
+    void clampsLimit() {
+        QuerySearchCriteria criteria = new QuerySearchCriteria();
+
+        criteria.setLimit(0);
+        assertEquals(1, criteria.getLimit());
+        criteria.setLimit(QuerySearchCriteria.MAX_LIMIT + 1);
+        assertEquals(QuerySearchCriteria.MAX_LIMIT, criteria.getLimit());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
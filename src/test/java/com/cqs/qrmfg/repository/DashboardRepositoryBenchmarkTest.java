@@ -0,0 +1,224 @@
+package com.cqs.qrmfg.repository;
+
+import com.cqs.qrmfg.dto.WorkflowSummaryDto;
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Dashboard workflow summaries before and after the pre-aggregated LEFT JOIN, as the
+ * workflow and query tables grow while the dashboard keeps selecting the same recent
+ * workflows. The previous SQL ran two correlated COUNT(*) subqueries per returned row.
+ * Needs an Oracle scratch schema without the qrmfg tables: the benchmark creates the
+ * columns the statements read, with the indexes from workflow_schema.sql, and drops them again.
+ *
+ * mvn -Pbenchmark test -Dtest=DashboardRepositoryBenchmarkTest
+ *     -Dbenchmark.jdbc.url=... -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark.jdbc.url", matches = ".+")
+class DashboardRepositoryBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 200_000};
+    private static final int RECENT_WORKFLOWS = 1_000;
+    private static final int RECENT_DAYS = 7;
+    private static final int QUERIES_PER_WORKFLOW = 4;
+    private static final int BATCH_SIZE = 5_000;
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+
+    // At the largest size the new SQL may be at most this many times the previous one
+    private static final double MAX_RATIO = Double.parseDouble(System.getProperty("benchmark.max-ratio", "1.2"));
+    // Below this, differences are timer and network noise
+    private static final double NOISE_FLOOR_MILLIS = 20;
+
+    private static final String[] TABLES = {"QRMFG_QUERIES", "QRMFG_MATERIAL_WORKFLOWS"};
+
+    // The summary select before the pre-aggregated join; assigned_plant never existed, so it reads plant_code
+    private static final String PREVIOUS_RECENT_ACTIVITY_SQL =
+        "SELECT w.id, w.material_code, w.material_name, w.workflow_state, w.plant_code AS assigned_plant, " +
+        "w.initiated_by, w.created_at, w.last_modified, w.extended_at, w.completed_at, " +
+        "CASE " +
+        "    WHEN w.workflow_state = 'JVC_PENDING' THEN TRUNC(SYSDATE - w.created_at) " +
+        "    WHEN w.workflow_state = 'PLANT_PENDING' THEN TRUNC(SYSDATE - NVL(w.extended_at, w.created_at)) " +
+        "    WHEN w.workflow_state IN ('CQS_PENDING', 'TECH_PENDING') THEN TRUNC(SYSDATE - w.last_modified) " +
+        "    ELSE 0 " +
+        "END as days_pending, " +
+        "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id) as total_queries, " +
+        "(SELECT COUNT(*) FROM qrmfg_queries q WHERE q.workflow_id = w.id AND q.query_status = 'OPEN') as open_queries " +
+        "FROM qrmfg_material_workflows w " +
+        "WHERE w.last_modified >= SYSDATE - ? " +
+        "ORDER BY w.last_modified DESC";
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DashboardRepository dashboardRepository;
+    private static boolean created;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeAll
+    static void createTables() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getProperty("benchmark.jdbc.url"),
+            System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Integer existing = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM user_tables WHERE table_name IN ('QRMFG_QUERIES', 'QRMFG_MATERIAL_WORKFLOWS')",
+            Integer.class);
+        assumeTrue(existing == 0, "The benchmark needs a scratch schema without the qrmfg tables");
+
+        jdbcTemplate.execute("CREATE TABLE qrmfg_material_workflows (id NUMBER(19) PRIMARY KEY, " +
+            "material_code VARCHAR2(50) NOT NULL, material_name VARCHAR2(200), workflow_state VARCHAR2(20) NOT NULL, " +
+            "plant_code VARCHAR2(50), initiated_by VARCHAR2(100), created_at TIMESTAMP NOT NULL, " +
+            "last_modified TIMESTAMP NOT NULL, extended_at TIMESTAMP, completed_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE qrmfg_queries (id NUMBER(19) PRIMARY KEY, " +
+            "workflow_id NUMBER(19) NOT NULL REFERENCES qrmfg_material_workflows(id), " +
+            "query_status VARCHAR2(20) NOT NULL)");
+        created = true;
+        jdbcTemplate.execute("CREATE INDEX idx_material_workflow_state ON qrmfg_material_workflows(workflow_state)");
+        jdbcTemplate.execute("CREATE INDEX idx_material_workflow_plant ON qrmfg_material_workflows(plant_code)");
+        jdbcTemplate.execute("CREATE INDEX idx_material_workflow_created ON qrmfg_material_workflows(created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_query_workflow ON qrmfg_queries(workflow_id)");
+        jdbcTemplate.execute("CREATE INDEX idx_query_status ON qrmfg_queries(query_status)");
+
+        dashboardRepository = new DashboardRepository();
+        ReflectionTestUtils.setField(dashboardRepository, "jdbcTemplate", jdbcTemplate);
+        // The scratch schema has no archive tables, so reports read the hot table alone
+        WorkflowArchiveService archiveService = new WorkflowArchiveService(new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(archiveService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(dashboardRepository, "archiveService", archiveService);
+    }
+
+    @AfterAll
+    static void dropTables() {
+        if (!created) {
+            return;
+        }
+        for (String table : TABLES) {
+            jdbcTemplate.execute("DROP TABLE " + table + " PURGE");
+        }
+    }
+
+    @Test
+    void preAggregatedJoinKeepsUpWithCorrelatedSubqueries() {
+        List<double[]> results = new ArrayList<>();
+        int seeded = 0;
+        for (int size : SIZES) {
+            seed(seeded, size);
+            seeded = size;
+            gatherStats();
+
+            List<WorkflowSummaryDto> previous = jdbcTemplate.query(PREVIOUS_RECENT_ACTIVITY_SQL,
+                (rs, rowNum) -> summary(rs.getLong("id"), rs.getLong("total_queries"), rs.getLong("open_queries")),
+                RECENT_DAYS);
+            List<WorkflowSummaryDto> current = dashboardRepository.getRecentActivity(RECENT_DAYS);
+            assertEquals(RECENT_WORKFLOWS, current.size());
+            assertEquals(counts(previous), counts(current), "Query counts differ from the previous SQL");
+
+            double previousMillis = medianMillis(() -> jdbcTemplate.queryForList(PREVIOUS_RECENT_ACTIVITY_SQL,
+                RECENT_DAYS));
+            double currentMillis = medianMillis(() -> dashboardRepository.getRecentActivity(RECENT_DAYS));
+            results.add(new double[]{size, previousMillis, currentMillis});
+        }
+
+        System.out.println("DashboardRepository.getRecentActivity median latency (ms)");
+        System.out.println(String.format("%10s %12s %12s", "workflows", "correlated", "joined"));
+        for (double[] row : results) {
+            System.out.println(String.format("%10d %12.1f %12.1f", (long) row[0], row[1], row[2]));
+        }
+
+        double[] largest = results.get(results.size() - 1);
+        assertTrue(largest[2] <= Math.max(largest[1] * MAX_RATIO, largest[1] + NOISE_FLOOR_MILLIS),
+            "Pre-aggregated join took " + largest[2] + " ms against " + largest[1] + " ms for the previous SQL");
+    }
+
+    /**
+     * The first RECENT_WORKFLOWS workflows were modified inside the window; every later one is older.
+     * One query in four is open.
+     */
+    private void seed(int from, int to) {
+        String[] states = {"JVC_PENDING", "PLANT_PENDING", "CQS_PENDING", "TECH_PENDING", "COMPLETED"};
+        List<Object[]> workflows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> queries = new ArrayList<>(BATCH_SIZE * QUERIES_PER_WORKFLOW);
+        for (int id = from + 1; id <= to; id++) {
+            LocalDateTime lastModified = id <= RECENT_WORKFLOWS
+                ? now.minusMinutes(id * (RECENT_DAYS - 1) * 24L * 60 / RECENT_WORKFLOWS)
+                : now.minusDays(RECENT_DAYS + 1).minusMinutes(id);
+            LocalDateTime createdAt = lastModified.minusDays(id % 20);
+            String state = states[id % states.length];
+            workflows.add(new Object[]{id, "MAT-" + id, "Material " + id, state, "PLANT-" + (id % 25), "user" + (id % 50),
+                Timestamp.valueOf(createdAt), Timestamp.valueOf(lastModified),
+                Timestamp.valueOf(createdAt.plusHours(6)),
+                "COMPLETED".equals(state) ? Timestamp.valueOf(lastModified) : null});
+            for (int q = 0; q < QUERIES_PER_WORKFLOW; q++) {
+                queries.add(new Object[]{(long) id * QUERIES_PER_WORKFLOW + q, id, q == 0 ? "OPEN" : "RESOLVED"});
+            }
+            if (workflows.size() == BATCH_SIZE || id == to) {
+                jdbcTemplate.batchUpdate("INSERT INTO qrmfg_material_workflows (id, material_code, material_name, " +
+                    "workflow_state, plant_code, initiated_by, created_at, last_modified, extended_at, completed_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", workflows);
+                jdbcTemplate.batchUpdate("INSERT INTO qrmfg_queries (id, workflow_id, query_status) VALUES (?, ?, ?)",
+                    queries);
+                workflows.clear();
+                queries.clear();
+            }
+        }
+    }
+
+    private void gatherStats() {
+        for (String table : TABLES) {
+            jdbcTemplate.execute("BEGIN DBMS_STATS.GATHER_TABLE_STATS(USER, '" + table + "', cascade => TRUE); END;");
+        }
+    }
+
+    private static double medianMillis(Supplier<?> statement) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            statement.get();
+        }
+        double[] millis = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            statement.get();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[MEASURED_RUNS / 2];
+    }
+
+    private static WorkflowSummaryDto summary(long id, long totalQueries, long openQueries) {
+        WorkflowSummaryDto dto = new WorkflowSummaryDto();
+        dto.setId(id);
+        dto.setTotalQueries(totalQueries);
+        dto.setOpenQueries(openQueries);
+        return dto;
+    }
+
+    private static Map<Long, List<Long>> counts(List<WorkflowSummaryDto> summaries) {
+        Map<Long, List<Long>> counts = new HashMap<>();
+        for (WorkflowSummaryDto summary : summaries) {
+            counts.put(summary.getId(), Arrays.asList(summary.getTotalQueries(), summary.getOpenQueries()));
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,152 @@
+package com.cqs.qrmfg.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingWriterTest {
+
+    // Long enough that only batch-size or shutdown can trigger a flush during a test
+    private static final long NEVER_MS = 60_000;
+
+    private static final String FLUSHER_NAME = "batching-writer-test";
+
+    private RecordingWriter writer;
+
+    @AfterEach
+    void stopWriter() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void flushesOnceBatchSizeRowsAreWaiting() throws InterruptedException {
+        writer = start(new RecordingWriter(5, NEVER_MS));
+
+        for (int i = 0; i < 5; i++) {
+            writer.write("row-" + i);
+        }
+
+        awaitWritten(5);
+        assertEquals(Arrays.asList("row-0", "row-1", "row-2", "row-3", "row-4"), writer.written());
+        assertEquals(5, writer.metricsService.getCount("test.writer.written"));
+    }
+
+    @Test
+    void flushesPartialBatchOnFlushInterval() throws InterruptedException {
+        writer = start(new RecordingWriter(100, 20));
+
+        writer.write("row-0");
+
+        awaitWritten(1);
+        assertEquals(1, writer.metricsService.getCount("test.writer.batches"));
+    }
+
+    @Test
+    void flushesPendingRowsOnShutdown() throws InterruptedException {
+        writer = start(new RecordingWriter(100, NEVER_MS));
+        for (int i = 0; i < 3; i++) {
+            writer.write("row-" + i);
+        }
+
+        writer.shutdown();
+
+        assertEquals(Arrays.asList("row-0", "row-1", "row-2"), writer.written());
+        writer = null;
+    }
+
+    @Test
+    void retriesFailedBatchRowByRow() throws InterruptedException {
+        writer = start(new RecordingWriter(3, NEVER_MS));
+
+        writer.write("row-0");
+        writer.write("bad");
+        writer.write("row-2");
+
+        awaitWritten(2);
+        assertEquals(Arrays.asList("row-0", "row-2"), writer.written());
+        writer.shutdown();
+        assertEquals(1, writer.metricsService.getCount("test.writer.dropped"));
+        writer = null;
+    }
+
+    @Test
+    void writesOnCallerOnceStopped() throws InterruptedException {
+        writer = start(new RecordingWriter(100, NEVER_MS));
+        writer.shutdown();
+
+        writer.write("late");
+
+        assertEquals(Arrays.asList("late"), writer.written());
+        assertEquals(1, writer.metricsService.getCount("test.writer.caller_writes"));
+        writer = null;
+    }
+
+    private static RecordingWriter start(RecordingWriter writer) throws InterruptedException {
+        writer.metricsService = new OperationalMetricsService();
+        writer.start();
+        awaitFlusherParked();
+        return writer;
+    }
+
+    // Rows offered before the first park could be drained one at a time and never reach a full batch
+    private static void awaitFlusherParked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (FLUSHER_NAME.equals(thread.getName()) && thread.getState() == Thread.State.TIMED_WAITING) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("Flusher thread did not start");
+    }
+
+    private void awaitWritten(int rows) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (writer.written().size() < rows && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(writer.written().size() >= rows, "Only " + writer.written().size() + " of " + rows + " rows written");
+    }
+
+    private static class RecordingWriter extends BatchingWriter<String> {
+
+        private final List<String> written = new CopyOnWriteArrayList<>();
+
+        RecordingWriter(int batchSize, long flushIntervalMs) {
+            super(FLUSHER_NAME, "test.writer", 16, batchSize, flushIntervalMs, 10, 5_000);
+        }
+
+        void write(String row) {
+            enqueue(row);
+        }
+
+        List<String> written() {
+            return new ArrayList<>(written);
+        }
+
+        @Override
+        protected void insert(List<String> rows) {
+            if (rows.contains("bad")) {
+                throw new DataIntegrityViolationException("bad row");
+            }
+            written.addAll(rows);
+        }
+
+        @Override
+        protected String describe(String row) {
+            return row;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.cqs.qrmfg.service.impl;
+
+import com.cqs.qrmfg.service.WorkflowArchiveService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Latency of getWorkflowPerformanceMetrics as the workflow table grows from 1k to 500k rows
+ * while the reporting window keeps the same 1k recent workflows. Needs an Oracle scratch
+ * schema without the qrmfg tables: the benchmark creates the columns the statements read,
+ * with the indexes from workflow_schema.sql, and drops them again.
+ *
+ * mvn -Pbenchmark test -Dtest=WorkflowPerformanceMetricsBenchmarkTest
+ *     -Dbenchmark.jdbc.url=... -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark.jdbc.url", matches = ".+")
+class WorkflowPerformanceMetricsBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 500_000};
+    private static final int WINDOW_WORKFLOWS = 1_000;
+    private static final int WINDOW_DAYS = 30;
+    private static final int QUERIES_PER_WORKFLOW = 2;
+    private static final int BATCH_SIZE = 5_000;
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+
+    // Windowed median at the largest size may be at most this many times the one at 1k
+    private static final double FLAT_FACTOR = Double.parseDouble(System.getProperty("benchmark.flat-factor", "3"));
+    // Below this, differences are timer and network noise
+    private static final double NOISE_FLOOR_MILLIS = 20;
+
+    private static final String[] TABLES = {"QRMFG_QUERIES", "QRMFG_MATERIAL_WORKFLOWS"};
+
+    private static JdbcTemplate jdbcTemplate;
+    private static AdminMonitoringServiceImpl monitoringService;
+    private static boolean created;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeAll
+    static void createTables() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getProperty("benchmark.jdbc.url"),
+            System.getProperty("benchmark.jdbc.user"), System.getProperty("benchmark.jdbc.password"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Integer existing = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM user_tables WHERE table_name IN ('QRMFG_QUERIES', 'QRMFG_MATERIAL_WORKFLOWS')",
+            Integer.class);
+        assumeTrue(existing == 0, "The benchmark needs a scratch schema without the qrmfg tables");
+
+        jdbcTemplate.execute("CREATE TABLE qrmfg_material_workflows (id NUMBER(19) PRIMARY KEY, " +
+            "workflow_state VARCHAR2(20) NOT NULL, created_at TIMESTAMP NOT NULL, completed_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE qrmfg_queries (id NUMBER(19) PRIMARY KEY, " +
+            "workflow_id NUMBER(19) NOT NULL REFERENCES qrmfg_material_workflows(id), created_at TIMESTAMP NOT NULL)");
+        created = true;
+        jdbcTemplate.execute("CREATE INDEX idx_material_workflow_state ON qrmfg_material_workflows(workflow_state)");
+        jdbcTemplate.execute("CREATE INDEX idx_material_workflow_created ON qrmfg_material_workflows(created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_query_workflow ON qrmfg_queries(workflow_id)");
+
+        monitoringService = new AdminMonitoringServiceImpl();
+        ReflectionTestUtils.setField(monitoringService, "jdbcTemplate", jdbcTemplate);
+        // The scratch schema has no archive tables, so reports read the hot table alone
+        WorkflowArchiveService archiveService = new WorkflowArchiveService(new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(archiveService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(monitoringService, "archiveService", archiveService);
+    }
+
+    @AfterAll
+    static void dropTables() {
+        if (!created) {
+            return;
+        }
+        for (String table : TABLES) {
+            jdbcTemplate.execute("DROP TABLE " + table + " PURGE");
+        }
+    }
+
+    @Test
+    void windowedLatencyStaysFlatAsWorkflowsGrow() {
+        List<double[]> results = new ArrayList<>();
+        int seeded = 0;
+        for (int size : SIZES) {
+            seed(seeded, size);
+            seeded = size;
+            gatherStats();
+
+            double windowed = medianMillis(now.minusDays(WINDOW_DAYS), now);
+            double full = medianMillis(null, null);
+            results.add(new double[]{size, windowed, full});
+
+            Map<String, Object> metrics = monitoringService.getWorkflowPerformanceMetrics(now.minusDays(WINDOW_DAYS), now);
+            assertEquals((double) QUERIES_PER_WORKFLOW, (Double) metrics.get("queriesPerWorkflow"), 0.0001);
+        }
+
+        System.out.println("getWorkflowPerformanceMetrics median latency (ms)");
+        System.out.println(String.format("%10s %12s %12s", "workflows", "30-day", "all"));
+        for (double[] row : results) {
+            System.out.println(String.format("%10d %12.1f %12.1f", (long) row[0], row[1], row[2]));
+        }
+
+        double smallest = results.get(0)[1];
+        double largest = results.get(results.size() - 1)[1];
+        assertTrue(largest <= Math.max(smallest * FLAT_FACTOR, smallest + NOISE_FLOOR_MILLIS),
+            "30-day window latency grew from " + smallest + " ms to " + largest + " ms");
+    }
+
+    /**
+     * The first WINDOW_WORKFLOWS workflows fall in the reporting window; every later one is older
+     */
+    private void seed(int from, int to) {
+        List<Object[]> workflows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> queries = new ArrayList<>(BATCH_SIZE * QUERIES_PER_WORKFLOW);
+        for (int id = from + 1; id <= to; id++) {
+            LocalDateTime createdAt = id <= WINDOW_WORKFLOWS
+                ? now.minusMinutes(id * (WINDOW_DAYS - 1) * 24L * 60 / WINDOW_WORKFLOWS)
+                : now.minusDays(WINDOW_DAYS + 1).minusMinutes(id);
+            boolean completed = id % 10 < 7;
+            workflows.add(new Object[]{id, completed ? "COMPLETED" : "PLANT_PENDING", Timestamp.valueOf(createdAt),
+                completed ? Timestamp.valueOf(createdAt.plusHours(id % 72 + 1)) : null});
+            for (int q = 0; q < QUERIES_PER_WORKFLOW; q++) {
+                queries.add(new Object[]{(long) id * QUERIES_PER_WORKFLOW + q, id, Timestamp.valueOf(createdAt)});
+            }
+            if (workflows.size() == BATCH_SIZE || id == to) {
+                jdbcTemplate.batchUpdate("INSERT INTO qrmfg_material_workflows " +
+                    "(id, workflow_state, created_at, completed_at) VALUES (?, ?, ?, ?)", workflows);
+                jdbcTemplate.batchUpdate("INSERT INTO qrmfg_queries (id, workflow_id, created_at) VALUES (?, ?, ?)",
+                    queries);
+                workflows.clear();
+                queries.clear();
+            }
+        }
+    }
+
+    private void gatherStats() {
+        for (String table : TABLES) {
+            jdbcTemplate.execute("BEGIN DBMS_STATS.GATHER_TABLE_STATS(USER, '" + table + "', cascade => TRUE); END;");
+        }
+    }
+
+    private double medianMillis(LocalDateTime startDate, LocalDateTime endDate) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            monitoringService.getWorkflowPerformanceMetrics(startDate, endDate);
+        }
+        double[] millis = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            monitoringService.getWorkflowPerformanceMetrics(startDate, endDate);
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[MEASURED_RUNS / 2];
+    }
+}
@@ -0,0 +1,137 @@
+package com.cqs.qrmfg.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(2, new RingBuffer<Integer>(2).capacity());
+        assertEquals(4, new RingBuffer<Integer>(3).capacity());
+        assertEquals(4, new RingBuffer<Integer>(4).capacity());
+        assertEquals(8, new RingBuffer<Integer>(5).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<Integer>(1));
+    }
+
+    @Test
+    void pollOnEmptyRingReturnsNull() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+
+        ring.offer(1);
+        assertEquals(Integer.valueOf(1), ring.poll());
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void offerOnFullRingFailsUntilSlotIsFreed() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        assertEquals(Integer.valueOf(0), ring.poll());
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+    }
+
+    @Test
+    void keepsOrderAcrossWraparound() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        // Three elements in, two out, so each lap starts at a different slot
+        for (int lap = 0; lap < 50; lap++) {
+            while (ring.size() < ring.capacity()) {
+                assertTrue(ring.offer(next++));
+            }
+            assertEquals(Integer.valueOf(expected++), ring.poll());
+            assertEquals(Integer.valueOf(expected++), ring.poll());
+            assertEquals(Integer.valueOf(expected++), ring.poll());
+        }
+        while (!ring.isEmpty()) {
+            assertEquals(Integer.valueOf(expected++), ring.poll());
+        }
+        assertEquals(next, expected);
+    }
+
+    @Test
+    void drainToStopsAtMaxElements() {
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(i);
+        }
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, ring.drainTo(drained, 3));
+        assertEquals(Arrays.asList(0, 1, 2), drained);
+        assertEquals(2, ring.drainTo(drained, 10));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+        assertEquals(0, ring.drainTo(drained, 10));
+    }
+
+    @Test
+    void rejectsNull() {
+        assertThrows(NullPointerException.class, () -> new RingBuffer<Integer>(4).offer(null));
+    }
+
+    @Test
+    void deliversEveryElementOnceUnderConcurrentProducers() throws InterruptedException {
+        RingBuffer<Integer> ring = new RingBuffer<>(16);
+        int producers = 4;
+        int perProducer = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        start.countDown();
+        while (seen.size() < producers * perProducer) {
+            Integer element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+            } else {
+                assertTrue(seen.add(element), "Delivered twice: " + element);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,64 @@
+package com.cqs.qrmfg.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streams 1M audit-export-shaped rows through XlsxWriter. Run with -Pbenchmark, which caps
+ * the heap at -Xmx${benchmark.heap} (64m by default), so a writer that kept rows in memory
+ * fails with OutOfMemoryError instead of passing.
+ *
+ * mvn -Pbenchmark test -Dtest=XlsxWriterBenchmarkTest
+ */
+@Tag("benchmark")
+class XlsxWriterBenchmarkTest {
+
+    private static final int ROWS = 1_000_000;
+    private static final int SAMPLE_EVERY = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamsOneMillionRowsInSmallHeap() throws IOException {
+        Path file = tempDir.resolve("audit.xlsx");
+        Runtime runtime = Runtime.getRuntime();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        long peakUsed = 0;
+        long start = System.nanoTime();
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            XlsxWriter writer = new XlsxWriter(out, "Audit Logs");
+            writer.writeHeader("Timestamp", "User", "Action", "Entity Type", "Entity Id", "Details");
+            for (int i = 0; i < ROWS; i++) {
+                writer.writeRow(base.plusSeconds(i), "user" + (i % 500), "UPDATE", "MaterialWorkflow", (long) i,
+                    "State changed from PLANT_PENDING to COMPLETED for material MAT-" + i);
+                if (i % SAMPLE_EVERY == 0) {
+                    peakUsed = Math.max(peakUsed, runtime.totalMemory() - runtime.freeMemory());
+                }
+            }
+            writer.finish();
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(String.format("XlsxWriter: %d rows in %d ms, %d MB file, peak sampled heap %d MB of %d MB max",
+            ROWS, elapsedMillis, Files.size(file) >> 20, peakUsed >> 20, runtime.maxMemory() >> 20));
+
+        try (ZipFile workbook = new ZipFile(file.toFile())) {
+            assertNotNull(workbook.getEntry("xl/worksheets/sheet1.xml"), "Sheet missing from the workbook");
+        }
+        assertTrue(Files.size(file) > 0);
+    }
+}